@@ -0,0 +1,171 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+
+import ak.goobi.oaihelper.classes.Id;
+import ak.goobi.oaihelper.classes.MetsIndex;
+import ak.goobi.oaihelper.classes.ModsRecord;
+import ak.goobi.oaihelper.classes.PageIndex;
+import ak.goobi.oaihelper.main.GoobiOaiHelper;
+import ak.goobi.oaihelper.parsers.MetsStreamParser;
+
+/**
+ * Measures the lookup methods of GoobiOaiHelper on an already parsed METS-XML document. One operation calls a method once for every structure element
+ * of the document, like a client that processes a whole volume, so the scores of the fixtures show how the methods scale with the size of a volume.
+ * 
+ * @author Michael Birkner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LookupBenchmark {
+
+	@Param
+	private MetsFixture fixture;
+
+	private GoobiOaiHelper goobiOaiHelper;
+	private Document document;
+	private MetsIndex metsIndex;
+	private PageIndex pageIndex;
+	private List<String> logIds;
+	private List<String> dmdlogIds;
+	private List<List<String>> physIds;
+
+	@Setup
+	public void setup() throws Exception {
+		byte[] xml = fixture.createXml();
+		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+		document = documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+		metsIndex = new MetsStreamParser().parse(new ByteArrayInputStream(xml));
+		pageIndex = PageIndex.build(metsIndex);
+		goobiOaiHelper = new GoobiOaiHelper();
+
+		logIds = new ArrayList<String>();
+		dmdlogIds = new ArrayList<String>();
+		physIds = new ArrayList<List<String>>();
+		for (int div = 0; div < fixture.getNoOfLogicalDivs(); div++) {
+			logIds.add(MetsFixture.getLogId(div));
+			dmdlogIds.add(MetsFixture.getDmdlogId(div));
+			physIds.add(goobiOaiHelper.getPhysIds(metsIndex, MetsFixture.getLogId(div)));
+		}
+	}
+
+	@Benchmark
+	public List<Id> getIds() {
+		return goobiOaiHelper.getIds(metsIndex, null);
+	}
+
+	/**
+	 * Same as getIds(), but with a Document, so it includes the lookup of the MetsIndex of the Document.
+	 */
+	@Benchmark
+	public List<Id> getIdsByDocument() throws Exception {
+		return goobiOaiHelper.getIds(document, null);
+	}
+
+	@Benchmark
+	public List<Id> getDetailedIds() {
+		return goobiOaiHelper.getDetailedIds(metsIndex, null);
+	}
+
+	@Benchmark
+	public void getPhysIds(Blackhole blackhole) {
+		for (String logId : logIds) {
+			blackhole.consume(goobiOaiHelper.getPhysIds(metsIndex, logId));
+		}
+	}
+
+	@Benchmark
+	public void getPageLabelByPhysId(Blackhole blackhole) {
+		for (List<String> divPhysIds : physIds) {
+			blackhole.consume(goobiOaiHelper.getPageLabelByPhysId(metsIndex, divPhysIds));
+		}
+	}
+
+	/**
+	 * Same as getPageLabelByPhysId(), but with a PageIndex of the volume.
+	 */
+	@Benchmark
+	public void getPageLabelByPhysIdFromPageIndex(Blackhole blackhole) {
+		for (List<String> divPhysIds : physIds) {
+			blackhole.consume(goobiOaiHelper.getPageLabelByPhysId(pageIndex, divPhysIds));
+		}
+	}
+
+	@Benchmark
+	public void getOrderNoByPhysId(Blackhole blackhole) {
+		for (List<String> divPhysIds : physIds) {
+			blackhole.consume(goobiOaiHelper.getOrderNoByPhysId(metsIndex, divPhysIds));
+		}
+	}
+
+	/**
+	 * Same as getOrderNoByPhysId(), but with a PageIndex of the volume.
+	 */
+	@Benchmark
+	public void getOrderNoByPhysIdFromPageIndex(Blackhole blackhole) {
+		for (List<String> divPhysIds : physIds) {
+			blackhole.consume(goobiOaiHelper.getOrderNoByPhysId(pageIndex, divPhysIds));
+		}
+	}
+
+	@Benchmark
+	public void getUrnsByPhysIds(Blackhole blackhole) {
+		for (List<String> divPhysIds : physIds) {
+			blackhole.consume(goobiOaiHelper.getUrnsByPhysIds(metsIndex, divPhysIds));
+		}
+	}
+
+	@Benchmark
+	public void getAuthorsByDmdlogId(Blackhole blackhole) {
+		for (String dmdlogId : dmdlogIds) {
+			blackhole.consume(goobiOaiHelper.getAuthorsByDmdlogId(metsIndex, dmdlogId));
+		}
+	}
+
+	@Benchmark
+	public Map<String, ModsRecord> getModsRecords() {
+		return goobiOaiHelper.getModsRecords(metsIndex);
+	}
+
+}
@@ -0,0 +1,213 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.benchmarks;
+
+import java.nio.charset.Charset;
+
+/**
+ * Synthetic METS-XML documents in the format of a Goobi OAI-PMH GetRecord response. The documents are generated the same way on every run, so the
+ * results of different runs can be compared. Every page has an ORDER, ORDERLABEL and CONTENTIDS attribute, every structure element has a <mets:dmdSec>
+ * with up to two personal names, and the first structure element (the volume) is linked to all pages. The other structure elements are linked to
+ * consecutive pages like articles in a periodical.
+ * 
+ * @author Michael Birkner
+ */
+public enum MetsFixture {
+
+	/** A small volume with 10 pages and 5 structure elements */
+	SMALL(10, 5),
+	/** A volume with 500 pages and 100 structure elements */
+	MEDIUM(500, 100),
+	/** A large volume with 5.000 pages and 1.000 structure elements */
+	LARGE(5000, 1000);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final int noOfPages;
+	private final int noOfLogicalDivs;
+
+	private MetsFixture(int noOfPages, int noOfLogicalDivs) {
+		this.noOfPages = noOfPages;
+		this.noOfLogicalDivs = noOfLogicalDivs;
+	}
+
+	public int getNoOfPages() {
+		return noOfPages;
+	}
+
+	public int getNoOfLogicalDivs() {
+		return noOfLogicalDivs;
+	}
+
+	/**
+	 * Creates the METS-XML document of this fixture.
+	 * 
+	 * @return	a byte array with the UTF-8 encoded METS-XML
+	 */
+	public byte[] createXml() {
+		StringBuilder xml = new StringBuilder(noOfPages * 900 + noOfLogicalDivs * 900);
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">\n");
+		xml.append("<responseDate>2016-05-01T10:00:00Z</responseDate>\n");
+		xml.append("<request verb=\"GetRecord\" metadataPrefix=\"mets\" identifier=\"").append(getIdentifier()).append("\">http://example.com/viewer/oai/</request>\n");
+		xml.append("<GetRecord><record><header><identifier>").append(getIdentifier()).append("</identifier><datestamp>2016-04-01T12:00:00Z</datestamp>");
+		xml.append("<setSpec>periodical</setSpec></header>\n<metadata>\n");
+		xml.append("<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:mods=\"http://www.loc.gov/mods/v3\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" ");
+		xml.append("xmlns:dv=\"http://dfg-viewer.de/\">\n");
+
+		for (int div = 0; div < noOfLogicalDivs; div++) {
+			appendDmdSec(xml, div);
+		}
+		appendAmdSec(xml);
+		appendFileSec(xml);
+		appendLogicalStructMap(xml);
+		appendPhysicalStructMap(xml);
+		appendStructLink(xml);
+
+		xml.append("</mets:mets></metadata></record></GetRecord></OAI-PMH>\n");
+		return xml.toString().getBytes(UTF_8);
+	}
+
+	/**
+	 * Gets the ID of a div of the logical structure map.
+	 */
+	public static String getLogId(int div) {
+		return "LOG_" + pad(div);
+	}
+
+	/**
+	 * Gets the ID of the <mets:dmdSec> of a div of the logical structure map.
+	 */
+	public static String getDmdlogId(int div) {
+		return "DMDLOG_" + pad(div);
+	}
+
+	/**
+	 * Gets the ID of a div of the physical structure map. Pages start with 1.
+	 */
+	public static String getPhysId(int page) {
+		return "PHYS_" + pad(page);
+	}
+
+	/**
+	 * Gets the first page of a structure element.
+	 */
+	public int getFirstPage(int div) {
+		if (div == 0) {
+			return 1;
+		}
+		return 1 + (int)((long)(div - 1) * noOfPages / Math.max(1, noOfLogicalDivs - 1));
+	}
+
+	/**
+	 * Gets the last page of a structure element. Structure elements overlap by one page, like articles that start on the last page of the previous article.
+	 */
+	public int getLastPage(int div) {
+		if (div == 0) {
+			return noOfPages;
+		}
+		int nextFirstPage = 1 + (int)((long)div * noOfPages / Math.max(1, noOfLogicalDivs - 1));
+		return Math.max(getFirstPage(div), Math.min(noOfPages, nextFirstPage));
+	}
+
+	private String getIdentifier() {
+		return "AC_" + name() + "_" + noOfPages;
+	}
+
+	private void appendDmdSec(StringBuilder xml, int div) {
+		xml.append("<mets:dmdSec ID=\"").append(getDmdlogId(div)).append("\"><mets:mdWrap MDTYPE=\"MODS\"><mets:xmlData><mods:mods>\n");
+		xml.append("<mods:titleInfo><mods:title>Title of structure element ").append(div).append("</mods:title>");
+		xml.append("<mods:subTitle>Subtitle ").append(div).append("</mods:subTitle></mods:titleInfo>\n");
+		xml.append("<mods:language><mods:languageTerm authority=\"iso639-2b\" type=\"code\">ger</mods:languageTerm></mods:language>\n");
+		xml.append("<mods:identifier type=\"urn\">urn:nbn:at:bench-").append(div).append("</mods:identifier>\n");
+		// Structure elements have no, one or two authors
+		for (int author = 0; author < div % 3; author++) {
+			xml.append("<mods:name type=\"personal\"><mods:role><mods:roleTerm authority=\"marcrelator\" type=\"code\">aut</mods:roleTerm></mods:role>");
+			xml.append("<mods:namePart type=\"given\">Given").append(div).append('_').append(author).append("</mods:namePart>");
+			xml.append("<mods:namePart type=\"family\">Family").append(div).append('_').append(author).append("</mods:namePart>");
+			xml.append("<mods:displayForm>Family").append(div).append('_').append(author).append(", Given").append(div).append('_').append(author);
+			xml.append("</mods:displayForm></mods:name>\n");
+		}
+		xml.append("</mods:mods></mets:xmlData></mets:mdWrap></mets:dmdSec>\n");
+	}
+
+	private void appendAmdSec(StringBuilder xml) {
+		xml.append("<mets:amdSec ID=\"AMD\"><mets:rightsMD ID=\"RIGHTS\"><mets:mdWrap MDTYPE=\"OTHER\" OTHERMDTYPE=\"DVRIGHTS\"><mets:xmlData>");
+		xml.append("<dv:rights><dv:owner>Library</dv:owner><dv:ownerLogo>http://example.com/logo.png</dv:ownerLogo></dv:rights>");
+		xml.append("</mets:xmlData></mets:mdWrap></mets:rightsMD>\n");
+		xml.append("<mets:digiprovMD ID=\"DIGIPROV\"><mets:mdWrap MDTYPE=\"OTHER\" OTHERMDTYPE=\"DVLINKS\"><mets:xmlData>");
+		xml.append("<dv:links><dv:presentation>http://example.com/viewer/</dv:presentation></dv:links>");
+		xml.append("</mets:xmlData></mets:mdWrap></mets:digiprovMD></mets:amdSec>\n");
+	}
+
+	private void appendFileSec(StringBuilder xml) {
+		xml.append("<mets:fileSec>\n");
+		String[] fileGroups = { "DEFAULT", "THUMBS", "PRESENTATION" };
+		for (String fileGroup : fileGroups) {
+			xml.append("<mets:fileGrp USE=\"").append(fileGroup).append("\">\n");
+			for (int page = 1; page <= noOfPages; page++) {
+				xml.append("<mets:file ID=\"FILE_").append(pad(page)).append('_').append(fileGroup).append("\" MIMETYPE=\"image/jpeg\">");
+				xml.append("<mets:FLocat LOCTYPE=\"URL\" xlink:href=\"http://example.com/content/").append(fileGroup).append('/').append(pad(page));
+				xml.append(".jpg\"/></mets:file>\n");
+			}
+			xml.append("</mets:fileGrp>\n");
+		}
+		xml.append("</mets:fileSec>\n");
+	}
+
+	private void appendLogicalStructMap(StringBuilder xml) {
+		xml.append("<mets:structMap TYPE=\"LOGICAL\">\n");
+		for (int div = 0; div < noOfLogicalDivs; div++) {
+			String type = (div == 0) ? "PeriodicalVolume" : ((div % 10 == 1) ? "Editorial" : "Article");
+			xml.append("<mets:div ID=\"").append(getLogId(div)).append("\" DMDID=\"").append(getDmdlogId(div)).append("\" TYPE=\"").append(type).append('"');
+			xml.append((div == 0) ? ">\n" : "/>\n");
+		}
+		xml.append("</mets:div></mets:structMap>\n");
+	}
+
+	private void appendPhysicalStructMap(StringBuilder xml) {
+		xml.append("<mets:structMap TYPE=\"PHYSICAL\"><mets:div ID=\"").append(getPhysId(0)).append("\" TYPE=\"physSequence\">\n");
+		for (int page = 1; page <= noOfPages; page++) {
+			// The first pages have roman page labels like in a real volume
+			String orderLabel = (page <= 4) ? "[" + page + "]" : String.valueOf(page - 4);
+			xml.append("<mets:div ID=\"").append(getPhysId(page)).append("\" ORDER=\"").append(page).append("\" ORDERLABEL=\"").append(orderLabel);
+			xml.append("\" TYPE=\"page\" CONTENTIDS=\"urn:nbn:at:bench-0-").append(page).append("\">");
+			String[] fileGroups = { "DEFAULT", "THUMBS", "PRESENTATION" };
+			for (String fileGroup : fileGroups) {
+				xml.append("<mets:fptr FILEID=\"FILE_").append(pad(page)).append('_').append(fileGroup).append("\"/>");
+			}
+			xml.append("</mets:div>\n");
+		}
+		xml.append("</mets:div></mets:structMap>\n");
+	}
+
+	private void appendStructLink(StringBuilder xml) {
+		xml.append("<mets:structLink>\n");
+		for (int div = 0; div < noOfLogicalDivs; div++) {
+			for (int page = getFirstPage(div); page <= getLastPage(div); page++) {
+				xml.append("<mets:smLink xlink:from=\"").append(getLogId(div)).append("\" xlink:to=\"").append(getPhysId(page)).append("\"/>\n");
+			}
+		}
+		xml.append("</mets:structLink>\n");
+	}
+
+	private static String pad(int number) {
+		String value = String.valueOf(number);
+		return "0000".substring(Math.min(4, value.length())) + value;
+	}
+
+}
@@ -0,0 +1,99 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import ak.goobi.oaihelper.classes.MetsIndex;
+import ak.goobi.oaihelper.parsers.DocumentBuilderPool;
+import ak.goobi.oaihelper.parsers.MetsIndexer;
+import ak.goobi.oaihelper.parsers.MetsStreamParser;
+
+/**
+ * Measures how fast a METS-XML document is turned into a MetsIndex without any network access: with the StAX based MetsStreamParser and with a DOM
+ * Document that is indexed by the MetsIndexer (the way Network and GoobiOaiHelper work with Documents).
+ * 
+ * @author Michael Birkner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ParserBenchmark {
+
+	@Param
+	private MetsFixture fixture;
+
+	private byte[] xml;
+	private DocumentBuilderFactory documentBuilderFactory;
+	private DocumentBuilderPool documentBuilderPool;
+	private MetsStreamParser metsStreamParser;
+	private MetsIndexer metsIndexer;
+
+	@Setup
+	public void setup() {
+		xml = fixture.createXml();
+		documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+		documentBuilderPool = new DocumentBuilderPool();
+		metsStreamParser = new MetsStreamParser();
+		metsIndexer = new MetsIndexer();
+	}
+
+	@Benchmark
+	public MetsIndex streamParse() throws Exception {
+		return metsStreamParser.parse(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public Document domParse() throws Exception {
+		return documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+	}
+
+	/**
+	 * Same as domParse(), but with the pooled and hardened DocumentBuilders that Network uses.
+	 */
+	@Benchmark
+	public Document domParsePooled() throws Exception {
+		return documentBuilderPool.parse(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public MetsIndex domParseAndIndex() throws Exception {
+		Document document = documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+		return metsIndexer.index(document);
+	}
+
+}
@@ -0,0 +1,58 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * This class replaces files that were written to a temporary file first, e. g. the files of MetsRecordCache, HarvestState and PageIndex. The
+ * temporary file is moved over the target in one atomic step, so readers see either the old or the new file and a crash never leaves no file at all.
+ * 
+ * @author Michael Birkner
+ */
+public final class AtomicFiles {
+
+	private AtomicFiles() {
+	}
+
+
+	/**
+	 * Moves a temporary file to its target, replacing an existing target. The move is atomic if the file system supports it (the temporary file should
+	 * be in the directory of the target); otherwise the target is replaced by a plain move. The temporary file is deleted if the move fails.
+	 * 
+	 * @param tmpFile		the completely written temporary file
+	 * @param file			the target file
+	 * @throws IOException	if the file can not be moved
+	 */
+	public static void replace(File tmpFile, File file) throws IOException {
+		try {
+			try {
+				Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			tmpFile.delete();
+			throw e;
+		}
+	}
+
+}
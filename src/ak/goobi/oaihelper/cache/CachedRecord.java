@@ -0,0 +1,107 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.cache;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class describes one record in the MetsRecordCache.
+ * 
+ * @author Michael Birkner
+ */
+public class CachedRecord {
+
+	private String oaiPmh;
+	private String identifier;
+	private String datestamp;
+	private long lastModified;
+	private File file;
+	private long size;
+
+	CachedRecord(String oaiPmh, String identifier, String datestamp, long lastModified, File file, long size) {
+		this.oaiPmh = oaiPmh;
+		this.identifier = identifier;
+		this.datestamp = datestamp;
+		this.lastModified = lastModified;
+		this.file = file;
+		this.size = size;
+	}
+
+	/**
+	 * Opens the cached XML of the record (the complete OAI-PMH response). Close the InputStream after reading.
+	 * 
+	 * @return				an InputStream of the uncompressed XML
+	 * @throws IOException	e. g. if the record was evicted from the cache in the meantime
+	 */
+	public InputStream openInputStream() throws IOException {
+		DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			MetsRecordCache.readHeader(dataInputStream);
+			dataInputStream.readLong(); // Last-Modified
+			return new GZIPInputStream(dataInputStream);
+		} catch (IOException e) {
+			dataInputStream.close();
+			throw e;
+		}
+	}
+
+	public String getOaiPmh() {
+		return oaiPmh;
+	}
+	public String getIdentifier() {
+		return identifier;
+	}
+	/**
+	 * Gets the datestamp of the OAI-PMH header of the record.
+	 * 
+	 * @return	a String with the datestamp or null if the record had no header
+	 */
+	public String getDatestamp() {
+		return datestamp;
+	}
+	/**
+	 * Gets the value of the "Last-Modified" HTTP header of the response the record was cached from.
+	 * 
+	 * @return	the last modification date in milliseconds since January 1, 1970 GMT or 0 if it is unknown
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+	File getFile() {
+		return file;
+	}
+	/**
+	 * Gets the size of the cache file.
+	 * 
+	 * @return	the size in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "CachedRecord [oaiPmh=" + oaiPmh + ", identifier=" + identifier + ", datestamp=" + datestamp + ", lastModified=" + lastModified + ", size=" + size + "]";
+	}
+
+}
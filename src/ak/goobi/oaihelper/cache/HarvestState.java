@@ -0,0 +1,241 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import ak.goobi.oaihelper.classes.HarvestedRecord;
+
+/**
+ * This class holds the state of incremental harvests of one OAI-PMH interface (see ak.goobi.oaihelper.network.IncrementalHarvester): the harvested
+ * records with their datestamps and hashes, the date of the last complete harvest and, while a harvest is running, the resumption token of the last
+ * completely processed response. The state is saved gzip compressed in one file.
+ * 
+ * The records can be read and changed by many threads at the same time. Saving is synchronized; records that are changed while the state is saved may
+ * or may not be included in the file.
+ * 
+ * @author Michael Birkner
+ */
+public class HarvestState {
+
+	private static final int MAGIC = 0x4F414953; // "OAIS"
+	private static final int VERSION = 1;
+
+	private String oaiPmh;
+	private String metadataPrefix;
+	private String set;
+	private volatile String lastHarvestDate;
+	private volatile String harvestFrom;
+	private volatile String harvestDate;
+	private volatile String resumptionToken;
+	private Map<String, HarvestedRecord> records = new ConcurrentHashMap<String, HarvestedRecord>();
+
+
+	/**
+	 * Creates an empty state, e. g. for the first harvest.
+	 * 
+	 * @param oaiPmh			a String of the URL to the OAI-PMH interface
+	 * @param metadataPrefix	a String with the metadata prefix of the harvest
+	 * @param set				a String with the set of the harvest or null for all records
+	 */
+	public HarvestState(String oaiPmh, String metadataPrefix, String set) {
+		this.oaiPmh = oaiPmh;
+		this.metadataPrefix = metadataPrefix;
+		this.set = set;
+	}
+
+
+	/**
+	 * Loads a state file.
+	 * 
+	 * @param file			the state file
+	 * @return				the HarvestState
+	 * @throws IOException	if the file cannot be read or is not a state file of this version
+	 */
+	public static HarvestState load(File file) throws IOException {
+		DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+		try {
+			if (dataInputStream.readInt() != MAGIC || dataInputStream.readInt() != VERSION) {
+				throw new IOException("Not a harvest state file of this version: " + file);
+			}
+			HarvestState harvestState = new HarvestState(dataInputStream.readUTF(), dataInputStream.readUTF(), readString(dataInputStream));
+			harvestState.lastHarvestDate = readString(dataInputStream);
+			harvestState.harvestFrom = readString(dataInputStream);
+			harvestState.harvestDate = readString(dataInputStream);
+			harvestState.resumptionToken = readString(dataInputStream);
+			int noOfRecords = dataInputStream.readInt();
+			for (int i = 0; i < noOfRecords; i++) {
+				String identifier = dataInputStream.readUTF();
+				String datestamp = readString(dataInputStream);
+				String contentHash = readString(dataInputStream);
+				boolean deleted = dataInputStream.readBoolean();
+				harvestState.records.put(identifier, new HarvestedRecord(identifier, datestamp, contentHash, deleted));
+			}
+			return harvestState;
+		} finally {
+			dataInputStream.close();
+		}
+	}
+
+
+	/**
+	 * Saves the state. It is written to a temporary file first that replaces the old file in one atomic step (see AtomicFiles), so an interrupted save
+	 * does not destroy the old state.
+	 * 
+	 * @param file			the state file
+	 * @throws IOException
+	 */
+	public synchronized void save(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create directory " + directory);
+		}
+		File tmpFile = File.createTempFile("." + file.getName() + ".", ".tmp", directory);
+		DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile))));
+		try {
+			dataOutputStream.writeInt(MAGIC);
+			dataOutputStream.writeInt(VERSION);
+			dataOutputStream.writeUTF(oaiPmh);
+			dataOutputStream.writeUTF(metadataPrefix);
+			writeString(dataOutputStream, set);
+			writeString(dataOutputStream, lastHarvestDate);
+			writeString(dataOutputStream, harvestFrom);
+			writeString(dataOutputStream, harvestDate);
+			writeString(dataOutputStream, resumptionToken);
+			// Copy the records first, because the map may change while it is written
+			HarvestedRecord[] harvestedRecords = records.values().toArray(new HarvestedRecord[0]);
+			dataOutputStream.writeInt(harvestedRecords.length);
+			for (HarvestedRecord harvestedRecord : harvestedRecords) {
+				dataOutputStream.writeUTF(harvestedRecord.getIdentifier());
+				writeString(dataOutputStream, harvestedRecord.getDatestamp());
+				writeString(dataOutputStream, harvestedRecord.getContentHash());
+				dataOutputStream.writeBoolean(harvestedRecord.isDeleted());
+			}
+		} catch (IOException e) {
+			dataOutputStream.close();
+			tmpFile.delete();
+			throw e;
+		}
+		dataOutputStream.close();
+
+		AtomicFiles.replace(tmpFile, file);
+	}
+
+
+	/**
+	 * Gets a harvested record.
+	 * 
+	 * @param identifier	a String with the identifier of the record
+	 * @return				a HarvestedRecord or null if the record was not harvested yet
+	 */
+	public HarvestedRecord getRecord(String identifier) {
+		return records.get(identifier);
+	}
+
+	/**
+	 * Adds or replaces a harvested record.
+	 * 
+	 * @param harvestedRecord	a HarvestedRecord
+	 */
+	public void putRecord(HarvestedRecord harvestedRecord) {
+		records.put(harvestedRecord.getIdentifier(), harvestedRecord);
+	}
+
+	public int getNoOfRecords() {
+		return records.size();
+	}
+
+	public String getOaiPmh() {
+		return oaiPmh;
+	}
+	public String getMetadataPrefix() {
+		return metadataPrefix;
+	}
+	public String getSet() {
+		return set;
+	}
+
+	/**
+	 * @return	a String with the date of the last complete harvest in the format of the OAI-PMH interface or null if there was none
+	 */
+	public String getLastHarvestDate() {
+		return lastHarvestDate;
+	}
+	public void setLastHarvestDate(String lastHarvestDate) {
+		this.lastHarvestDate = lastHarvestDate;
+	}
+
+	/**
+	 * @return	a String with the "from" argument of the running harvest or null if it harvests all records
+	 */
+	public String getHarvestFrom() {
+		return harvestFrom;
+	}
+	public void setHarvestFrom(String harvestFrom) {
+		this.harvestFrom = harvestFrom;
+	}
+
+	/**
+	 * @return	a String with the date of the first response of the running harvest or null if there is no running harvest or no response yet
+	 */
+	public String getHarvestDate() {
+		return harvestDate;
+	}
+	public void setHarvestDate(String harvestDate) {
+		this.harvestDate = harvestDate;
+	}
+
+	/**
+	 * @return	a String with the resumption token for the next response of the running harvest or null if there is none
+	 */
+	public String getResumptionToken() {
+		return resumptionToken;
+	}
+	public void setResumptionToken(String resumptionToken) {
+		this.resumptionToken = resumptionToken;
+	}
+
+
+	private static void writeString(DataOutputStream dataOutputStream, String value) throws IOException {
+		dataOutputStream.writeBoolean(value != null);
+		if (value != null) {
+			dataOutputStream.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream dataInputStream) throws IOException {
+		return (dataInputStream.readBoolean()) ? dataInputStream.readUTF() : null;
+	}
+
+
+	@Override
+	public String toString() {
+		return "HarvestState [oaiPmh=" + oaiPmh + ", metadataPrefix=" + metadataPrefix + ", set=" + set + ", lastHarvestDate=" + lastHarvestDate + ", harvestFrom=" + harvestFrom + ", harvestDate=" + harvestDate + ", resumptionToken=" + resumptionToken + ", records=" + records.size() + "]";
+	}
+
+}
@@ -0,0 +1,288 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class stores the XML of METS-XML records on the local disk, so unchanged records do not have to be downloaded again. A record is identified by the
+ * URL of the OAI-PMH interface and its identifier. Each record is stored gzip compressed in its own file, together with the datestamp of its OAI-PMH header
+ * and the "Last-Modified" HTTP header, which are used to revalidate the record (see Network.setMetsRecordCache()).
+ * 
+ * The total size of the cache files is limited. If it is exceeded, the least recently used records are removed. The order of use is kept in the
+ * modification time of the files, so it survives a restart. All methods are thread-safe within one JVM; do not share a cache directory between JVMs.
+ * 
+ * @author Michael Birkner
+ */
+public class MetsRecordCache {
+
+	private static final int MAGIC = 0x4D455453; // "METS"
+	private static final int VERSION = 1;
+	private static final String SUFFIX = ".cache";
+
+	private File directory;
+	private long maxSize;
+	private long size = 0;
+	// Access ordered, so the first entry is the least recently used one
+	private LinkedHashMap<String, CachedRecord> records = new LinkedHashMap<String, CachedRecord>(16, 0.75f, true);
+
+
+	/**
+	 * Opens a cache directory. Existing cache files in the directory are registered, leftovers of interrupted writes are removed.
+	 * 
+	 * @param directory		the directory for the cache files. It is created if it does not exist.
+	 * @param maxSize		the maximum total size of the cache files in bytes
+	 * @throws IOException
+	 */
+	public MetsRecordCache(File directory, long maxSize) throws IOException {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create cache directory " + directory);
+		}
+		load();
+	}
+
+
+	/**
+	 * Gets a record from the cache and marks it as recently used.
+	 * 
+	 * @param oaiPmh	a String of the URL to the OAI-PMH interface
+	 * @param id		a String of the identifier of the record
+	 * @return			a CachedRecord or null if the record is not in the cache
+	 */
+	public synchronized CachedRecord get(String oaiPmh, String id) {
+		CachedRecord cachedRecord = records.get(getKey(oaiPmh, id));
+		if (cachedRecord != null) {
+			cachedRecord.getFile().setLastModified(System.currentTimeMillis());
+		}
+		return cachedRecord;
+	}
+
+
+	/**
+	 * Puts a record into the cache or replaces it. Least recently used records are removed if the maximum size of the cache is exceeded.
+	 * 
+	 * @param oaiPmh		a String of the URL to the OAI-PMH interface
+	 * @param id			a String of the identifier of the record
+	 * @param datestamp		a String with the datestamp of the OAI-PMH header of the record or null if it is unknown
+	 * @param lastModified	the value of the "Last-Modified" HTTP header in milliseconds since January 1, 1970 GMT or 0 if it is unknown
+	 * @param xml			the XML of the record (the complete OAI-PMH response)
+	 * @return				the new CachedRecord
+	 * @throws IOException
+	 */
+	public CachedRecord put(String oaiPmh, String id, String datestamp, long lastModified, byte[] xml) throws IOException {
+		String key = getKey(oaiPmh, id);
+		File file = new File(directory, key + SUFFIX);
+
+		// Write to a temporary file first, so readers never see a partly written file
+		File tmpFile = File.createTempFile(key, ".tmp", directory);
+		try {
+			DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			try {
+				dataOutputStream.writeInt(MAGIC);
+				dataOutputStream.writeInt(VERSION);
+				dataOutputStream.writeUTF(oaiPmh);
+				dataOutputStream.writeUTF(id);
+				dataOutputStream.writeUTF((datestamp != null) ? datestamp : "");
+				dataOutputStream.writeLong(lastModified);
+				GZIPOutputStream gzipOutputStream = new GZIPOutputStream(dataOutputStream);
+				gzipOutputStream.write(xml);
+				gzipOutputStream.finish();
+			} finally {
+				dataOutputStream.close();
+			}
+		} catch (IOException e) {
+			// Do not leave the partly written file in the cache directory, e. g. if the disk is full
+			tmpFile.delete();
+			throw e;
+		}
+
+		synchronized (this) {
+			CachedRecord oldRecord = records.remove(key);
+			if (oldRecord != null) {
+				size -= oldRecord.getSize();
+			}
+			AtomicFiles.replace(tmpFile, file);
+			CachedRecord cachedRecord = new CachedRecord(oaiPmh, id, datestamp, lastModified, file, file.length());
+			records.put(key, cachedRecord);
+			size += cachedRecord.getSize();
+			evict();
+			return cachedRecord;
+		}
+	}
+
+
+	/**
+	 * Removes a record from the cache.
+	 * 
+	 * @param oaiPmh	a String of the URL to the OAI-PMH interface
+	 * @param id		a String of the identifier of the record
+	 */
+	public synchronized void remove(String oaiPmh, String id) {
+		CachedRecord cachedRecord = records.remove(getKey(oaiPmh, id));
+		if (cachedRecord != null) {
+			size -= cachedRecord.getSize();
+			cachedRecord.getFile().delete();
+		}
+	}
+
+
+	/**
+	 * Gets the total size of the cache files.
+	 * 
+	 * @return	the size in bytes
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+
+	/**
+	 * Gets the number of records in the cache.
+	 * 
+	 * @return	the number of records
+	 */
+	public synchronized int getNoOfRecords() {
+		return records.size();
+	}
+
+
+	public File getDirectory() {
+		return directory;
+	}
+
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+
+	/**
+	 * Removes least recently used records until the total size is not larger than the maximum size.
+	 */
+	private void evict() {
+		Iterator<CachedRecord> iterator = records.values().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			CachedRecord cachedRecord = iterator.next();
+			iterator.remove();
+			size -= cachedRecord.getSize();
+			cachedRecord.getFile().delete();
+		}
+	}
+
+
+	/**
+	 * Registers the existing cache files, ordered by their last use.
+	 */
+	private synchronized void load() {
+		List<File> files = new ArrayList<File>();
+		File[] directoryFiles = directory.listFiles();
+		for (File file : (directoryFiles != null) ? directoryFiles : new File[0]) {
+			if (file.getName().endsWith(".tmp")) {
+				file.delete();
+			} else if (file.getName().endsWith(SUFFIX)) {
+				files.add(file);
+			}
+		}
+
+		Collections.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File file1, File file2) {
+				long lastModified1 = file1.lastModified();
+				long lastModified2 = file2.lastModified();
+				return (lastModified1 < lastModified2) ? -1 : ((lastModified1 == lastModified2) ? 0 : 1);
+			}
+		});
+
+		for (File file : files) {
+			try {
+				DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				try {
+					String[] header = readHeader(dataInputStream);
+					long lastModified = dataInputStream.readLong();
+					String key = file.getName().substring(0, file.getName().length() - SUFFIX.length());
+					String datestamp = (header[2].isEmpty()) ? null : header[2];
+					CachedRecord cachedRecord = new CachedRecord(header[0], header[1], datestamp, lastModified, file, file.length());
+					records.put(key, cachedRecord);
+					size += cachedRecord.getSize();
+				} finally {
+					dataInputStream.close();
+				}
+			} catch (IOException e) {
+				// Not a valid cache file (e. g. of an older version), so remove it
+				file.delete();
+			}
+		}
+
+		evict();
+	}
+
+
+	/**
+	 * Reads the header of a cache file up to the "Last-Modified" value.
+	 * 
+	 * @return	a String[] with the URL of the OAI-PMH interface, the identifier and the datestamp (empty String if unknown)
+	 */
+	static String[] readHeader(DataInputStream dataInputStream) throws IOException {
+		if (dataInputStream.readInt() != MAGIC || dataInputStream.readInt() != VERSION) {
+			throw new IOException("Not a cache file of this version");
+		}
+		String oaiPmh = dataInputStream.readUTF();
+		String id = dataInputStream.readUTF();
+		String datestamp = dataInputStream.readUTF();
+		return new String[] {oaiPmh, id, datestamp};
+	}
+
+
+	/**
+	 * Gets the file name of a record: the SHA-1 hash of the URL to the OAI-PMH interface and the identifier.
+	 */
+	private String getKey(String oaiPmh, String id) {
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = messageDigest.digest((oaiPmh + "\n" + id).getBytes("UTF-8"));
+			StringBuilder key = new StringBuilder();
+			for (byte b : hash) {
+				key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
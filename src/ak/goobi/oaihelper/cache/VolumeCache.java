@@ -0,0 +1,432 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import ak.goobi.oaihelper.metrics.MetricNames;
+import ak.goobi.oaihelper.metrics.Metrics;
+
+/**
+ * This class keeps parsed records in memory, so a record that is used several times within a short time is downloaded and parsed only once (see
+ * Network.setVolumeCache() and Network.setDocumentCache()). A record is identified by the URL of the OAI-PMH interface and its identifier. Other than
+ * MetsRecordCache, which stores the XML on the local disk, this cache holds the parsed Documents or MetsIndexes, so a hit costs no parsing at all.
+ * 
+ * The cache is limited by the estimated heap memory of its values (see Weigher), because the size of METS-XML records differs by orders of magnitude.
+ * If the limit is exceeded, the least recently used records are removed. Records expire a fixed time after they were loaded, so changes of a record
+ * are visible after that time at the latest. If several threads request the same missing record at the same time, it is loaded only once and all
+ * threads get the same value.
+ * 
+ * All methods are thread-safe. The values are shared between all threads that use the cache, so they must not be changed.
+ * 
+ * @author Michael Birkner
+ */
+public class VolumeCache<V> {
+
+	private final Weigher<? super V> weigher;
+	private final long maxWeight;
+	private volatile long timeToLive = TimeUnit.MINUTES.toNanos(10);
+	private volatile Metrics metrics = Metrics.NONE;
+
+	private long weight = 0;
+	// Access ordered, so the first entry is the least recently used one
+	private final LinkedHashMap<Key, Entry<V>> entries = new LinkedHashMap<Key, Entry<V>>(16, 0.75f, true);
+	// Records that are being loaded, so concurrent requests for the same record wait for the first one
+	private final ConcurrentHashMap<Key, CompletableFuture<V>> loads = new ConcurrentHashMap<Key, CompletableFuture<V>>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder loadErrors = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+
+
+	/**
+	 * @param weigher	a Weigher that estimates the heap memory of the values (see Weighers)
+	 * @param maxWeight	the maximum total weight of the values in bytes
+	 */
+	public VolumeCache(Weigher<? super V> weigher, long maxWeight) {
+		if (maxWeight <= 0) {
+			throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+		}
+		this.weigher = weigher;
+		this.maxWeight = maxWeight;
+	}
+
+
+	/**
+	 * Gets a record from the cache or loads it if it is not in the cache or expired. The loader is called in the current thread. If another thread is
+	 * loading the same record already, this method waits for its result instead. A record that is heavier than the maximum weight of the cache is
+	 * returned, but not cached.
+	 * 
+	 * @param oaiPmh		a String of the URL to the OAI-PMH interface
+	 * @param id			a String of the identifier of the record
+	 * @param loader		a Callable that loads the record, e. g. by downloading and parsing it. It must not return null.
+	 * @return				the cached or loaded record
+	 * @throws Exception	the exception of the loader. Threads that waited for the loader of another thread get the same exception.
+	 */
+	public V get(String oaiPmh, String id, Callable<? extends V> loader) throws Exception {
+		Key key = new Key(oaiPmh, id);
+		V value = getIfPresent(key);
+		if (value != null) {
+			return value;
+		}
+
+		CompletableFuture<V> load = new CompletableFuture<V>();
+		CompletableFuture<V> otherLoad = loads.putIfAbsent(key, load);
+		if (otherLoad != null) {
+			coalesced.increment();
+			metrics.count(MetricNames.VOLUME_CACHE_COALESCED, 1);
+			return await(otherLoad);
+		}
+
+		try {
+			// Another thread may have put the record into the cache between the lookup and the registration of this load
+			value = getIfPresent(key);
+			if (value != null) {
+				load.complete(value);
+				return value;
+			}
+
+			misses.increment();
+			metrics.count(MetricNames.VOLUME_CACHE_MISSES, 1);
+			long start = System.nanoTime();
+			try {
+				value = loader.call();
+				if (value == null) {
+					throw new NullPointerException("The loader returned null for " + id);
+				}
+			} catch (Exception e) {
+				loadErrors.increment();
+				load.completeExceptionally(e);
+				throw e;
+			} catch (Error e) {
+				loadErrors.increment();
+				load.completeExceptionally(e);
+				throw e;
+			} finally {
+				metrics.time(MetricNames.VOLUME_CACHE_LOAD, System.nanoTime() - start);
+			}
+
+			put(key, value);
+			load.complete(value);
+			return value;
+		} finally {
+			// Remove the load after the value is in the cache, so later requests find either the load or the cached value
+			loads.remove(key, load);
+		}
+	}
+
+
+	/**
+	 * Gets a record from the cache without loading it.
+	 * 
+	 * @param oaiPmh	a String of the URL to the OAI-PMH interface
+	 * @param id		a String of the identifier of the record
+	 * @return			the record or null if it is not in the cache or expired
+	 */
+	public V getIfPresent(String oaiPmh, String id) {
+		return getIfPresent(new Key(oaiPmh, id));
+	}
+
+
+	/**
+	 * Removes a record from the cache, e. g. after it was changed. A load of the record that is running is not cancelled.
+	 * 
+	 * @param oaiPmh	a String of the URL to the OAI-PMH interface
+	 * @param id		a String of the identifier of the record
+	 */
+	public synchronized void invalidate(String oaiPmh, String id) {
+		Entry<V> entry = entries.remove(new Key(oaiPmh, id));
+		if (entry != null) {
+			weight -= entry.weight;
+		}
+	}
+
+
+	/**
+	 * Removes all records from the cache.
+	 */
+	public synchronized void invalidateAll() {
+		entries.clear();
+		weight = 0;
+	}
+
+
+	private V getIfPresent(Key key) {
+		V value = null;
+		boolean expired = false;
+		synchronized (this) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null) {
+				if (System.nanoTime() - entry.loaded < timeToLive) {
+					value = entry.value;
+				} else {
+					entries.remove(key);
+					weight -= entry.weight;
+					expired = true;
+				}
+			}
+		}
+		if (expired) {
+			expirations.increment();
+			metrics.count(MetricNames.VOLUME_CACHE_EXPIRATIONS, 1);
+		}
+		if (value != null) {
+			hits.increment();
+			metrics.count(MetricNames.VOLUME_CACHE_HITS, 1);
+		}
+		return value;
+	}
+
+
+	private void put(Key key, V value) {
+		// Weigh outside of the lock, a Document is walked through completely
+		long valueWeight = Math.max(weigher.weigh(value), 0);
+		if (valueWeight > maxWeight) {
+			return;
+		}
+		Entry<V> entry = new Entry<V>(value, valueWeight, System.nanoTime());
+		int evicted = 0;
+		synchronized (this) {
+			Entry<V> oldEntry = entries.put(key, entry);
+			if (oldEntry != null) {
+				weight -= oldEntry.weight;
+			}
+			weight += valueWeight;
+			Iterator<Entry<V>> iterator = entries.values().iterator();
+			while (weight > maxWeight && iterator.hasNext()) {
+				Entry<V> eldest = iterator.next();
+				if (eldest != entry) {
+					iterator.remove();
+					weight -= eldest.weight;
+					evicted++;
+				}
+			}
+		}
+		if (evicted > 0) {
+			evictions.add(evicted);
+			metrics.count(MetricNames.VOLUME_CACHE_EVICTIONS, evicted);
+		}
+	}
+
+
+	/**
+	 * Waits for the load of another thread and rethrows its exception.
+	 */
+	private static <V> V await(CompletableFuture<V> load) throws Exception {
+		try {
+			return load.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+
+	/**
+	 * Gets the estimated heap memory of all records in the cache.
+	 * 
+	 * @return	the total weight in bytes
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+
+	/**
+	 * Gets the number of records in the cache, including expired records that were not requested since they expired.
+	 * 
+	 * @return	the number of records
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+
+	public long getTimeToLive() {
+		return TimeUnit.NANOSECONDS.toMillis(timeToLive);
+	}
+
+
+	/**
+	 * Sets the time after which a record is loaded again. Default is 10 minutes.
+	 * 
+	 * @param timeToLive	the time in milliseconds from the load of a record until it expires
+	 */
+	public void setTimeToLive(long timeToLive) {
+		this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+	}
+
+
+	/**
+	 * Gets the number of requests that were answered from the cache.
+	 * 
+	 * @return	the number of hits
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+
+	/**
+	 * Gets the number of requests that called the loader.
+	 * 
+	 * @return	the number of misses
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+
+	/**
+	 * Gets the number of requests that waited for the loader of another thread instead of calling the loader themselves.
+	 * 
+	 * @return	the number of coalesced requests
+	 */
+	public long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
+
+	/**
+	 * Gets the number of calls of the loader that threw an exception.
+	 * 
+	 * @return	the number of failed loads
+	 */
+	public long getLoadErrorCount() {
+		return loadErrors.sum();
+	}
+
+
+	/**
+	 * Gets the number of records that were removed because the maximum weight was exceeded.
+	 * 
+	 * @return	the number of evictions
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+
+	/**
+	 * Gets the number of records that were removed because they were expired.
+	 * 
+	 * @return	the number of expirations
+	 */
+	public long getExpirationCount() {
+		return expirations.sum();
+	}
+
+
+	/**
+	 * Gets the share of the requests that were answered from the cache or by the loader of another thread.
+	 * 
+	 * @return	a value between 0 and 1 or 0 if there were no requests
+	 */
+	public double getHitRate() {
+		long hitCount = hits.sum() + coalesced.sum();
+		long requestCount = hitCount + misses.sum();
+		return (requestCount > 0) ? (double) hitCount / requestCount : 0;
+	}
+
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+
+	/**
+	 * Sets the Metrics that receive the hits, misses, coalesced requests and evictions of this cache and the time of the loads (see MetricNames).
+	 * Default is Metrics.NONE.
+	 * 
+	 * @param metrics	a Metrics, e. g. a JmxMetrics or a LogMetrics
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = (metrics != null) ? metrics : Metrics.NONE;
+	}
+
+
+	@Override
+	public String toString() {
+		return "VolumeCache [size=" + size() + ", weight=" + getWeight() + ", maxWeight=" + maxWeight + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+				+ ", coalesced=" + getCoalescedCount() + ", evictions=" + getEvictionCount() + ", expirations=" + getExpirationCount() + "]";
+	}
+
+
+	private static final class Key {
+
+		private final String oaiPmh;
+		private final String id;
+
+		private Key(String oaiPmh, String id) {
+			this.oaiPmh = oaiPmh;
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * oaiPmh.hashCode() + id.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) object;
+			return oaiPmh.equals(key.oaiPmh) && id.equals(key.id);
+		}
+
+	}
+
+
+	private static final class Entry<V> {
+
+		private final V value;
+		private final long weight;
+		private final long loaded;
+
+		private Entry(V value, long weight, long loaded) {
+			this.value = value;
+			this.weight = weight;
+			this.loaded = loaded;
+		}
+
+	}
+
+}
@@ -0,0 +1,35 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.cache;
+
+/**
+ * This interface estimates the heap memory of a value of a VolumeCache, which is limited by the total weight of its values and not by their number.
+ * The estimate is made once, when the value is put into the cache. See Weighers for the weighers of the parsed records.
+ * 
+ * @author Michael Birkner
+ */
+public interface Weigher<V> {
+
+	/**
+	 * Estimates the heap memory of a value.
+	 * 
+	 * @param value	a value that is put into the cache, never null
+	 * @return		the estimated size in bytes, at least 0
+	 */
+	long weigh(V value);
+
+}
@@ -0,0 +1,146 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.cache;
+
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import ak.goobi.oaihelper.classes.LogicalDiv;
+import ak.goobi.oaihelper.classes.MetsIndex;
+import ak.goobi.oaihelper.classes.ModsName;
+import ak.goobi.oaihelper.classes.ModsRecord;
+import ak.goobi.oaihelper.classes.PhysicalPage;
+
+/**
+ * This class holds the Weighers of the parsed records. The estimates are rough: they count the objects and characters of a record and multiply them
+ * with the typical size of an object on a 64 bit JVM, which is close enough to limit the memory of a VolumeCache, but not an exact measurement.
+ * 
+ * @author Michael Birkner
+ */
+public final class Weighers {
+
+	// Object header and fields of a small object, e. g. a PhysicalPage or a DOM node
+	private static final long OBJECT = 48;
+	// Entry of a HashMap or an element of a List, including the reference
+	private static final long ENTRY = 40;
+	// String object with its array, without the characters
+	private static final long STRING = 40;
+	// DOM nodes of Xerces hold references to their parent, siblings, owner document and user data
+	private static final long NODE = 96;
+
+	/**
+	 * Weighs a Document by walking through all its nodes once.
+	 */
+	public static final Weigher<Document> DOCUMENT = new Weigher<Document>() {
+		@Override
+		public long weigh(Document document) {
+			return weighNodes(document);
+		}
+	};
+
+	/**
+	 * Weighs a MetsIndex by its pages, logical divs, links and MODS records. If the index was built from a DOM Document, the Document is weighed, too.
+	 */
+	public static final Weigher<MetsIndex> METS_INDEX = new Weigher<MetsIndex>() {
+		@Override
+		public long weigh(MetsIndex metsIndex) {
+			long weight = OBJECT + 6 * ENTRY;
+			for (PhysicalPage physicalPage : metsIndex.getPhysicalPages()) {
+				weight += ENTRY + OBJECT + weighString(physicalPage.getPhysId()) + weighString(physicalPage.getOrder())
+						+ weighString(physicalPage.getOrderLabel()) + weighString(physicalPage.getContentIds());
+			}
+			for (LogicalDiv logicalDiv : metsIndex.getLogicalDivs()) {
+				weight += ENTRY + OBJECT + weighString(logicalDiv.getLogId()) + weighString(logicalDiv.getDmdlogId()) + weighString(logicalDiv.getType());
+				List<String> structLinks = metsIndex.getStructLinks(logicalDiv.getLogId());
+				if (structLinks != null) {
+					// The targets are the IDs of the pages, which are weighed with the pages already
+					weight += ENTRY + OBJECT + structLinks.size() * 8L;
+				}
+			}
+			for (ModsRecord modsRecord : metsIndex.getModsRecords()) {
+				weight += ENTRY + OBJECT + weighString(modsRecord.getDmdlogId()) + weighString(modsRecord.getNonSort()) + weighString(modsRecord.getTitle())
+						+ weighString(modsRecord.getSubTitle());
+				for (String language : modsRecord.getLanguages()) {
+					weight += ENTRY + weighString(language);
+				}
+				for (List<String> values : modsRecord.getIdentifiers().values()) {
+					weight += 2 * ENTRY + STRING;
+					for (String value : values) {
+						weight += ENTRY + weighString(value);
+					}
+				}
+				for (ModsName modsName : modsRecord.getNames()) {
+					weight += ENTRY + OBJECT + weighString(modsName.getType()) + weighString(modsName.getGivenName()) + weighString(modsName.getFamilyName())
+							+ weighString(modsName.getDisplayForm());
+					if (modsName.getRoles() != null) {
+						for (String role : modsName.getRoles()) {
+							weight += ENTRY + weighString(role);
+						}
+					}
+				}
+			}
+			if (metsIndex.getDocument() != null) {
+				weight += weighNodes(metsIndex.getDocument());
+			}
+			return weight;
+		}
+	};
+
+	private Weighers() {
+	}
+
+
+	/**
+	 * Weighs a String with 2 bytes per character, which is the size of a String before Java 9 and of Strings with characters outside of Latin-1 since.
+	 */
+	static long weighString(String string) {
+		return (string != null) ? STRING + 2L * string.length() : 0;
+	}
+
+
+	/**
+	 * Weighs a node and all its descendants and attributes. The tree is walked without recursion, so deep documents do not overflow the stack.
+	 */
+	static long weighNodes(Node root) {
+		long weight = 0;
+		Node node = root;
+		while (node != null) {
+			weight += NODE + weighString(node.getNodeValue());
+			NamedNodeMap attributes = node.getAttributes();
+			if (attributes != null) {
+				for (int i = 0; i < attributes.getLength(); i++) {
+					Node attribute = attributes.item(i);
+					weight += NODE + ENTRY + weighString(attribute.getNodeValue());
+				}
+			}
+
+			Node next = node.getFirstChild();
+			while (next == null && node != root) {
+				next = node.getNextSibling();
+				if (next == null) {
+					node = node.getParentNode();
+				}
+			}
+			node = next;
+		}
+		return weight;
+	}
+
+}
@@ -0,0 +1,146 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * This class is an Id that holds the pages of a structure element only as PageOrders. The physical IDs, page labels and URNs are returned as read-only
+ * Lists that look them up in the MetsIndex of the document on every access, and the image numbers are created from the page orders on demand. For volumes
+ * with thousands of pages and hundreds of structure elements this needs much less memory than Ids with Lists of Strings.
+ * 
+ * CompactIds are returned by GoobiOaiHelper.getCompactIds(). Values that are set with the setters of Id take precedence over the looked up values.
+ * 
+ * @author Michael Birkner
+ */
+public class CompactId extends Id {
+
+	private PageOrders pageOrders;
+	private MetsIndex metsIndex;
+
+	/**
+	 * @param dmdlogId		a String with the DmdlogId of the structure element
+	 * @param logId			a String with the LogId of the structure element
+	 * @param type			a String with the type of the structure element
+	 * @param pageOrders	the PageOrders of the pages of the structure element
+	 * @param metsIndex		the MetsIndex of the document in which the pages are looked up by their order
+	 */
+	public CompactId(String dmdlogId, String logId, String type, PageOrders pageOrders, MetsIndex metsIndex) {
+		super(dmdlogId, logId, null);
+		setType(type);
+		this.pageOrders = pageOrders;
+		this.metsIndex = metsIndex;
+	}
+
+	/**
+	 * Gets the page orders of the structure element.
+	 * 
+	 * @return	the PageOrders
+	 */
+	public PageOrders getPageOrders() {
+		return pageOrders;
+	}
+
+	@Override
+	public List<String> getPhysIds() {
+		List<String> physIds = super.getPhysIds();
+		if (physIds != null) {
+			return physIds;
+		}
+		return new PageValues() {
+			@Override
+			String getValue(PhysicalPage physicalPage) {
+				return physicalPage.getPhysId();
+			}
+		};
+	}
+
+	@Override
+	public List<String> getOrderNos() {
+		List<String> orderNos = super.getOrderNos();
+		return (orderNos != null) ? orderNos : pageOrders;
+	}
+
+	@Override
+	public List<String> getOrderLabels() {
+		List<String> orderLabels = super.getOrderLabels();
+		if (orderLabels != null) {
+			return orderLabels;
+		}
+		return new PageValues() {
+			@Override
+			String getValue(PhysicalPage physicalPage) {
+				return physicalPage.getOrderLabel();
+			}
+		};
+	}
+
+	@Override
+	public List<String> getUrns() {
+		List<String> urns = super.getUrns();
+		if (urns != null) {
+			return urns;
+		}
+		return new PageValues() {
+			@Override
+			String getValue(PhysicalPage physicalPage) {
+				return physicalPage.getContentIds();
+			}
+		};
+	}
+
+	@Override
+	public String getPageLabel() {
+		String pageLabel = super.getPageLabel();
+		if (pageLabel == null) {
+			String firstPage = metsIndex.getPhysicalPageByOrder(pageOrders.getOrder(0)).getOrderLabel();
+			String lastPage = metsIndex.getPhysicalPageByOrder(pageOrders.getOrder(pageOrders.size()-1)).getOrderLabel();
+			if (firstPage != null && lastPage != null) {
+				pageLabel = (firstPage.equals(lastPage)) ? firstPage.trim() : firstPage.trim() + "-" + lastPage.trim();
+			}
+		}
+		return pageLabel;
+	}
+
+	@Override
+	public String toString() {
+		return "CompactId [dmdlogId=" + getDmdlogId() + ", logId=" + getLogId() + ", type=" + getType() + ", pageOrders=" + pageOrders + "]";
+	}
+
+
+	/**
+	 * A read-only view of one value of the pages of the structure element. The values are looked up in the MetsIndex on every access and are not
+	 * stored, so the CompactId stays small and can be shared by threads.
+	 */
+	private abstract class PageValues extends AbstractList<String> {
+
+		abstract String getValue(PhysicalPage physicalPage);
+
+		@Override
+		public String get(int index) {
+			return getValue(metsIndex.getPhysicalPageByOrder(pageOrders.getOrder(index)));
+		}
+
+		@Override
+		public int size() {
+			return pageOrders.size();
+		}
+
+	}
+
+}
@@ -0,0 +1,66 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+import java.util.List;
+
+/**
+ * This class holds the data of one structure element (a div of the logical structure map) of a record that is written by an ExportFormat: the identifier
+ * of the record, the identifiers, pages, image numbers and URNs of the structure element (see GoobiOaiHelper.getDetailedIds()) and the title and the
+ * authors of its MODS section.
+ * 
+ * @author Michael Birkner
+ */
+public class ExportElement {
+
+	private String identifier;
+	private Id id;
+	private String title;
+	private List<String> authors;
+
+	/**
+	 * @param identifier	a String with the identifier of the record
+	 * @param id			the Id of the structure element with the details of GoobiOaiHelper.getDetailedIds()
+	 * @param title			a String with the title of the MODS section or null
+	 * @param authors		a List<String> with the author names of the MODS section or null
+	 */
+	public ExportElement(String identifier, Id id, String title, List<String> authors) {
+		this.identifier = identifier;
+		this.id = id;
+		this.title = title;
+		this.authors = authors;
+	}
+
+	public String getIdentifier() {
+		return identifier;
+	}
+	public Id getId() {
+		return id;
+	}
+	public String getTitle() {
+		return title;
+	}
+	public List<String> getAuthors() {
+		return authors;
+	}
+
+	@Override
+	public String toString() {
+		return "ExportElement [identifier=" + identifier + ", id=" + id + ", title=" + title + ", authors=" + authors + "]";
+	}
+
+}
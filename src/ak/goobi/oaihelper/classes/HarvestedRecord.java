@@ -0,0 +1,60 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+/**
+ * This class holds what is remembered of a harvested record between two incremental harvests: its datestamp, the hash of its metadata and whether it
+ * was deleted.
+ * 
+ * @author Michael Birkner
+ */
+public class HarvestedRecord {
+
+	private String identifier;
+	private String datestamp;
+	private String contentHash;
+	private boolean deleted;
+
+	public HarvestedRecord(String identifier, String datestamp, String contentHash, boolean deleted) {
+		this.identifier = identifier;
+		this.datestamp = datestamp;
+		this.contentHash = contentHash;
+		this.deleted = deleted;
+	}
+
+	public String getIdentifier() {
+		return identifier;
+	}
+	public String getDatestamp() {
+		return datestamp;
+	}
+	/**
+	 * @return	a String with the hash of the metadata (see OaiRecord.getContentHash()) or null if it is unknown
+	 */
+	public String getContentHash() {
+		return contentHash;
+	}
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	@Override
+	public String toString() {
+		return "HarvestedRecord [identifier=" + identifier + ", datestamp=" + datestamp + ", contentHash=" + contentHash + ", deleted=" + deleted + "]";
+	}
+
+}
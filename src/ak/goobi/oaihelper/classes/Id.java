@@ -19,7 +19,8 @@ package ak.goobi.oaihelper.classes;
 import java.util.List;
 
 /**
- * This class holds the identifiers which are relevant for further processing.
+ * This class holds the identifiers which are relevant for further processing. Ids returned by GoobiOaiHelper.getDetailedIds() also hold the type of the
+ * structure element and the image numbers, page labels and URNs of its pages, otherwise these fields are null.
  * 
  * @author Michael Birkner
  */
@@ -28,6 +29,11 @@ public class Id {
 	private String dmdlogId;
 	private String logId;
 	private List<String> physIds;
+	private String type;
+	private List<String> orderNos;
+	private List<String> orderLabels;
+	private List<String> urns;
+	private String pageLabel;
 	
 	public Id(String dmdlogId, String logId, List<String> physIds) {
 		this.dmdlogId = dmdlogId;
@@ -53,6 +59,61 @@ public class Id {
 	public void setPhysIds(List<String> physIds) {
 		this.physIds = physIds;
 	}
+	/**
+	 * Gets the type of the structure element, e. g. "Article".
+	 * 
+	 * @return	a String with the type
+	 */
+	public String getType() {
+		return type;
+	}
+	public void setType(String type) {
+		this.type = type;
+	}
+	/**
+	 * Gets the 8-digit image numbers of the pages (see GoobiOaiHelper.getOrderNoByPhysId()).
+	 * 
+	 * @return	a List<String> with one image number per physical ID
+	 */
+	public List<String> getOrderNos() {
+		return orderNos;
+	}
+	public void setOrderNos(List<String> orderNos) {
+		this.orderNos = orderNos;
+	}
+	/**
+	 * Gets the page labels (attribute ORDERLABEL) of the pages.
+	 * 
+	 * @return	a List<String> with one page label per physical ID
+	 */
+	public List<String> getOrderLabels() {
+		return orderLabels;
+	}
+	public void setOrderLabels(List<String> orderLabels) {
+		this.orderLabels = orderLabels;
+	}
+	/**
+	 * Gets the URNs (attribute CONTENTIDS) of the pages.
+	 * 
+	 * @return	a List<String> with one URN (or null) per physical ID
+	 */
+	public List<String> getUrns() {
+		return urns;
+	}
+	public void setUrns(List<String> urns) {
+		this.urns = urns;
+	}
+	/**
+	 * Gets the page range of the structure element, e. g. "23-42" or "23" (see GoobiOaiHelper.getPageLabelByPhysId()).
+	 * 
+	 * @return	a String with the page range
+	 */
+	public String getPageLabel() {
+		return pageLabel;
+	}
+	public void setPageLabel(String pageLabel) {
+		this.pageLabel = pageLabel;
+	}
 
 	@Override
 	public String toString() {
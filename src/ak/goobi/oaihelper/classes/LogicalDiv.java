@@ -0,0 +1,52 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+/**
+ * This class holds the attributes of one div of the logical structure map (see element <mets:structMap TYPE="LOGICAL">) of a METS-XML document.
+ * Attributes that do not exist or are empty in the METS-XML are null.
+ * 
+ * @author Michael Birkner
+ */
+public class LogicalDiv {
+
+	private String logId;
+	private String dmdlogId;
+	private String type;
+
+	public LogicalDiv(String logId, String dmdlogId, String type) {
+		this.logId = logId;
+		this.dmdlogId = dmdlogId;
+		this.type = type;
+	}
+
+	public String getLogId() {
+		return logId;
+	}
+	public String getDmdlogId() {
+		return dmdlogId;
+	}
+	public String getType() {
+		return type;
+	}
+
+	@Override
+	public String toString() {
+		return "LogicalDiv [logId=" + logId + ", dmdlogId=" + dmdlogId + ", type=" + type + "]";
+	}
+
+}
@@ -0,0 +1,225 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * This class holds the structural data of one METS-XML document in hash maps, so that the physical pages, the links between the logical and the physical
+ * structure map, the MODS sections and their metadata can be looked up by their identifiers without searching the whole document again. An index is built once per
+ * document, e. g. with ak.goobi.oaihelper.parsers.MetsIndexer, and should not be changed after it was built.
+ * 
+ * @author Michael Birkner
+ */
+public class MetsIndex {
+
+	private Document document;
+	private List<LogicalDiv> logicalDivs = new ArrayList<LogicalDiv>();
+	private Map<String, PhysicalPage> physicalPages = new LinkedHashMap<String, PhysicalPage>();
+	private Map<String, List<String>> structLinks = new HashMap<String, List<String>>();
+	private Map<String, Element> modsSections = new HashMap<String, Element>();
+	private Map<String, ModsRecord> modsRecords = new LinkedHashMap<String, ModsRecord>();
+	private volatile Map<Integer, PhysicalPage> physicalPagesByOrder;
+
+	/**
+	 * Creates an empty index.
+	 * 
+	 * @param document	the Document from which the index is built or null if it is built without a DOM Document (e. g. by ak.goobi.oaihelper.parsers.MetsStreamParser)
+	 */
+	public MetsIndex(Document document) {
+		this.document = document;
+	}
+
+	/**
+	 * Adds a div of the logical structure map. The divs should be added in the order they appear in the METS-XML document.
+	 * 
+	 * @param logicalDiv	a LogicalDiv
+	 */
+	public void addLogicalDiv(LogicalDiv logicalDiv) {
+		logicalDivs.add(logicalDiv);
+	}
+
+	/**
+	 * Adds a div of the physical structure map.
+	 * 
+	 * @param physicalPage	a PhysicalPage
+	 */
+	public void addPhysicalPage(PhysicalPage physicalPage) {
+		physicalPages.put(physicalPage.getPhysId(), physicalPage);
+	}
+
+	/**
+	 * Adds a link between the logical and the physical structure map (see element <mets:smLink>).
+	 * 
+	 * @param from	a String with the identifier of the logical structure map (attribute xlink:from)
+	 * @param to	a String with the identifier of the physical structure map (attribute xlink:to)
+	 */
+	public void addStructLink(String from, String to) {
+		List<String> targets = structLinks.get(from);
+		if (targets == null) {
+			targets = new ArrayList<String>();
+			structLinks.put(from, targets);
+		}
+		targets.add(to);
+	}
+
+	/**
+	 * Adds the MODS section (see element <mods:mods>) of a <mets:dmdSec>.
+	 * 
+	 * @param dmdlogId	a String with the ID of the <mets:dmdSec>
+	 * @param mods		the <mods:mods> Element
+	 */
+	public void addModsSection(String dmdlogId, Element mods) {
+		modsSections.put(dmdlogId, mods);
+	}
+
+	/**
+	 * Adds the metadata of the MODS section of a <mets:dmdSec>. The records should be added in the order they appear in the METS-XML document.
+	 * 
+	 * @param modsRecord	a ModsRecord
+	 */
+	public void addModsRecord(ModsRecord modsRecord) {
+		modsRecords.put(modsRecord.getDmdlogId(), modsRecord);
+	}
+
+	/**
+	 * Gets the Document from which the index was built.
+	 * 
+	 * @return	a Document or null if the index was not built from a DOM Document
+	 */
+	public Document getDocument() {
+		return document;
+	}
+
+	/**
+	 * Gets all divs of the logical structure map in the order they appear in the METS-XML document.
+	 * 
+	 * @return	an unmodifiable List<LogicalDiv>
+	 */
+	public List<LogicalDiv> getLogicalDivs() {
+		return Collections.unmodifiableList(logicalDivs);
+	}
+
+	/**
+	 * Gets all divs of the physical structure map in the order they appear in the METS-XML document.
+	 * 
+	 * @return	an unmodifiable Collection<PhysicalPage>
+	 */
+	public Collection<PhysicalPage> getPhysicalPages() {
+		return Collections.unmodifiableCollection(physicalPages.values());
+	}
+
+	/**
+	 * Gets a div of the physical structure map by its ID.
+	 * 
+	 * @param physId	a String with the ID of the div
+	 * @return			a PhysicalPage or null if there is no div with the given ID
+	 */
+	public PhysicalPage getPhysicalPage(String physId) {
+		return physicalPages.get(physId);
+	}
+
+	/**
+	 * Gets a div of the physical structure map by its ORDER attribute. The lookup table is built on the first call, so call this method only after the
+	 * index is complete.
+	 * 
+	 * @param order		the order of the div
+	 * @return			a PhysicalPage or null if there is no div with the given order
+	 */
+	public PhysicalPage getPhysicalPageByOrder(int order) {
+		Map<Integer, PhysicalPage> pagesByOrder = physicalPagesByOrder;
+		if (pagesByOrder == null) {
+			pagesByOrder = new HashMap<Integer, PhysicalPage>();
+			for (PhysicalPage physicalPage : physicalPages.values()) {
+				Integer orderNo = Integer.valueOf(physicalPage.getOrderNo());
+				// Keep the first div if more than one div has the same order
+				if (orderNo.intValue() >= 0 && !pagesByOrder.containsKey(orderNo)) {
+					pagesByOrder.put(orderNo, physicalPage);
+				}
+			}
+			physicalPagesByOrder = pagesByOrder;
+		}
+		return pagesByOrder.get(Integer.valueOf(order));
+	}
+
+	/**
+	 * Gets the identifiers of the physical structure map that are linked to an identifier of the logical structure map.
+	 * 
+	 * @param logId		a String with the ID of a div of the logical structure map
+	 * @return			an unmodifiable List<String> in the order of the <mets:smLink> elements or null if there are no links
+	 */
+	public List<String> getStructLinks(String logId) {
+		List<String> targets = structLinks.get(logId);
+		return (targets != null) ? Collections.unmodifiableList(targets) : null;
+	}
+
+	/**
+	 * Gets the MODS section of a <mets:dmdSec> by its ID.
+	 * 
+	 * @param dmdlogId	a String with the ID of the <mets:dmdSec>
+	 * @return			the <mods:mods> Element or null if there is none for the given ID
+	 */
+	public Element getModsSection(String dmdlogId) {
+		return modsSections.get(dmdlogId);
+	}
+
+	/**
+	 * Gets the metadata of the MODS section of a <mets:dmdSec> by its ID.
+	 * 
+	 * @param dmdlogId	a String with the ID of the <mets:dmdSec>
+	 * @return			a ModsRecord or null if there is no MODS section for the given ID
+	 */
+	public ModsRecord getModsRecord(String dmdlogId) {
+		return modsRecords.get(dmdlogId);
+	}
+
+	/**
+	 * Gets the metadata of all MODS sections in the order they appear in the METS-XML document.
+	 * 
+	 * @return	an unmodifiable Collection<ModsRecord>
+	 */
+	public Collection<ModsRecord> getModsRecords() {
+		return Collections.unmodifiableCollection(modsRecords.values());
+	}
+
+	/**
+	 * Gets the author names of the MODS section of a <mets:dmdSec> by its ID (see ModsRecord.getAuthorNames()).
+	 * 
+	 * @param dmdlogId	a String with the ID of the <mets:dmdSec>
+	 * @return			a List<String> with author names in the format "FirstName LastName" or null if there are none for the given ID
+	 */
+	public List<String> getAuthorNames(String dmdlogId) {
+		ModsRecord modsRecord = modsRecords.get(dmdlogId);
+		List<String> names = (modsRecord != null) ? modsRecord.getAuthorNames() : null;
+		return (names != null && !names.isEmpty()) ? names : null;
+	}
+
+	@Override
+	public String toString() {
+		return "MetsIndex [logicalDivs=" + logicalDivs.size() + ", physicalPages=" + physicalPages.size() + ", structLinks=" + structLinks.size() + ", modsSections=" + modsSections.size() + ", modsRecords=" + modsRecords.size() + "]";
+	}
+
+}
@@ -0,0 +1,87 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds one <mods:name> element of a MODS section: the name parts, the display form and the roles (e. g. "aut" for author). Values that do
+ * not exist in the METS-XML are null.
+ * 
+ * @author Michael Birkner
+ */
+public class ModsName {
+
+	private String type;
+	private String givenName;
+	private String familyName;
+	private String displayForm;
+	private List<String> roles;
+
+	/**
+	 * @param type			a String with the type attribute (e. g. "personal" or "corporate")
+	 * @param givenName		a String with the <mods:namePart type="given">
+	 * @param familyName	a String with the <mods:namePart type="family"> or the <mods:namePart> without a type
+	 * @param displayForm	a String with the <mods:displayForm>
+	 * @param roles			a List<String> with the role terms of all <mods:role> elements
+	 */
+	public ModsName(String type, String givenName, String familyName, String displayForm, List<String> roles) {
+		this.type = type;
+		this.givenName = givenName;
+		this.familyName = familyName;
+		this.displayForm = displayForm;
+		this.roles = roles;
+	}
+
+	public String getType() {
+		return type;
+	}
+	public String getGivenName() {
+		return givenName;
+	}
+	public String getFamilyName() {
+		return familyName;
+	}
+	public String getDisplayForm() {
+		return displayForm;
+	}
+	/**
+	 * @return	an unmodifiable List<String> with the role terms (e. g. "aut") in document order. It is empty if the name has no role.
+	 */
+	public List<String> getRoles() {
+		return Collections.unmodifiableList(roles);
+	}
+
+	/**
+	 * Gets the name in the format "FirstName LastName". If a part is missing, only the other part is returned.
+	 * 
+	 * @return	a String with the name or null if the name has neither a given nor a family name
+	 */
+	public String getFullName() {
+		if (givenName != null && familyName != null) {
+			return givenName + " " + familyName;
+		}
+		return (givenName != null) ? givenName : familyName;
+	}
+
+	@Override
+	public String toString() {
+		return "ModsName [type=" + type + ", givenName=" + givenName + ", familyName=" + familyName + ", displayForm=" + displayForm + ", roles=" + roles + "]";
+	}
+
+}
@@ -0,0 +1,153 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the descriptive metadata of one structure element: the values of the MODS section (see element <mods:mods>) of its <mets:dmdSec>
+ * that are used most often. Values that do not exist in the METS-XML are null or empty lists.
+ * 
+ * @author Michael Birkner
+ */
+public class ModsRecord {
+
+	private String dmdlogId;
+	private String nonSort;
+	private String title;
+	private String subTitle;
+	private List<String> languages = new ArrayList<String>();
+	private Map<String, List<String>> identifiers = new LinkedHashMap<String, List<String>>();
+	private List<ModsName> names = new ArrayList<ModsName>();
+
+	/**
+	 * @param dmdlogId	a String with the ID of the <mets:dmdSec>
+	 */
+	public ModsRecord(String dmdlogId) {
+		this.dmdlogId = dmdlogId;
+	}
+
+	public String getDmdlogId() {
+		return dmdlogId;
+	}
+
+	/**
+	 * Gets the <mods:nonSort> part of the title, e. g. an article like "Der ".
+	 * 
+	 * @return	a String with the non sorting part of the title or null
+	 */
+	public String getNonSort() {
+		return nonSort;
+	}
+	public void setNonSort(String nonSort) {
+		this.nonSort = nonSort;
+	}
+	/**
+	 * @return	a String with the <mods:title> of the first <mods:titleInfo> or null
+	 */
+	public String getTitle() {
+		return title;
+	}
+	public void setTitle(String title) {
+		this.title = title;
+	}
+	/**
+	 * @return	a String with the <mods:subTitle> of the first <mods:titleInfo> or null
+	 */
+	public String getSubTitle() {
+		return subTitle;
+	}
+	public void setSubTitle(String subTitle) {
+		this.subTitle = subTitle;
+	}
+
+	/**
+	 * @return	an unmodifiable List<String> with the <mods:languageTerm> values (e. g. "ger") in document order
+	 */
+	public List<String> getLanguages() {
+		return Collections.unmodifiableList(languages);
+	}
+	public void addLanguage(String language) {
+		languages.add(language);
+	}
+
+	/**
+	 * Gets all <mods:identifier> values by their type attribute.
+	 * 
+	 * @return	an unmodifiable Map<String, List<String>> with the type (e. g. "urn" or "doi", an empty String if the identifier has no type) as key and
+	 * 			the identifiers of this type in document order as value
+	 */
+	public Map<String, List<String>> getIdentifiers() {
+		return Collections.unmodifiableMap(identifiers);
+	}
+	/**
+	 * Gets the first <mods:identifier> of a type.
+	 * 
+	 * @param type	a String with the type attribute, e. g. "urn"
+	 * @return		a String with the identifier or null if there is no identifier of this type
+	 */
+	public String getIdentifier(String type) {
+		List<String> values = identifiers.get(type);
+		return (values != null) ? values.get(0) : null;
+	}
+	public void addIdentifier(String type, String identifier) {
+		String key = (type != null) ? type : "";
+		List<String> values = identifiers.get(key);
+		if (values == null) {
+			values = new ArrayList<String>();
+			identifiers.put(key, values);
+		}
+		values.add(identifier);
+	}
+
+	/**
+	 * @return	an unmodifiable List<ModsName> with all <mods:name> elements in document order
+	 */
+	public List<ModsName> getNames() {
+		return Collections.unmodifiableList(names);
+	}
+	public void addName(ModsName name) {
+		names.add(name);
+	}
+
+	/**
+	 * Gets the names of all <mods:name type="personal"> elements in the format "FirstName LastName". The given and the family name are taken from the
+	 * same <mods:name> element.
+	 * 
+	 * @return	a List<String> with the names in document order. It is empty if there are no personal names.
+	 */
+	public List<String> getAuthorNames() {
+		List<String> authorNames = new ArrayList<String>();
+		for (ModsName name : names) {
+			String fullName = name.getFullName();
+			if ("personal".equals(name.getType()) && fullName != null) {
+				authorNames.add(fullName);
+			}
+		}
+		return authorNames;
+	}
+
+	@Override
+	public String toString() {
+		return "ModsRecord [dmdlogId=" + dmdlogId + ", nonSort=" + nonSort + ", title=" + title + ", subTitle=" + subTitle + ", languages=" + languages + ", identifiers=" + identifiers + ", names=" + names + "]";
+	}
+
+}
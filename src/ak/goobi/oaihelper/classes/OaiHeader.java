@@ -0,0 +1,64 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+import java.util.List;
+
+/**
+ * This class holds the header of a record of an OAI-PMH response (see element <header>). Further information:
+ * http://www.openarchives.org/OAI/openarchivesprotocol.html#Record
+ * 
+ * @author Michael Birkner
+ */
+public class OaiHeader {
+
+	private String identifier;
+	private String datestamp;
+	private List<String> setSpecs;
+	private boolean deleted;
+
+	public OaiHeader(String identifier, String datestamp, List<String> setSpecs, boolean deleted) {
+		this.identifier = identifier;
+		this.datestamp = datestamp;
+		this.setSpecs = setSpecs;
+		this.deleted = deleted;
+	}
+
+	public String getIdentifier() {
+		return identifier;
+	}
+	public String getDatestamp() {
+		return datestamp;
+	}
+	public List<String> getSetSpecs() {
+		return setSpecs;
+	}
+	/**
+	 * Returns true if the header has the attribute status="deleted". Deleted records have no metadata.
+	 * 
+	 * @return	true if the record was deleted
+	 */
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	@Override
+	public String toString() {
+		return "OaiHeader [identifier=" + identifier + ", datestamp=" + datestamp + ", setSpecs=" + setSpecs + ", deleted=" + deleted + "]";
+	}
+
+}
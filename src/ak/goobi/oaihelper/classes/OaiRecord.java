@@ -0,0 +1,66 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+/**
+ * This class holds one record of an OAI-PMH response: its header and the index of its METS-XML metadata.
+ * 
+ * @author Michael Birkner
+ */
+public class OaiRecord {
+
+	private OaiHeader header;
+	private MetsIndex metsIndex;
+	private String contentHash;
+
+	public OaiRecord(OaiHeader header, MetsIndex metsIndex) {
+		this(header, metsIndex, null);
+	}
+
+	public OaiRecord(OaiHeader header, MetsIndex metsIndex, String contentHash) {
+		this.header = header;
+		this.metsIndex = metsIndex;
+		this.contentHash = contentHash;
+	}
+
+	public OaiHeader getHeader() {
+		return header;
+	}
+	/**
+	 * Gets the index of the METS-XML metadata of the record.
+	 * 
+	 * @return	a MetsIndex or null if the record has no metadata (deleted records or records of a ListIdentifiers response)
+	 */
+	public MetsIndex getMetsIndex() {
+		return metsIndex;
+	}
+	/**
+	 * Gets the hash of the metadata of the record. The hash is calculated from the XML content of the <metadata> element (elements, attributes and
+	 * text), so it does not change if only the formatting of the XML changes. See OaiResponseParser.setContentHash(boolean).
+	 * 
+	 * @return	a String with the hexadecimal SHA-1 hash or null if no hash was calculated or the record has no metadata
+	 */
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	@Override
+	public String toString() {
+		return "OaiRecord [header=" + header + ", metsIndex=" + metsIndex + ", contentHash=" + contentHash + "]";
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class holds the content of one OAI-PMH response (GetRecord, ListRecords or ListIdentifiers): the records, the resumption token for the next
+ * part of an incomplete list and the OAI-PMH error, if there was one.
+ * 
+ * @author Michael Birkner
+ */
+public class OaiResponse {
+
+	private String responseDate;
+	private List<OaiRecord> records = new ArrayList<OaiRecord>();
+	private String resumptionToken;
+	private int completeListSize = -1;
+	private String errorCode;
+	private String errorMessage;
+
+	/**
+	 * Gets the date and time of the response on the server (see element <responseDate>).
+	 * 
+	 * @return	a String with the UTC date and time (e. g. "2016-05-01T10:00:00Z") or null if the response has no responseDate
+	 */
+	public String getResponseDate() {
+		return responseDate;
+	}
+	public void setResponseDate(String responseDate) {
+		this.responseDate = responseDate;
+	}
+
+	public void addRecord(OaiRecord record) {
+		records.add(record);
+	}
+	public List<OaiRecord> getRecords() {
+		return records;
+	}
+	/**
+	 * Gets the resumption token for the next request of an incomplete list.
+	 * 
+	 * @return	a String with the resumption token or null if this is the last (or only) part of the list
+	 */
+	public String getResumptionToken() {
+		return resumptionToken;
+	}
+	public void setResumptionToken(String resumptionToken) {
+		this.resumptionToken = resumptionToken;
+	}
+	/**
+	 * Gets the size of the complete list as reported by the attribute completeListSize of the resumption token.
+	 * 
+	 * @return	the size of the complete list or -1 if it is unknown
+	 */
+	public int getCompleteListSize() {
+		return completeListSize;
+	}
+	public void setCompleteListSize(int completeListSize) {
+		this.completeListSize = completeListSize;
+	}
+	/**
+	 * Gets the code of the OAI-PMH error (e. g. "noRecordsMatch" or "badResumptionToken").
+	 * 
+	 * @return	a String with the error code or null if there was no error
+	 */
+	public String getErrorCode() {
+		return errorCode;
+	}
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+	public void setError(String errorCode, String errorMessage) {
+		this.errorCode = errorCode;
+		this.errorMessage = errorMessage;
+	}
+
+	@Override
+	public String toString() {
+		return "OaiResponse [responseDate=" + responseDate + ", records=" + records.size() + ", resumptionToken=" + resumptionToken + ", completeListSize=" + completeListSize + ", errorCode=" + errorCode + "]";
+	}
+
+}
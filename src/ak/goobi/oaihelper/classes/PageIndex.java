@@ -0,0 +1,598 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ak.goobi.oaihelper.cache.AtomicFiles;
+
+/**
+ * This class holds the pages of one volume in a compact binary form: the divs of the physical structure map with their ID, ORDER, ORDERLABEL and
+ * CONTENTIDS (URN) and the pages that are linked to each div of the logical structure map. It is built once from a MetsIndex, can be written to a small
+ * file and read or memory-mapped from it later, so the pages and page ranges of a volume can be queried many times without parsing the METS-XML again.
+ * 
+ * All data is kept in one ByteBuffer and read with absolute positions, so a PageIndex is immutable and can be shared by many threads. IDs are found by
+ * binary search over the UTF-8 bytes, no Strings are created for the search. The file format is:
+ * <pre>
+ * header:		int magic, int version, int number of pages, int number of logical divs, int number of links, int size of the string area
+ * pages:		per page int physId, int order, int orderNo, int orderLabel, int urn (strings as offsets into the string area, -1 for null)
+ * physIds:		per page the index of the page, sorted by physId
+ * logical:		per logical div int logId, int index of the first link, int number of links
+ * logIds:		per logical div the index of the div, sorted by logId
+ * links:		per link int physId, int index of the page (-1 if there is no div with the physId)
+ * strings:		per string int length and the UTF-8 bytes
+ * </pre>
+ * All ints are big-endian.
+ * 
+ * @author Michael Birkner
+ */
+public final class PageIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int MAGIC = 0x50494458; // "PIDX"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 6 * 4;
+	private static final int PAGE_SIZE = 5 * 4;
+	private static final int LOGICAL_SIZE = 3 * 4;
+	private static final int LINK_SIZE = 2 * 4;
+
+	private final transient ByteBuffer buffer;
+	private final transient int pageCount;
+	private final transient int logicalCount;
+	private final transient int pagesStart;
+	private final transient int physIdsStart;
+	private final transient int logicalStart;
+	private final transient int logIdsStart;
+	private final transient int linksStart;
+	private final transient int stringsStart;
+
+
+	private PageIndex(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a page index");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported page index version " + buffer.getInt(4));
+		}
+		pageCount = buffer.getInt(8);
+		logicalCount = buffer.getInt(12);
+		int linkCount = buffer.getInt(16);
+		int stringsSize = buffer.getInt(20);
+		pagesStart = HEADER_SIZE;
+		physIdsStart = pagesStart + pageCount * PAGE_SIZE;
+		logicalStart = physIdsStart + pageCount * 4;
+		logIdsStart = logicalStart + logicalCount * LOGICAL_SIZE;
+		linksStart = logIdsStart + logicalCount * 4;
+		stringsStart = linksStart + linkCount * LINK_SIZE;
+		if (pageCount < 0 || logicalCount < 0 || linkCount < 0 || stringsSize < 0 || (long)stringsStart + stringsSize != buffer.capacity()) {
+			throw new IOException("Corrupt page index");
+		}
+	}
+
+
+	/**
+	 * Builds the page index of a volume.
+	 * 
+	 * @param metsIndex	the MetsIndex of the METS-XML of the volume
+	 * @return			a PageIndex
+	 */
+	public static PageIndex build(MetsIndex metsIndex) {
+		StringArea strings = new StringArea();
+		List<PhysicalPage> pages = new ArrayList<PhysicalPage>(metsIndex.getPhysicalPages());
+		List<LogicalDiv> logicalDivs = metsIndex.getLogicalDivs();
+
+		Map<String, Integer> pageNos = new HashMap<String, Integer>();
+		int[] pageRefs = new int[pages.size() * 5];
+		for (int i = 0; i < pages.size(); i++) {
+			PhysicalPage page = pages.get(i);
+			pageNos.put(page.getPhysId(), Integer.valueOf(i));
+			pageRefs[i * 5] = strings.add(page.getPhysId());
+			pageRefs[i * 5 + 1] = strings.add(page.getOrder());
+			pageRefs[i * 5 + 2] = page.getOrderNo();
+			pageRefs[i * 5 + 3] = strings.add(page.getOrderLabel());
+			pageRefs[i * 5 + 4] = strings.add(page.getContentIds());
+		}
+
+		int[] logicalRefs = new int[logicalDivs.size() * 3];
+		List<Integer> linkRefs = new ArrayList<Integer>();
+		for (int i = 0; i < logicalDivs.size(); i++) {
+			List<String> structLinks = metsIndex.getStructLinks(logicalDivs.get(i).getLogId());
+			logicalRefs[i * 3] = strings.add(logicalDivs.get(i).getLogId());
+			logicalRefs[i * 3 + 1] = linkRefs.size() / 2;
+			logicalRefs[i * 3 + 2] = (structLinks != null) ? structLinks.size() : -1;
+			if (structLinks != null) {
+				for (String physId : structLinks) {
+					Integer pageNo = pageNos.get(physId);
+					linkRefs.add(Integer.valueOf(strings.add(physId)));
+					linkRefs.add(Integer.valueOf((pageNo != null) ? pageNo.intValue() : -1));
+				}
+			}
+		}
+
+		int[] physIdOrder = sortByString(pageRefs, 5, strings);
+		int[] logIdOrder = sortByString(logicalRefs, 3, strings);
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + pageRefs.length * 4 + physIdOrder.length * 4 + logicalRefs.length * 4 + logIdOrder.length * 4 + linkRefs.size() * 4 + strings.size());
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(pages.size()).putInt(logicalDivs.size()).putInt(linkRefs.size() / 2).putInt(strings.size());
+		for (int ref : pageRefs) {
+			buffer.putInt(ref);
+		}
+		for (int pageNo : physIdOrder) {
+			buffer.putInt(pageNo);
+		}
+		for (int ref : logicalRefs) {
+			buffer.putInt(ref);
+		}
+		for (int logicalNo : logIdOrder) {
+			buffer.putInt(logicalNo);
+		}
+		for (Integer ref : linkRefs) {
+			buffer.putInt(ref.intValue());
+		}
+		strings.writeTo(buffer);
+		buffer.flip();
+
+		try {
+			return new PageIndex(buffer);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	/**
+	 * Uses the bytes of a page index, e. g. from a database or a cache.
+	 * 
+	 * @param bytes			a byte[] as returned by toByteArray()
+	 * @return				a PageIndex
+	 * @throws IOException	if the bytes are not a valid page index
+	 */
+	public static PageIndex wrap(byte[] bytes) throws IOException {
+		return new PageIndex(ByteBuffer.wrap(bytes));
+	}
+
+
+	/**
+	 * Memory-maps a page index file. The pages are read from the file when they are queried, so many page indexes can be opened without loading them
+	 * into the heap. The file must not be changed while it is mapped.
+	 * 
+	 * @param file			the File that was written with write()
+	 * @return				a PageIndex
+	 * @throws IOException	if the file can not be read or is not a valid page index
+	 */
+	public static PageIndex map(File file) throws IOException {
+		FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			return new PageIndex(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size()));
+		} finally {
+			// The mapping stays valid after the channel is closed
+			fileChannel.close();
+		}
+	}
+
+
+	/**
+	 * Writes the page index to a file. It is written to a temporary file first that replaces the old file in one atomic step (see AtomicFiles), so the
+	 * file is always complete. Do not replace a file that is currently memory-mapped on Windows, as mapped files can not be deleted there.
+	 * 
+	 * @param file			the File to write to
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create directory " + directory);
+		}
+		File tmpFile = File.createTempFile("." + file.getName() + ".", ".tmp", directory);
+		FileOutputStream fileOutputStream = new FileOutputStream(tmpFile);
+		try {
+			fileOutputStream.write(toByteArray());
+		} catch (IOException e) {
+			fileOutputStream.close();
+			tmpFile.delete();
+			throw e;
+		}
+		fileOutputStream.close();
+
+		AtomicFiles.replace(tmpFile, file);
+	}
+
+
+	/**
+	 * Gets the bytes of the page index in the file format.
+	 * 
+	 * @return	a new byte[]
+	 */
+	public byte[] toByteArray() {
+		byte[] bytes = new byte[buffer.capacity()];
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.clear();
+		duplicate.get(bytes);
+		return bytes;
+	}
+
+
+	/**
+	 * Gets the size of the page index in bytes, e. g. to weigh it in a cache.
+	 * 
+	 * @return	the size in bytes
+	 */
+	public int getSize() {
+		return buffer.capacity();
+	}
+
+
+	/**
+	 * Gets the number of divs of the physical structure map. The pages are numbered from 0 in the order of the METS-XML.
+	 * 
+	 * @return	the number of pages
+	 */
+	public int getPageCount() {
+		return pageCount;
+	}
+
+
+	/**
+	 * Finds a page by the ID of its div of the physical structure map.
+	 * 
+	 * @param physId	a String with the ID of the div
+	 * @return			the number of the page or -1 if there is no div with the given ID
+	 */
+	public int getPageNo(String physId) {
+		int i = binarySearch(physIdsStart, pageCount, pagesStart, PAGE_SIZE, physId);
+		return (i >= 0) ? buffer.getInt(physIdsStart + i * 4) : -1;
+	}
+
+	public String getPhysId(int pageNo) {
+		return getString(buffer.getInt(getPagePosition(pageNo)));
+	}
+
+	public String getOrder(int pageNo) {
+		return getString(buffer.getInt(getPagePosition(pageNo) + 4));
+	}
+
+	/**
+	 * Gets the ORDER attribute of a page as a number (see PhysicalPage.getOrderNo()).
+	 * 
+	 * @param pageNo	the number of the page
+	 * @return			the order or -1 if the ORDER attribute does not exist or is not a non-negative number
+	 */
+	public int getOrderNo(int pageNo) {
+		return buffer.getInt(getPagePosition(pageNo) + 8);
+	}
+
+	public String getOrderLabel(int pageNo) {
+		return getString(buffer.getInt(getPagePosition(pageNo) + 12));
+	}
+
+	public String getUrn(int pageNo) {
+		return getString(buffer.getInt(getPagePosition(pageNo) + 16));
+	}
+
+	/**
+	 * Gets the 8-digit image number of a page, e. g. "00000023".
+	 * 
+	 * @param pageNo	the number of the page
+	 * @return			a String with the image number
+	 * @throws NumberFormatException	if the ORDER attribute of the page is not a number
+	 */
+	public String getImageNo(int pageNo) {
+		int orderNo = getOrderNo(pageNo);
+		if (orderNo >= 0) {
+			return PageOrders.formatImageNo(orderNo);
+		}
+		return String.format("%08d", Integer.valueOf(Integer.parseInt(getOrder(pageNo))));
+	}
+
+
+	/**
+	 * Gets the identifiers of the physical structure map that are linked to a div of the logical structure map (see MetsIndex.getStructLinks()).
+	 * 
+	 * @param logId		a String with the ID of a div of the logical structure map
+	 * @return			a List<String> in the order of the <mets:smLink> elements or null if there are no links
+	 */
+	public List<String> getPhysIds(String logId) {
+		int logicalPosition = getLogicalPosition(logId);
+		if (logicalPosition < 0 || buffer.getInt(logicalPosition + 8) < 0) {
+			return null;
+		}
+		int firstLink = buffer.getInt(logicalPosition + 4);
+		int linkCount = buffer.getInt(logicalPosition + 8);
+		List<String> physIds = new ArrayList<String>(linkCount);
+		for (int i = 0; i < linkCount; i++) {
+			physIds.add(getString(buffer.getInt(linksStart + (firstLink + i) * LINK_SIZE)));
+		}
+		return physIds;
+	}
+
+
+	/**
+	 * Gets the pages that are linked to a div of the logical structure map.
+	 * 
+	 * @param logId		a String with the ID of a div of the logical structure map
+	 * @return			an int[] with the numbers of the pages in the order of the <mets:smLink> elements (-1 for links to a missing div) or null if there are no links
+	 */
+	public int[] getPageNos(String logId) {
+		int logicalPosition = getLogicalPosition(logId);
+		if (logicalPosition < 0 || buffer.getInt(logicalPosition + 8) < 0) {
+			return null;
+		}
+		int firstLink = buffer.getInt(logicalPosition + 4);
+		int[] pageNos = new int[buffer.getInt(logicalPosition + 8)];
+		for (int i = 0; i < pageNos.length; i++) {
+			pageNos[i] = buffer.getInt(linksStart + (firstLink + i) * LINK_SIZE + 4);
+		}
+		return pageNos;
+	}
+
+
+	/**
+	 * Gets the page range of a div of the logical structure map as the labels of its first and last page, e. g. "23-42" or "23" for a single page.
+	 * 
+	 * @param logId		a String with the ID of a div of the logical structure map
+	 * @return			a String with the page range or null if there are no links or the first or last page has no label
+	 */
+	public String getPageRange(String logId) {
+		int[] pageNos = getPageNos(logId);
+		if (pageNos == null || pageNos.length == 0 || pageNos[0] < 0 || pageNos[pageNos.length - 1] < 0) {
+			return null;
+		}
+		String firstPage = getOrderLabel(pageNos[0]);
+		String lastPage = getOrderLabel(pageNos[pageNos.length - 1]);
+		if (firstPage == null || lastPage == null) {
+			return null;
+		}
+		return firstPage.equals(lastPage) ? firstPage.trim() : firstPage.trim() + "-" + lastPage.trim();
+	}
+
+
+	/**
+	 * Gets the image numbers of the pages of a div of the logical structure map.
+	 * 
+	 * @param logId		a String with the ID of a div of the logical structure map
+	 * @return			a List<String> with the 8-digit image numbers or null if there are no links
+	 * @throws NumberFormatException	if a linked div does not exist or its ORDER attribute is not a number
+	 */
+	public List<String> getImageNos(String logId) {
+		int[] pageNos = getPageNos(logId);
+		if (pageNos == null) {
+			return null;
+		}
+		int[] orders = new int[pageNos.length];
+		boolean numeric = true;
+		for (int i = 0; i < pageNos.length; i++) {
+			if (pageNos[i] < 0) {
+				throw new NumberFormatException("null");
+			}
+			orders[i] = getOrderNo(pageNos[i]);
+			numeric &= orders[i] >= 0;
+		}
+		if (numeric) {
+			return new PageOrders(orders);
+		}
+		List<String> imageNos = new ArrayList<String>(pageNos.length);
+		for (int pageNo : pageNos) {
+			imageNos.add(getImageNo(pageNo));
+		}
+		return imageNos;
+	}
+
+
+	private int getPagePosition(int pageNo) {
+		if (pageNo < 0 || pageNo >= pageCount) {
+			throw new IndexOutOfBoundsException("Page: " + pageNo + ", Pages: " + pageCount);
+		}
+		return pagesStart + pageNo * PAGE_SIZE;
+	}
+
+
+	private int getLogicalPosition(String logId) {
+		int i = binarySearch(logIdsStart, logicalCount, logicalStart, LOGICAL_SIZE, logId);
+		return (i >= 0) ? logicalStart + buffer.getInt(logIdsStart + i * 4) * LOGICAL_SIZE : -1;
+	}
+
+
+	/**
+	 * Searches an ID in a sorted table of record numbers. The first int of each record is the offset of its ID in the string area.
+	 */
+	private int binarySearch(int sortedStart, int count, int recordsStart, int recordSize, String id) {
+		if (id == null) {
+			return -1;
+		}
+		byte[] key = id.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int record = buffer.getInt(sortedStart + middle * 4);
+			int comparison = compareString(buffer.getInt(recordsStart + record * recordSize), key);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Compares a string of the string area with the UTF-8 bytes of a key, byte by byte without sign, as the tables were sorted at build time.
+	 */
+	private int compareString(int offset, byte[] key) {
+		if (offset < 0) {
+			return -1;
+		}
+		int position = stringsStart + offset;
+		int length = buffer.getInt(position);
+		position += 4;
+		for (int i = 0; i < length && i < key.length; i++) {
+			int difference = (buffer.get(position + i) & 0xFF) - (key[i] & 0xFF);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return length - key.length;
+	}
+
+
+	private String getString(int offset) {
+		if (offset < 0) {
+			return null;
+		}
+		int position = stringsStart + offset;
+		byte[] bytes = new byte[buffer.getInt(position)];
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.clear();
+		duplicate.position(position + 4);
+		duplicate.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+
+	/**
+	 * Sorts the numbers of the records of a table by the ID in the first int of each record.
+	 */
+	private static int[] sortByString(final int[] refs, final int recordInts, final StringArea strings) {
+		Integer[] order = new Integer[refs.length / recordInts];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return compareBytes(strings.getBytes(refs[a.intValue() * recordInts]), strings.getBytes(refs[b.intValue() * recordInts]));
+			}
+		});
+		int[] sorted = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			sorted[i] = order[i].intValue();
+		}
+		return sorted;
+	}
+
+
+	private static int compareBytes(byte[] a, byte[] b) {
+		if (a == null || b == null) {
+			return (a == null) ? ((b == null) ? 0 : -1) : 1;
+		}
+		for (int i = 0; i < a.length && i < b.length; i++) {
+			int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return a.length - b.length;
+	}
+
+
+	@Override
+	public String toString() {
+		return "PageIndex [pages=" + pageCount + ", logicalDivs=" + logicalCount + ", size=" + buffer.capacity() + "]";
+	}
+
+
+	/**
+	 * A PageIndex is serialized as its bytes in the file format.
+	 */
+	private Object writeReplace() {
+		return new SerializedForm(toByteArray());
+	}
+
+
+	private static class SerializedForm implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private byte[] bytes;
+
+		SerializedForm(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		private Object readResolve() throws ObjectStreamException {
+			try {
+				return wrap(bytes);
+			} catch (IOException e) {
+				throw new InvalidObjectException(e.getMessage());
+			}
+		}
+	}
+
+
+	/**
+	 * Collects the distinct strings of a page index with their offsets in the string area.
+	 */
+	private static class StringArea {
+
+		private Map<String, Integer> offsets = new HashMap<String, Integer>();
+		private List<byte[]> strings = new ArrayList<byte[]>();
+		private Map<Integer, byte[]> bytesByOffset = new HashMap<Integer, byte[]>();
+		private int size = 0;
+
+		int add(String string) {
+			if (string == null) {
+				return -1;
+			}
+			Integer offset = offsets.get(string);
+			if (offset == null) {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				offset = Integer.valueOf(size);
+				offsets.put(string, offset);
+				strings.add(bytes);
+				bytesByOffset.put(offset, bytes);
+				size += 4 + bytes.length;
+			}
+			return offset.intValue();
+		}
+
+		byte[] getBytes(int offset) {
+			return (offset < 0) ? null : bytesByOffset.get(Integer.valueOf(offset));
+		}
+
+		int size() {
+			return size;
+		}
+
+		void writeTo(ByteBuffer buffer) {
+			for (byte[] bytes : strings) {
+				buffer.putInt(bytes.length);
+				buffer.put(bytes);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * This class holds the page orders (attribute ORDER of the physical structure map) of a structure element in a compact form. Consecutive orders are
+ * stored as runs of first and last order, so an article on pages 23 to 42 needs two ints instead of 20 Strings. As a List<String>, it returns the
+ * 8-digit image numbers (e. g. "00000023"), which are only created when they are requested.
+ * 
+ * @author Michael Birkner
+ */
+public class PageOrders extends AbstractList<String> {
+
+	// First and last order of each run, e. g. {23, 42, 50, 50} for the orders 23 to 42 and 50
+	private final int[] runs;
+	// Index of the first order of each run in the list of all orders
+	private final int[] runOffsets;
+	private final int size;
+
+
+	/**
+	 * @param orders	an int[] with the page orders in the order of the pages of the structure element
+	 */
+	public PageOrders(int[] orders) {
+		int[] tmpRuns = new int[Math.max(2, orders.length * 2)];
+		int[] tmpRunOffsets = new int[Math.max(1, orders.length)];
+		int noOfRuns = 0;
+		for (int i = 0; i < orders.length; i++) {
+			if (noOfRuns > 0 && tmpRuns[noOfRuns * 2 - 1] + 1 == orders[i]) {
+				tmpRuns[noOfRuns * 2 - 1] = orders[i];
+			} else {
+				tmpRuns[noOfRuns * 2] = orders[i];
+				tmpRuns[noOfRuns * 2 + 1] = orders[i];
+				tmpRunOffsets[noOfRuns] = i;
+				noOfRuns++;
+			}
+		}
+		this.runs = Arrays.copyOf(tmpRuns, noOfRuns * 2);
+		this.runOffsets = Arrays.copyOf(tmpRunOffsets, noOfRuns);
+		this.size = orders.length;
+	}
+
+
+	/**
+	 * Gets the 8-digit image number of a page, e. g. "00000023".
+	 * 
+	 * @param index		the index of the page within the structure element
+	 * @return			a String with the image number
+	 */
+	@Override
+	public String get(int index) {
+		return formatImageNo(getOrder(index));
+	}
+
+
+	/**
+	 * Gets the order of a page.
+	 * 
+	 * @param index		the index of the page within the structure element
+	 * @return			the order of the page
+	 */
+	public int getOrder(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		int run = Arrays.binarySearch(runOffsets, index);
+		if (run < 0) {
+			run = -run - 2;
+		}
+		return runs[run * 2] + (index - runOffsets[run]);
+	}
+
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+
+	/**
+	 * Gets the number of runs of consecutive orders. A structure element on contiguous pages has one run.
+	 * 
+	 * @return	the number of runs
+	 */
+	public int getNoOfRuns() {
+		return runOffsets.length;
+	}
+
+	public int getFirstOrderOfRun(int run) {
+		return runs[run * 2];
+	}
+
+	public int getLastOrderOfRun(int run) {
+		return runs[run * 2 + 1];
+	}
+
+
+	/**
+	 * Gets all orders as an int[].
+	 * 
+	 * @return	an int[] with the orders in the order of the pages of the structure element
+	 */
+	public int[] toOrderArray() {
+		int[] orders = new int[size];
+		for (int run = 0, i = 0; run < runOffsets.length; run++) {
+			for (int order = runs[run * 2]; order <= runs[run * 2 + 1]; order++) {
+				orders[i++] = order;
+			}
+		}
+		return orders;
+	}
+
+
+	/**
+	 * Formats a page order as an image number with at least 8 digits and leading zeros, like String.format("%08d", order) but without parsing a format
+	 * String. Negative orders are formatted with String.format().
+	 * 
+	 * @param order		the page order
+	 * @return			a String with the image number, e. g. "00000023"
+	 */
+	public static String formatImageNo(int order) {
+		if (order < 0 || order > 99999999) {
+			return (order < 0) ? String.format("%08d", order) : Integer.toString(order);
+		}
+		char[] digits = {'0', '0', '0', '0', '0', '0', '0', '0'};
+		for (int i = 7; order > 0; i--) {
+			digits[i] = (char)('0' + order % 10);
+			order /= 10;
+		}
+		return new String(digits);
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.classes;
+
+/**
+ * This class holds the attributes of one div of the physical structure map (see element <mets:structMap TYPE="PHYSICAL">) of a METS-XML document.
+ * Attributes that do not exist in the METS-XML are null.
+ * 
+ * @author Michael Birkner
+ */
+public class PhysicalPage {
+
+	private String physId;
+	private String order;
+	private String orderLabel;
+	private String contentIds;
+	private int orderNo;
+
+	public PhysicalPage(String physId, String order, String orderLabel, String contentIds) {
+		this.physId = physId;
+		this.order = order;
+		this.orderLabel = orderLabel;
+		this.contentIds = contentIds;
+		this.orderNo = parseOrder(order);
+	}
+
+	public String getPhysId() {
+		return physId;
+	}
+	public String getOrder() {
+		return order;
+	}
+	public String getOrderLabel() {
+		return orderLabel;
+	}
+	public String getContentIds() {
+		return contentIds;
+	}
+	/**
+	 * Gets the ORDER attribute as a number.
+	 * 
+	 * @return	the order or -1 if the ORDER attribute does not exist or is not a non-negative number
+	 */
+	public int getOrderNo() {
+		return orderNo;
+	}
+
+	/**
+	 * Parses the ORDER attribute once, so the image numbers can be created without parsing it again for every request.
+	 */
+	private static int parseOrder(String order) {
+		if (order == null || order.isEmpty() || order.length() > 9) {
+			return -1;
+		}
+		int orderNo = 0;
+		for (int i = 0; i < order.length(); i++) {
+			char c = order.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			orderNo = orderNo * 10 + (c - '0');
+		}
+		return orderNo;
+	}
+
+	@Override
+	public String toString() {
+		return "PhysicalPage [physId=" + physId + ", order=" + order + ", orderLabel=" + orderLabel + ", contentIds=" + contentIds + "]";
+	}
+
+}
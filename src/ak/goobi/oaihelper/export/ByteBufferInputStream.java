@@ -0,0 +1,65 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.export;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * This class reads the remaining bytes of a ByteBuffer, e. g. of a memory-mapped file, as an InputStream without copying them into a byte array first.
+ * 
+ * @author Michael Birkner
+ */
+class ByteBufferInputStream extends InputStream {
+
+	private ByteBuffer buffer;
+
+	ByteBufferInputStream(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+		if (length == 0) {
+			return 0;
+		}
+		if (!buffer.hasRemaining()) {
+			return -1;
+		}
+		int count = Math.min(length, buffer.remaining());
+		buffer.get(bytes, offset, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long n) {
+		int count = (int)Math.max(0, Math.min(n, buffer.remaining()));
+		buffer.position(buffer.position() + count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+
+}
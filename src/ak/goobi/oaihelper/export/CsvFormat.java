@@ -0,0 +1,145 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.export;
+
+import java.util.List;
+
+import ak.goobi.oaihelper.classes.ExportElement;
+import ak.goobi.oaihelper.classes.Id;
+
+/**
+ * This class writes each structure element as one line of comma separated values (RFC 4180) with the columns "identifier", "dmdlogId", "logId", "type",
+ * "title", "pageLabel", "imageNos", "urns" and "authors". The values of the last three columns are lists, separated by "|". Missing values are empty.
+ * Values that contain the separator, quotation marks or line breaks are quoted. Within a list, a "|" or a backslash in a value is escaped with a
+ * backslash (e. g. the authors "A|B" and "C" are written as "A\|B|C"), so the list can be split again unambiguously.
+ * 
+ * @author Michael Birkner
+ */
+public class CsvFormat implements ExportFormat {
+
+	private char separator;
+	private char listSeparator;
+
+	/**
+	 * Creates a format with "," as separator and "|" as separator of lists.
+	 */
+	public CsvFormat() {
+		this(',', '|');
+	}
+
+	/**
+	 * @param separator		the separator of the columns, e. g. ';' or '\t'
+	 * @param listSeparator	the separator of the values of a list within a column. It must not be a backslash, which escapes the separator in the values.
+	 */
+	public CsvFormat(char separator, char listSeparator) {
+		if (listSeparator == '\\') {
+			throw new IllegalArgumentException("The list separator must not be a backslash");
+		}
+		this.separator = separator;
+		this.listSeparator = listSeparator;
+	}
+
+	@Override
+	public String getHeader() {
+		String[] columns = { "identifier", "dmdlogId", "logId", "type", "title", "pageLabel", "imageNos", "urns", "authors" };
+		StringBuilder header = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				header.append(separator);
+			}
+			header.append(columns[i]);
+		}
+		return header.append("\r\n").toString();
+	}
+
+	@Override
+	public void format(ExportElement element, StringBuilder out) {
+		Id id = element.getId();
+		appendValue(element.getIdentifier(), out);
+		out.append(separator);
+		appendValue(id.getDmdlogId(), out);
+		out.append(separator);
+		appendValue(id.getLogId(), out);
+		out.append(separator);
+		appendValue(id.getType(), out);
+		out.append(separator);
+		appendValue(element.getTitle(), out);
+		out.append(separator);
+		appendValue(id.getPageLabel(), out);
+		out.append(separator);
+		appendValue(joinList(id.getOrderNos()), out);
+		out.append(separator);
+		appendValue(joinList(id.getUrns()), out);
+		out.append(separator);
+		appendValue(joinList(element.getAuthors()), out);
+		out.append("\r\n");
+	}
+
+	private String joinList(List<String> values) {
+		if (values == null) {
+			return null;
+		}
+		StringBuilder joined = new StringBuilder();
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0) {
+				joined.append(listSeparator);
+			}
+			if (values.get(i) != null) {
+				appendListValue(values.get(i), joined);
+			}
+		}
+		return joined.toString();
+	}
+
+	/**
+	 * Appends a value of a list and escapes the list separator and the backslash with a backslash.
+	 */
+	private void appendListValue(String value, StringBuilder joined) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == listSeparator || c == '\\') {
+				joined.append('\\');
+			}
+			joined.append(c);
+		}
+	}
+
+	private void appendValue(String value, StringBuilder out) {
+		if (value == null) {
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = (c == separator || c == '"' || c == '\n' || c == '\r');
+		}
+		if (!quote) {
+			out.append(value);
+			return;
+		}
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				out.append('"');
+			}
+			out.append(c);
+		}
+		out.append('"');
+	}
+
+}
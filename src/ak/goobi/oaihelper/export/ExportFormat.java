@@ -0,0 +1,44 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.export;
+
+import ak.goobi.oaihelper.classes.ExportElement;
+
+/**
+ * Implement this interface to write the structure elements of an Exporter in a line based format. The elements are formatted by the threads that read
+ * the records, so implementations must be thread-safe.
+ * 
+ * @author Michael Birkner
+ */
+public interface ExportFormat {
+
+	/**
+	 * Gets the first line of the output.
+	 * 
+	 * @return	a String with the header line including the line break or null if the format has no header
+	 */
+	public String getHeader();
+
+	/**
+	 * Appends one structure element as one line.
+	 * 
+	 * @param element	the ExportElement
+	 * @param out		the StringBuilder to which the line, including the line break, is appended
+	 */
+	public void format(ExportElement element, StringBuilder out);
+
+}
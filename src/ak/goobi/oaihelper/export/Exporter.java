@@ -0,0 +1,274 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.export;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ak.goobi.oaihelper.classes.ExportElement;
+import ak.goobi.oaihelper.classes.Id;
+import ak.goobi.oaihelper.classes.MetsIndex;
+import ak.goobi.oaihelper.classes.ModsRecord;
+import ak.goobi.oaihelper.classes.OaiRecord;
+import ak.goobi.oaihelper.main.GoobiOaiHelper;
+import ak.goobi.oaihelper.metrics.MetricNames;
+import ak.goobi.oaihelper.metrics.Metrics;
+import ak.goobi.oaihelper.network.OaiRecordHandler;
+
+/**
+ * This class exports the structure elements of all records of a RecordSource with one line per structure element in an ExportFormat (e. g. JSON Lines
+ * or CSV). The data of each structure element is extracted with GoobiOaiHelper.getDetailedIds() and completed with the title and the authors of its MODS
+ * section.
+ * 
+ * The records are read and formatted by the threads of the RecordSource. The lines of each record are then put into a bounded queue, from which one
+ * writer thread writes them to a buffered output. If the output is slower than the source, the reading threads wait for space in the queue, so only
+ * a bounded number of records is held in memory and whole repositories can be exported. The lines of one record are written together, but the records
+ * may be written in another order than the source provides them.
+ * 
+ * @author Michael Birkner
+ */
+public class Exporter {
+
+	private static final StringBuilder END_OF_EXPORT = new StringBuilder(0);
+
+	private ExportFormat exportFormat;
+	private GoobiOaiHelper goobiOaiHelper = new GoobiOaiHelper();
+	private Set<String> structureElements;
+	private int queueSize = 1000;
+	private int bufferSize = 65536;
+	private volatile Metrics metrics = Metrics.NONE;
+
+	/**
+	 * @param exportFormat	the ExportFormat of the lines, e. g. a JsonLinesFormat or a CsvFormat
+	 */
+	public Exporter(ExportFormat exportFormat) {
+		this.exportFormat = exportFormat;
+	}
+
+
+	/**
+	 * Exports all records of a source to a file. An existing file is overwritten.
+	 * 
+	 * @param recordSource	the RecordSource of the records
+	 * @param file			the File to write to
+	 * @return				the number of exported structure elements
+	 * @throws Exception	if a record can not be read, the extraction fails or the file can not be written. The lines that were written until then remain in the file.
+	 */
+	public int export(RecordSource recordSource, File file) throws Exception {
+		OutputStream outputStream = new FileOutputStream(file);
+		try {
+			return export(recordSource, outputStream);
+		} finally {
+			outputStream.close();
+		}
+	}
+
+
+	/**
+	 * Exports all records of a source to an OutputStream in UTF-8. The OutputStream is flushed, but not closed.
+	 * 
+	 * @param recordSource	the RecordSource of the records
+	 * @param outputStream	the OutputStream to write to
+	 * @return				the number of exported structure elements
+	 * @throws Exception	if a record can not be read, the extraction fails or the output can not be written
+	 */
+	public int export(RecordSource recordSource, OutputStream outputStream) throws Exception {
+		final BlockingQueue<StringBuilder> queue = new ArrayBlockingQueue<StringBuilder>(queueSize);
+		final AtomicReference<Throwable> writerException = new AtomicReference<Throwable>();
+		final AtomicInteger noOfElements = new AtomicInteger();
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), bufferSize);
+		final Metrics metrics = this.metrics;
+
+		Thread writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					String header = exportFormat.getHeader();
+					if (header != null) {
+						writer.write(header);
+					}
+					for (StringBuilder lines = queue.take(); lines != END_OF_EXPORT; lines = queue.take()) {
+						writer.append(lines);
+					}
+					writer.flush();
+				} catch (Throwable e) {
+					// Also keep Errors (e. g. OutOfMemoryError), else the readers would wait for a writer that does not exist anymore
+					writerException.set(e);
+				}
+			}
+		}, "GoobiOaiHelper-export-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+
+		try {
+			recordSource.readRecords(new OaiRecordHandler() {
+				@Override
+				public void handleRecord(OaiRecord record) throws Exception {
+					StringBuilder lines = new StringBuilder();
+					int noOfRecordElements = formatRecord(record, lines);
+					metrics.count(MetricNames.EXPORT_RECORDS, 1);
+					if (noOfRecordElements > 0) {
+						long start = System.nanoTime();
+						put(queue, lines, writerException);
+						metrics.time(MetricNames.EXPORT_WAIT, System.nanoTime() - start);
+						metrics.count(MetricNames.EXPORT_ELEMENTS, noOfRecordElements);
+						noOfElements.addAndGet(noOfRecordElements);
+					}
+				}
+			});
+		} finally {
+			// Let the writer write the lines of the records that were read until now, also if the source failed
+			try {
+				put(queue, END_OF_EXPORT, writerException);
+			} catch (IOException e) {
+				// The writer failed, it is already finished
+			}
+			writerThread.join();
+		}
+
+		Throwable e = writerException.get();
+		if (e instanceof Error) {
+			throw (Error)e;
+		} else if (e != null) {
+			throw (Exception)e;
+		}
+		return noOfElements.get();
+	}
+
+
+	/**
+	 * Formats all structure elements of a record. Records without metadata (e. g. deleted records) have no structure elements.
+	 */
+	private int formatRecord(OaiRecord record, StringBuilder lines) {
+		MetsIndex metsIndex = record.getMetsIndex();
+		if (metsIndex == null) {
+			return 0;
+		}
+		List<Id> ids = goobiOaiHelper.getDetailedIds(metsIndex, structureElements);
+		if (ids == null) {
+			return 0;
+		}
+
+		String identifier = record.getHeader().getIdentifier();
+		for (Id id : ids) {
+			ModsRecord modsRecord = (id.getDmdlogId() != null) ? metsIndex.getModsRecord(id.getDmdlogId()) : null;
+			String title = null;
+			List<String> authors = null;
+			if (modsRecord != null) {
+				title = modsRecord.getTitle();
+				if (title != null && modsRecord.getNonSort() != null) {
+					title = modsRecord.getNonSort() + title;
+				}
+				authors = metsIndex.getAuthorNames(id.getDmdlogId());
+			}
+			exportFormat.format(new ExportElement(identifier, id, title, authors), lines);
+		}
+		return ids.size();
+	}
+
+
+	/**
+	 * Puts lines into the queue of the writer. Waits as long as the queue is full, but stops waiting if the writer has failed.
+	 */
+	private static void put(BlockingQueue<StringBuilder> queue, StringBuilder lines, AtomicReference<Throwable> writerException) throws IOException, InterruptedException {
+		while (!queue.offer(lines, 100, TimeUnit.MILLISECONDS)) {
+			if (writerException.get() != null) {
+				throw new IOException("The export could not be written", writerException.get());
+			}
+		}
+	}
+
+
+	public ExportFormat getExportFormat() {
+		return exportFormat;
+	}
+
+	public GoobiOaiHelper getGoobiOaiHelper() {
+		return goobiOaiHelper;
+	}
+	/**
+	 * Sets the GoobiOaiHelper that extracts the structure elements, e. g. one with Metrics. Default is a new GoobiOaiHelper.
+	 * 
+	 * @param goobiOaiHelper	a GoobiOaiHelper
+	 */
+	public void setGoobiOaiHelper(GoobiOaiHelper goobiOaiHelper) {
+		this.goobiOaiHelper = goobiOaiHelper;
+	}
+
+	public Set<String> getStructureElements() {
+		return structureElements;
+	}
+	/**
+	 * Sets the types of the structure elements to export, e. g. "Article", "Chapter", etc. Default is null, which exports all structure elements.
+	 * 
+	 * @param structureElements	a Set<String> of structure element types or null for all
+	 */
+	public void setStructureElements(Set<String> structureElements) {
+		this.structureElements = structureElements;
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+	/**
+	 * Sets the number of formatted records that may wait for the writer. Default is 1000.
+	 * 
+	 * @param queueSize	the size of the queue
+	 */
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+	/**
+	 * Sets the size of the buffer of the output. Default is 64 KB.
+	 * 
+	 * @param bufferSize	the size of the buffer in characters
+	 */
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+	/**
+	 * Sets the Metrics that receive the number of exported records and structure elements and the wait for the writer (see MetricNames). Default is
+	 * Metrics.NONE.
+	 * 
+	 * @param metrics	a Metrics, e. g. a JmxMetrics or a LogMetrics
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = (metrics != null) ? metrics : Metrics.NONE;
+	}
+
+}
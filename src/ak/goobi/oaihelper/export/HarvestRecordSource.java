@@ -0,0 +1,47 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.export;
+
+import ak.goobi.oaihelper.network.OaiHarvester;
+import ak.goobi.oaihelper.network.OaiRecordHandler;
+
+/**
+ * This class provides the records of a "ListRecords" harvest of an OaiHarvester, including its selective harvesting (from, until, set) and its worker threads.
+ * 
+ * @author Michael Birkner
+ */
+public class HarvestRecordSource implements RecordSource {
+
+	private OaiHarvester oaiHarvester;
+
+	/**
+	 * @param oaiHarvester	an OaiHarvester with the OAI-PMH interface and the arguments of the harvest
+	 */
+	public HarvestRecordSource(OaiHarvester oaiHarvester) {
+		this.oaiHarvester = oaiHarvester;
+	}
+
+	@Override
+	public int readRecords(OaiRecordHandler handler) throws Exception {
+		return oaiHarvester.listRecords(handler);
+	}
+
+	public OaiHarvester getOaiHarvester() {
+		return oaiHarvester;
+	}
+
+}
@@ -0,0 +1,66 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.export;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import ak.goobi.oaihelper.classes.OaiHeader;
+import ak.goobi.oaihelper.classes.OaiRecord;
+import ak.goobi.oaihelper.network.Network;
+
+/**
+ * This class provides the records of a list of identifiers. Each record is requested with Network.getMetsIndex(), so the cache, the retries and the
+ * connection limits of the Network apply. The records have a header with the identifier only.
+ * 
+ * @author Michael Birkner
+ */
+public class IdentifierRecordSource extends ParallelRecordSource {
+
+	private Network network;
+	private String oaiPmh;
+	private List<String> identifiers;
+
+	/**
+	 * @param network		the Network for the requests
+	 * @param oaiPmh		a String of the URL to the OAI-PMH interface with an ending slash (e. g. http://example.com/viewer/oai/)
+	 * @param identifiers	a List<String> with the identifiers of the records
+	 */
+	public IdentifierRecordSource(Network network, String oaiPmh, List<String> identifiers) {
+		this.network = network;
+		this.oaiPmh = oaiPmh;
+		this.identifiers = identifiers;
+	}
+
+	@Override
+	protected void submitRecords(RecordTasks tasks) {
+		for (final String identifier : identifiers) {
+			boolean submitted = tasks.submit(new Callable<OaiRecord>() {
+				@Override
+				public OaiRecord call() throws Exception {
+					OaiHeader header = new OaiHeader(identifier, null, Collections.<String>emptyList(), false);
+					return new OaiRecord(header, network.getMetsIndex(oaiPmh, identifier));
+				}
+			});
+			if (!submitted) {
+				break;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.export;
+
+import java.util.List;
+
+import ak.goobi.oaihelper.classes.ExportElement;
+import ak.goobi.oaihelper.classes.Id;
+
+/**
+ * This class writes each structure element as one JSON object per line (JSON Lines, see https://jsonlines.org/) with the keys "identifier", "dmdlogId",
+ * "logId", "type", "title", "pageLabel", "imageNos", "urns" and "authors". Missing values are null, the last three keys have arrays of strings.
+ * 
+ * @author Michael Birkner
+ */
+public class JsonLinesFormat implements ExportFormat {
+
+	@Override
+	public String getHeader() {
+		return null;
+	}
+
+	@Override
+	public void format(ExportElement element, StringBuilder out) {
+		Id id = element.getId();
+		out.append("{\"identifier\":");
+		appendString(element.getIdentifier(), out);
+		out.append(",\"dmdlogId\":");
+		appendString(id.getDmdlogId(), out);
+		out.append(",\"logId\":");
+		appendString(id.getLogId(), out);
+		out.append(",\"type\":");
+		appendString(id.getType(), out);
+		out.append(",\"title\":");
+		appendString(element.getTitle(), out);
+		out.append(",\"pageLabel\":");
+		appendString(id.getPageLabel(), out);
+		out.append(",\"imageNos\":");
+		appendArray(id.getOrderNos(), out);
+		out.append(",\"urns\":");
+		appendArray(id.getUrns(), out);
+		out.append(",\"authors\":");
+		appendArray(element.getAuthors(), out);
+		out.append("}\n");
+	}
+
+	private static void appendArray(List<String> values, StringBuilder out) {
+		if (values == null) {
+			out.append("null");
+			return;
+		}
+		out.append('[');
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			appendString(values.get(i), out);
+		}
+		out.append(']');
+	}
+
+	/**
+	 * Appends a JSON string. Quotation marks, backslashes and control characters are escaped, all other characters are written as they are (UTF-8).
+	 */
+	private static void appendString(String value, StringBuilder out) {
+		if (value == null) {
+			out.append("null");
+			return;
+		}
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.append(String.format("\\u%04x", Integer.valueOf(c)));
+				} else {
+					out.append(c);
+				}
+			}
+		}
+		out.append('"');
+	}
+
+}
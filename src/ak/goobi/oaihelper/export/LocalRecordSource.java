@@ -0,0 +1,334 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.export;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import ak.goobi.oaihelper.classes.OaiHeader;
+import ak.goobi.oaihelper.classes.OaiRecord;
+import ak.goobi.oaihelper.parsers.MetsStreamParser;
+
+/**
+ * This class provides the records of local METS-XML files, so records can be processed without an OAI-PMH interface, e. g. from a Goobi export
+ * directory or a dump. Each given file may be
+ * <ul>
+ * <li>a directory, whose files and subdirectories are read recursively,</li>
+ * <li>a METS-XML file with the ending ".xml",</li>
+ * <li>a ZIP archive (".zip") or</li>
+ * <li>a tar archive (".tar", ".tar.gz" or ".tgz") with METS-XML files.</li>
+ * </ul>
+ * Archives within directories are read, too. Files with other endings are ignored. The records are read with the MetsStreamParser, so they can be used
+ * with the methods of GoobiOaiHelper that take a MetsIndex or with an Exporter.
+ * 
+ * The directories and archives are walked by a pool of walker threads (see setWalkThreads()), the files are parsed by the worker threads of
+ * ParallelRecordSource. Files of a ZIP archive are decompressed by the worker threads, files of a tar archive are read by a walker thread, because a tar
+ * archive can only be read sequentially. Files from a size of setMemoryMapThreshold() on are memory-mapped instead of read through a buffer.
+ * 
+ * The identifier of a record is the path of its file without the ending ".xml", with "/" as separator and relative to the given directory (for files
+ * in directories) or to the root of the archive (for files in archives), e. g. "2019/PPN123456". Deleted records do not exist in this source.
+ * 
+ * @author Michael Birkner
+ */
+public class LocalRecordSource extends ParallelRecordSource {
+
+	private List<File> files;
+	private int walkThreads = 4;
+	private long memoryMapThreshold = 1024 * 1024;
+	private MetsStreamParser metsStreamParser = new MetsStreamParser();
+
+	/**
+	 * @param files	directories, METS-XML files or archives
+	 */
+	public LocalRecordSource(File... files) {
+		this(Arrays.asList(files));
+	}
+
+	/**
+	 * @param files	a List<File> of directories, METS-XML files or archives
+	 */
+	public LocalRecordSource(List<File> files) {
+		this.files = new ArrayList<File>(files);
+	}
+
+
+	@Override
+	protected void submitRecords(RecordTasks tasks) throws FileNotFoundException {
+		List<Walk> walks = new ArrayList<Walk>(files.size());
+		for (File file : files) {
+			if (!file.exists()) {
+				throw new FileNotFoundException(file.getPath());
+			}
+			Path path = file.toPath().toAbsolutePath();
+			walks.add(new Walk(tasks, path, Files.isDirectory(path) ? path : path.getParent()));
+		}
+
+		ForkJoinPool walkPool = new ForkJoinPool(walkThreads);
+		try {
+			walkPool.invoke(new Walks(walks));
+		} finally {
+			walkPool.shutdown();
+		}
+	}
+
+
+	/**
+	 * Submits the records of a file that is not a directory, depending on its ending.
+	 */
+	private void submitFile(RecordTasks tasks, final Path file, Path root) throws IOException {
+		String name = file.getFileName().toString().toLowerCase(Locale.ENGLISH);
+		if (name.endsWith(".xml")) {
+			final String identifier = getIdentifier(root.relativize(file).toString().replace(File.separatorChar, '/'));
+			tasks.submit(new Callable<OaiRecord>() {
+				@Override
+				public OaiRecord call() throws Exception {
+					return readFile(identifier, file);
+				}
+			});
+		} else if (name.endsWith(".zip")) {
+			submitZip(tasks, file);
+		} else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+			submitTar(tasks, new GZIPInputStream(Files.newInputStream(file), 65536));
+		} else if (name.endsWith(".tar")) {
+			submitTar(tasks, new BufferedInputStream(Files.newInputStream(file), 65536));
+		}
+	}
+
+
+	/**
+	 * Submits the METS-XML files of a ZIP archive. The archive is closed after all records were read.
+	 */
+	private void submitZip(RecordTasks tasks, Path file) throws IOException {
+		final ZipFile zipFile = new ZipFile(file.toFile());
+		tasks.addResource(zipFile);
+		Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		while (entries.hasMoreElements()) {
+			final ZipEntry entry = entries.nextElement();
+			if (entry.isDirectory() || !entry.getName().toLowerCase(Locale.ENGLISH).endsWith(".xml")) {
+				continue;
+			}
+			boolean submitted = tasks.submit(new Callable<OaiRecord>() {
+				@Override
+				public OaiRecord call() throws Exception {
+					InputStream inputStream = zipFile.getInputStream(entry);
+					try {
+						return parse(getIdentifier(entry.getName()), inputStream);
+					} finally {
+						inputStream.close();
+					}
+				}
+			});
+			if (!submitted) {
+				return;
+			}
+		}
+	}
+
+
+	/**
+	 * Submits the METS-XML files of a tar archive. Each file is read into memory by the calling walker thread and parsed by a worker thread.
+	 */
+	private void submitTar(RecordTasks tasks, InputStream inputStream) throws IOException {
+		TarReader tarReader = new TarReader(inputStream);
+		try {
+			for (String name = tarReader.nextFile(); name != null && !tasks.isStopped(); name = tarReader.nextFile()) {
+				if (!name.toLowerCase(Locale.ENGLISH).endsWith(".xml")) {
+					continue;
+				}
+				final String identifier = getIdentifier(name);
+				final byte[] content = tarReader.readEntry();
+				tasks.submit(new Callable<OaiRecord>() {
+					@Override
+					public OaiRecord call() throws Exception {
+						return parse(identifier, new ByteArrayInputStream(content));
+					}
+				});
+			}
+		} finally {
+			tarReader.close();
+		}
+	}
+
+
+	private OaiRecord readFile(String identifier, Path file) throws Exception {
+		long size = Files.size(file);
+		if (size >= memoryMapThreshold && size <= Integer.MAX_VALUE) {
+			MappedByteBuffer buffer;
+			FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+			try {
+				buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			} finally {
+				// The mapping stays valid after the channel is closed
+				fileChannel.close();
+			}
+			return parse(identifier, new ByteBufferInputStream(buffer));
+		}
+
+		InputStream inputStream = new BufferedInputStream(Files.newInputStream(file), 65536);
+		try {
+			return parse(identifier, inputStream);
+		} finally {
+			inputStream.close();
+		}
+	}
+
+
+	private OaiRecord parse(String identifier, InputStream inputStream) throws Exception {
+		OaiHeader header = new OaiHeader(identifier, null, Collections.<String>emptyList(), false);
+		return new OaiRecord(header, metsStreamParser.parse(inputStream));
+	}
+
+
+	/**
+	 * Removes the ending ".xml" and a leading "./" (of tar archives) from a path.
+	 */
+	private static String getIdentifier(String path) {
+		if (path.startsWith("./")) {
+			path = path.substring(2);
+		}
+		return path.substring(0, path.length() - ".xml".length());
+	}
+
+
+	public List<File> getFiles() {
+		return Collections.unmodifiableList(files);
+	}
+
+	public int getWalkThreads() {
+		return walkThreads;
+	}
+	/**
+	 * Sets the number of threads that walk the directories and read the tar archives in parallel. Default is 4.
+	 * 
+	 * @param walkThreads	the number of threads
+	 */
+	public void setWalkThreads(int walkThreads) {
+		this.walkThreads = walkThreads;
+	}
+
+	public long getMemoryMapThreshold() {
+		return memoryMapThreshold;
+	}
+	/**
+	 * Sets the size from which on METS-XML files are memory-mapped instead of read through a buffer. Mapping avoids copying large files, but costs more
+	 * than reading small files. Files in archives are never mapped. Default is 1 MB.
+	 * 
+	 * @param memoryMapThreshold	the size in bytes. Long.MAX_VALUE turns memory-mapping off.
+	 */
+	public void setMemoryMapThreshold(long memoryMapThreshold) {
+		this.memoryMapThreshold = memoryMapThreshold;
+	}
+
+
+	/**
+	 * Runs the walks of all given files.
+	 */
+	private static class Walks extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private List<Walk> walks;
+
+		Walks(List<Walk> walks) {
+			this.walks = walks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(walks);
+		}
+	}
+
+
+	/**
+	 * Walks a directory or submits the records of a file. The subdirectories of a directory are walked in parallel.
+	 */
+	private class Walk extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private RecordTasks tasks;
+		private Path path;
+		private Path root;
+
+		Walk(RecordTasks tasks, Path path, Path root) {
+			this.tasks = tasks;
+			this.path = path;
+			this.root = root;
+		}
+
+		@Override
+		protected void compute() {
+			if (tasks.isStopped()) {
+				return;
+			}
+			try {
+				if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+					walkDirectory();
+				} else {
+					submitFile(tasks, path, root);
+				}
+			} catch (Exception e) {
+				tasks.stop(e);
+			}
+		}
+
+		private void walkDirectory() throws IOException {
+			List<Walk> subdirectories = new ArrayList<Walk>();
+			DirectoryStream<Path> directoryStream = Files.newDirectoryStream(path);
+			try {
+				for (Path child : directoryStream) {
+					if (tasks.isStopped()) {
+						return;
+					}
+					if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+						subdirectories.add(new Walk(tasks, child, root));
+					} else if (Files.isRegularFile(child)) {
+						submitFile(tasks, child, root);
+					}
+				}
+			} finally {
+				directoryStream.close();
+			}
+			invokeAll(subdirectories);
+		}
+	}
+
+}
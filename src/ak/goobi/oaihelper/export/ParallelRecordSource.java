@@ -0,0 +1,183 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ak.goobi.oaihelper.classes.OaiRecord;
+import ak.goobi.oaihelper.network.OaiRecordHandler;
+
+/**
+ * This class is the base of record sources that read their records in parallel. A subclass submits one reader per record (see submitRecords()), the
+ * readers are called by a bounded pool of worker threads and each record is passed to the handler in the thread that has read it. If all workers are
+ * busy and the queue is full, the submitting thread reads records itself until there is space again, so the number of records in memory stays bounded.
+ * Readers may be submitted from more than one thread at the same time.
+ * 
+ * @author Michael Birkner
+ */
+public abstract class ParallelRecordSource implements RecordSource {
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int queueSize = 200;
+
+
+	@Override
+	public int readRecords(OaiRecordHandler handler) throws Exception {
+		RecordTasks tasks = new RecordTasks(handler, threads, queueSize);
+		try {
+			submitRecords(tasks);
+		} finally {
+			tasks.finish();
+		}
+
+		if (tasks.exception.get() != null) {
+			throw tasks.exception.get();
+		}
+		return tasks.noOfRecords.get();
+	}
+
+
+	/**
+	 * Submits a reader for each record of the source to the tasks. Stop submitting when RecordTasks.submit() returns false.
+	 * 
+	 * @param tasks			the RecordTasks of the current call of readRecords()
+	 * @throws Exception	if the records can not be listed
+	 */
+	protected abstract void submitRecords(RecordTasks tasks) throws Exception;
+
+
+	public int getThreads() {
+		return threads;
+	}
+	/**
+	 * Sets the number of worker threads that read the records. Default is the number of available processors.
+	 * 
+	 * @param threads	the number of threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+	/**
+	 * Sets the number of records that may wait for a free worker thread. Default is 200.
+	 * 
+	 * @param queueSize	the size of the queue
+	 */
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+
+	/**
+	 * This class runs the readers of one call of readRecords() and keeps the first exception.
+	 */
+	protected static final class RecordTasks {
+
+		private OaiRecordHandler handler;
+		private ThreadPoolExecutor executor;
+		private AtomicReference<Exception> exception = new AtomicReference<Exception>();
+		private AtomicInteger noOfRecords = new AtomicInteger();
+		private List<Closeable> resources = new ArrayList<Closeable>();
+
+		private RecordTasks(OaiRecordHandler handler, int threads, int queueSize) {
+			this.handler = handler;
+			this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+
+		/**
+		 * Submits the reader of one record. It is called by a worker thread, which then passes the record to the handler.
+		 * 
+		 * @param reader	a Callable<OaiRecord> that reads the record
+		 * @return			false if a reader or the handler has thrown an exception, so no further records should be submitted
+		 */
+		public boolean submit(final Callable<OaiRecord> reader) {
+			if (exception.get() != null) {
+				return false;
+			}
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						// Skip the remaining records after the first failure
+						if (exception.get() == null) {
+							handler.handleRecord(reader.call());
+						}
+					} catch (Exception e) {
+						exception.compareAndSet(null, e);
+					}
+				}
+			});
+			noOfRecords.incrementAndGet();
+			return true;
+		}
+
+		/**
+		 * Returns true if a reader or the handler has thrown an exception, so no further records should be submitted.
+		 * 
+		 * @return	true if the reading was stopped
+		 */
+		public boolean isStopped() {
+			return exception.get() != null;
+		}
+
+		/**
+		 * Stops the reading with an exception, e. g. one that was thrown while listing the records in another thread.
+		 * 
+		 * @param e	the Exception that is thrown by readRecords()
+		 */
+		public void stop(Exception e) {
+			exception.compareAndSet(null, e);
+		}
+
+		/**
+		 * Adds a resource that the readers need, e. g. an open archive. It is closed after all readers have finished.
+		 * 
+		 * @param resource	a Closeable
+		 */
+		public synchronized void addResource(Closeable resource) {
+			resources.add(resource);
+		}
+
+		private void finish() throws InterruptedException {
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			synchronized (this) {
+				for (Closeable resource : resources) {
+					try {
+						resource.close();
+					} catch (IOException e) {
+						// All records were read, nothing else to do
+					}
+				}
+				resources.clear();
+			}
+		}
+	}
+
+}
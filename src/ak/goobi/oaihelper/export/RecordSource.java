@@ -0,0 +1,38 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.export;
+
+import ak.goobi.oaihelper.network.OaiRecordHandler;
+
+/**
+ * Implement this interface to provide records for an Exporter, e. g. from a list of identifiers, an OAI-PMH harvest or a directory of METS-XML files.
+ * 
+ * @author Michael Birkner
+ */
+public interface RecordSource {
+
+	/**
+	 * Reads all records and passes each record to the handler. The handler may be called from more than one thread at the same time. The method
+	 * returns when all records were handled.
+	 * 
+	 * @param handler		an OaiRecordHandler that processes the records
+	 * @return				the number of records that were read
+	 * @throws Exception	if a record can not be read or the handler throws an exception. The remaining records are skipped.
+	 */
+	public int readRecords(OaiRecordHandler handler) throws Exception;
+
+}
@@ -0,0 +1,273 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.export;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class reads the regular files of a tar archive (POSIX ustar, GNU and pax format) sequentially from a stream, e. g. the GZIPInputStream of a
+ * ".tar.gz" file. Long file names of the GNU format ("././@LongLink") and of pax headers ("path") are supported. Directories, links and other special
+ * entries are skipped.
+ * 
+ * @author Michael Birkner
+ */
+class TarReader implements Closeable {
+
+	private static final int BLOCK_SIZE = 512;
+
+	private InputStream inputStream;
+	private byte[] header = new byte[BLOCK_SIZE];
+	private long remaining = 0;
+	private long padding = 0;
+
+
+	TarReader(InputStream inputStream) {
+		this.inputStream = inputStream;
+	}
+
+
+	/**
+	 * Moves to the next regular file. The rest of the current file is skipped.
+	 * 
+	 * @return				a String with the name (path) of the file or null at the end of the archive
+	 * @throws IOException	if the archive can not be read or is not a valid tar archive
+	 */
+	String nextFile() throws IOException {
+		String longName = null;
+		while (true) {
+			skip(remaining + padding);
+			remaining = 0;
+			padding = 0;
+
+			if (!readBlock(header)) {
+				return null;
+			}
+			if (isZeroBlock(header)) {
+				// The end of the archive is marked by two zero blocks, the first one is enough
+				return null;
+			}
+			verifyChecksum();
+
+			long size = parseNumber(124, 12);
+			remaining = size;
+			padding = (BLOCK_SIZE - (size % BLOCK_SIZE)) % BLOCK_SIZE;
+			byte type = header[156];
+
+			if (type == 'L') {
+				// GNU long name of the next entry
+				longName = trimNul(new String(readEntry(), StandardCharsets.UTF_8));
+			} else if (type == 'x') {
+				// pax header of the next entry
+				String path = parsePaxPath(readEntry());
+				if (path != null) {
+					longName = path;
+				}
+			} else if (type == '0' || type == 0 || type == '7') {
+				return (longName != null) ? longName : getHeaderName();
+			} else {
+				// Directories, links, global pax headers, etc.
+				longName = null;
+			}
+		}
+	}
+
+
+	/**
+	 * Reads the rest of the current file completely.
+	 * 
+	 * @return				a byte[] with the content of the file
+	 * @throws IOException	if the archive can not be read or the file is too large for an array
+	 */
+	byte[] readEntry() throws IOException {
+		if (remaining > Integer.MAX_VALUE - 8) {
+			throw new IOException("Entry too large: " + remaining + " bytes");
+		}
+		byte[] content = new byte[(int)remaining];
+		readFully(content, content.length);
+		remaining = 0;
+		return content;
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		inputStream.close();
+	}
+
+
+	private String getHeaderName() {
+		String name = parseString(0, 100);
+		// The ustar format splits long names into a prefix and a name
+		if (header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a' && header[261] == 'r') {
+			String prefix = parseString(345, 155);
+			if (!prefix.isEmpty()) {
+				name = prefix + "/" + name;
+			}
+		}
+		return name;
+	}
+
+
+	/**
+	 * Gets the "path" of the records of a pax header. Each record has the format "<length> <key>=<value>\n".
+	 */
+	private static String parsePaxPath(byte[] paxHeader) throws IOException {
+		String path = null;
+		int offset = 0;
+		while (offset < paxHeader.length) {
+			int space = offset;
+			while (space < paxHeader.length && paxHeader[space] != ' ') {
+				space++;
+			}
+			int length;
+			try {
+				length = Integer.parseInt(new String(paxHeader, offset, space - offset, StandardCharsets.US_ASCII));
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid pax header");
+			}
+			if (length <= 0 || offset + length > paxHeader.length) {
+				throw new IOException("Invalid pax header");
+			}
+			String record = new String(paxHeader, space + 1, offset + length - space - 2, StandardCharsets.UTF_8);
+			if (record.startsWith("path=")) {
+				path = record.substring("path=".length());
+			}
+			offset += length;
+		}
+		return path;
+	}
+
+
+	/**
+	 * Parses a number of the header. It is either an octal number in ASCII or, for large values, a binary number if the highest bit of the field is set.
+	 */
+	private long parseNumber(int offset, int length) throws IOException {
+		if ((header[offset] & 0x80) != 0) {
+			long value = header[offset] & 0x7F;
+			for (int i = 1; i < length; i++) {
+				value = (value << 8) | (header[offset + i] & 0xFF);
+			}
+			return value;
+		}
+		int i = offset;
+		int end = offset + length;
+		while (i < end && (header[i] == ' ' || header[i] == 0)) {
+			i++;
+		}
+		long value = 0;
+		for (; i < end && header[i] >= '0' && header[i] <= '7'; i++) {
+			value = (value << 3) + (header[i] - '0');
+		}
+		if (i < end && header[i] != ' ' && header[i] != 0) {
+			throw new IOException("Invalid number in tar header");
+		}
+		return value;
+	}
+
+
+	private void verifyChecksum() throws IOException {
+		long checksum = parseNumber(148, 8);
+		long sum = 0;
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			sum += (i >= 148 && i < 156) ? ' ' : (header[i] & 0xFF);
+		}
+		if (sum != checksum) {
+			throw new IOException("Invalid tar header checksum");
+		}
+	}
+
+
+	private String parseString(int offset, int length) {
+		int end = offset;
+		while (end < offset + length && header[end] != 0) {
+			end++;
+		}
+		return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+	}
+
+
+	private static String trimNul(String value) {
+		int end = value.indexOf(0);
+		return (end >= 0) ? value.substring(0, end) : value;
+	}
+
+
+	private static boolean isZeroBlock(byte[] block) {
+		for (byte b : block) {
+			if (b != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Reads a whole block. Returns false if the stream ends before the block, as some writers omit the zero blocks at the end.
+	 */
+	private boolean readBlock(byte[] block) throws IOException {
+		int count = 0;
+		while (count < block.length) {
+			int length = inputStream.read(block, count, block.length - count);
+			if (length == -1) {
+				if (count == 0) {
+					return false;
+				}
+				throw new EOFException("Truncated tar archive");
+			}
+			count += length;
+		}
+		return true;
+	}
+
+
+	private void readFully(byte[] buffer, int length) throws IOException {
+		int count = 0;
+		while (count < length) {
+			int read = inputStream.read(buffer, count, length - count);
+			if (read == -1) {
+				throw new EOFException("Truncated tar archive");
+			}
+			count += read;
+		}
+	}
+
+
+	private void skip(long bytes) throws IOException {
+		byte[] buffer = null;
+		while (bytes > 0) {
+			long skipped = inputStream.skip(bytes);
+			if (skipped <= 0) {
+				// skip() of some streams (e. g. GZIPInputStream at the end) returns 0, so read instead
+				if (buffer == null) {
+					buffer = new byte[8192];
+				}
+				int read = inputStream.read(buffer, 0, (int)Math.min(buffer.length, bytes));
+				if (read == -1) {
+					throw new EOFException("Truncated tar archive");
+				}
+				skipped = read;
+			}
+			bytes -= skipped;
+		}
+	}
+
+}
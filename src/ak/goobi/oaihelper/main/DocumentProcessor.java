@@ -0,0 +1,38 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.main;
+
+import org.w3c.dom.Document;
+
+/**
+ * Implement this interface to process METS-XML Documents in parallel with GoobiOaiHelper.processDocuments().
+ * 
+ * @param <T>	the type of the result for one Document
+ * @author Michael Birkner
+ */
+public interface DocumentProcessor<T> {
+
+	/**
+	 * Processes one Document. This method is called from several threads at the same time, so implementations must be thread-safe.
+	 * 
+	 * @param document		a Document object (METS-XML)
+	 * @return				the result for the Document
+	 * @throws Exception	stops the processing of the batch
+	 */
+	public T process(Document document) throws Exception;
+
+}
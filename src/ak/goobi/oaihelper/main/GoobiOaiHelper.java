@@ -17,38 +17,179 @@
 package ak.goobi.oaihelper.main;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
+import ak.goobi.oaihelper.classes.CompactId;
 import ak.goobi.oaihelper.classes.Id;
-import ak.xmlhelper.XmlParser;
+import ak.goobi.oaihelper.classes.LogicalDiv;
+import ak.goobi.oaihelper.classes.MetsIndex;
+import ak.goobi.oaihelper.classes.ModsRecord;
+import ak.goobi.oaihelper.classes.PageIndex;
+import ak.goobi.oaihelper.classes.PageOrders;
+import ak.goobi.oaihelper.classes.PhysicalPage;
+import ak.goobi.oaihelper.metrics.MetricNames;
+import ak.goobi.oaihelper.network.Network;
+import ak.goobi.oaihelper.parsers.MetsIndexer;
+import ak.goobi.oaihelper.parsers.XmlParser;
 
 
 /**
  * This class provides methods to receive some information from an OAI-PMH interface. Provide a URL to such an interface with an ending slash. Example: "http://example.com/viewer/oai/"
  * 
+ * The methods that take a Document build a MetsIndex of that Document on the first call and reuse it as long as they are called with the same Document,
+ * so the Document must not be changed in between. Use getMetsIndex(Document) and the methods that take a MetsIndex to control the lifetime of the index yourself.
+ * 
+ * One GoobiOaiHelper can be shared by many threads. The index of a Document is kept with the Document itself, and the XPath expressions of the inherited
+ * XmlParser methods are compiled per thread. Use processDocuments() or processRecords() to process a batch on all processor cores.
+ * 
+ * If Metrics are set (see setMetrics()), the time of building an index and of every extraction method that takes a MetsIndex is recorded with the name
+ * of the method (e. g. "extract.getIds", see MetricNames.EXTRACT_PREFIX), so the Document variants are split into building the index and the extraction.
+ * 
+ * The page methods can also be answered from a PageIndex, a compact page table of a volume that can be stored in a file and memory-mapped (see
+ * PageIndex.build(MetsIndex)), so popular volumes do not have to be parsed again.
+ * 
  * @author Michael Birkner
  */
 public class GoobiOaiHelper extends XmlParser {
 
+	private static final String EXTRACT_GET_IDS = MetricNames.EXTRACT_PREFIX + "getIds";
+	private static final String EXTRACT_GET_DETAILED_IDS = MetricNames.EXTRACT_PREFIX + "getDetailedIds";
+	private static final String EXTRACT_GET_COMPACT_IDS = MetricNames.EXTRACT_PREFIX + "getCompactIds";
+	private static final String EXTRACT_GET_PHYS_IDS = MetricNames.EXTRACT_PREFIX + "getPhysIds";
+	private static final String EXTRACT_GET_PAGE_LABEL_BY_PHYS_ID = MetricNames.EXTRACT_PREFIX + "getPageLabelByPhysId";
+	private static final String EXTRACT_GET_FIRST_LAST_LABEL_BY_PHYS_ID = MetricNames.EXTRACT_PREFIX + "getFirstLastLabelByPhysId";
+	private static final String EXTRACT_GET_ORDER_NO_BY_PHYS_ID = MetricNames.EXTRACT_PREFIX + "getOrderNoByPhysId";
+	private static final String EXTRACT_GET_URNS_BY_PHYS_IDS = MetricNames.EXTRACT_PREFIX + "getUrnsByPhysIds";
+	private static final String EXTRACT_GET_AUTHORS_BY_DMDLOG_ID = MetricNames.EXTRACT_PREFIX + "getAuthorsByDmdlogId";
+	private static final String EXTRACT_GET_MODS_RECORDS = MetricNames.EXTRACT_PREFIX + "getModsRecords";
+	private static final String EXTRACT_GET_MODS_RECORD = MetricNames.EXTRACT_PREFIX + "getModsRecord";
+
+	private static final String METS_INDEX_KEY = MetsIndex.class.getName();
+
 	private String oaiPmh;
-	private XmlParser xmlParser = new XmlParser();
+	private MetsIndexer metsIndexer = new MetsIndexer();
+	private volatile Network network;
+	private volatile int threads = Runtime.getRuntime().availableProcessors();
 
 	public GoobiOaiHelper() {}
-	
+
 	public GoobiOaiHelper(String oaiPmh) {
 		this.oaiPmh = oaiPmh;
 	}
 
+	/**
+	 * Gets the index of a METS-XML document. The index is built in one traversal of the Document. The index is kept as user data of the Document (see
+	 * Document.setUserData()), so calling this method again with the same Document does not build the index again, and the index is released together
+	 * with the Document. Do not change a Document after it was indexed.
+	 * 
+	 * @param document		a Document object (METS-XML)
+	 * @return				a MetsIndex
+	 */
+	public MetsIndex getMetsIndex(Document document) {
+		// DOM implementations are not thread-safe even for reading (e. g. deferred node expansion of Xerces), so index one Document in one thread at a time
+		synchronized (document) {
+			MetsIndex metsIndex = (MetsIndex)document.getUserData(METS_INDEX_KEY);
+			if (metsIndex == null) {
+				long start = System.nanoTime();
+				metsIndex = metsIndexer.index(document);
+				getMetrics().time(MetricNames.INDEX_DOCUMENT, System.nanoTime() - start);
+				document.setUserData(METS_INDEX_KEY, metsIndex, null);
+			}
+			return metsIndex;
+		}
+	}
+
+	/**
+	 * Processes a batch of Documents in parallel, using as many threads as set with setThreads() (default: the number of available processors). Each
+	 * Document is processed by one thread, so the processor may use the Document and this GoobiOaiHelper without further synchronization.
+	 * 
+	 * @param documents		a List<Document> of METS-XML documents
+	 * @param processor		a DocumentProcessor that is called once for each Document
+	 * @return				a List with the results of the processor in the order of the Documents
+	 * @throws Exception	the first exception of the processor. The Documents that were not processed yet are skipped.
+	 */
+	public <T> List<T> processDocuments(List<Document> documents, final DocumentProcessor<T> processor) throws Exception {
+		List<Callable<T>> tasks = new ArrayList<Callable<T>>();
+		for (final Document document : documents) {
+			tasks.add(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					return processor.process(document);
+				}
+			});
+		}
+		return invokeInOrder(tasks);
+	}
+
+	/**
+	 * Fetches and processes a batch of records of the OAI-PMH interface of this GoobiOaiHelper in parallel, using as many threads as set with setThreads()
+	 * (default: the number of available processors). The records are fetched with Network.getMetsIndex(), so no DOM Document is built.
+	 * 
+	 * @param identifiers	a List<String> with the identifiers of the records
+	 * @param processor		a RecordProcessor that is called once for each record
+	 * @return				a List with the results of the processor in the order of the identifiers
+	 * @throws Exception	the first exception while fetching or processing a record. The records that were not processed yet are skipped.
+	 */
+	public <T> List<T> processRecords(List<String> identifiers, final RecordProcessor<T> processor) throws Exception {
+		final Network network = getNetwork();
+		List<Callable<T>> tasks = new ArrayList<Callable<T>>();
+		for (final String identifier : identifiers) {
+			tasks.add(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					return processor.process(identifier, network.getMetsIndex(oaiPmh, identifier));
+				}
+			});
+		}
+		return invokeInOrder(tasks);
+	}
+
+	/**
+	 * Runs the tasks on a thread pool and returns their results in the order of the tasks.
+	 */
+	private <T> List<T> invokeInOrder(List<Callable<T>> tasks) throws Exception {
+		List<T> results = new ArrayList<T>(tasks.size());
+		if (tasks.isEmpty()) {
+			return results;
+		}
+
+		ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+		try {
+			List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+			for (Callable<T> task : tasks) {
+				futures.add(executorService.submit(task));
+			}
+			for (Future<T> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception)cause;
+					}
+					throw e;
+				}
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+
+		return results;
+	}
+
 	/**
 	 * Get all relevent identifiers (LogId, DmdlogId, PhysIds) of the METS-XML document for further usage. Returns a List<Id>.
 	 * 
@@ -58,37 +199,164 @@ public class GoobiOaiHelper extends XmlParser {
 	 * @throws Exception
 	 */
 	public List<Id> getIds(Document document, List<String> structureElements) throws Exception {
-		
-		List<Id> ids = new ArrayList<Id>();
-		List<String> phsyIds = new ArrayList<String>();
-		XPath xPath = XPathFactory.newInstance().newXPath();
-		XPathExpression xPathExpression = xPath.compile("//mets/structMap[@TYPE=\"LOGICAL\"]//div");
-		NodeList nodeList = (NodeList)xPathExpression.evaluate(document, XPathConstants.NODESET);
-		
-		// Check if node list is empty to prevent NullPointerException. If it is empty, just return null
-		if (nodeList.getLength() > 0) {
-			for (int i = 0; i < nodeList.getLength(); i++) {
-				Element element = (Element)nodeList.item(i);
-				String dmdlogId = (element.getAttribute("DMDID") != "") ? element.getAttribute("DMDID") : null;
-				String logId = (element.getAttribute("ID") != "") ? element.getAttribute("ID") : null;
-				String structureElement = (element.getAttribute("TYPE") != "") ? element.getAttribute("TYPE") : null;
-
-				// Add only elements for the given structure elements (e. g. article, editorial, etc.) if the user specified them
-				if (structureElements != null) {
-					if (structureElements.contains(structureElement)) {
-						phsyIds = getPhysIds(document, logId);
-						ids.add(new Id(dmdlogId, logId, phsyIds));
+		return getIds(getMetsIndex(document), structureElements);
+	}
+
+	/**
+	 * Get all relevent identifiers (LogId, DmdlogId, PhysIds) of an indexed METS-XML document for further usage. Returns a List<Id>.
+	 * 
+	 * @param metsIndex				a MetsIndex of a METS-XML document
+	 * @param structureElements		a List<String> of stucture elements to parse, e. g. "Article", "Chapter", etc. Use "null" to parse all structure elements
+	 * @return						a List<Id> or null if the logical structure map is empty
+	 */
+	public List<Id> getIds(MetsIndex metsIndex, List<String> structureElements) {
+		long start = System.nanoTime();
+		try {
+			List<Id> ids = new ArrayList<Id>();
+			List<LogicalDiv> logicalDivs = metsIndex.getLogicalDivs();
+			Set<String> structureElementSet = (structureElements != null) ? new HashSet<String>(structureElements) : null;
+
+			// If there are no structure elements, just return null
+			if (logicalDivs.isEmpty()) {
+				return null;
+			}
+
+			for (LogicalDiv logicalDiv : logicalDivs) {
+				// Add only elements for the given structure elements (e. g. article, editorial, etc.) if the user specified them. If no structure elements
+				// are specified (structureElements = null), then add all of them
+				if (structureElementSet == null || structureElementSet.contains(logicalDiv.getType())) {
+					List<String> physIds = copyStructLinks(metsIndex, logicalDiv.getLogId());
+					ids.add(new Id(logicalDiv.getDmdlogId(), logicalDiv.getLogId(), physIds));
+				}
+			}
+
+			return ids;
+		} finally {
+			getMetrics().time(EXTRACT_GET_IDS, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Gets all structure elements of a METS-XML document with all their data at once: the identifiers (LogId, DmdlogId, PhysIds), the type and, for the
+	 * pages of each structure element, the 8-digit image numbers, the page labels, the URNs and the page range. This is the same data as returned by
+	 * getIds(), getOrderNoByPhysId(), getFirstLastLabelByPhysId(), getUrnsByPhysIds() and getPageLabelByPhysId(), but the structure links and the
+	 * physical structure map are read only once for the whole document.
+	 * 
+	 * @param document				a Document object (METS-XML)
+	 * @param structureElements		a Set<String> of stucture elements to parse, e. g. "Article", "Chapter", etc. Use "null" to parse all structure elements
+	 * @return						a List<Id> or null if the logical structure map is empty
+	 */
+	public List<Id> getDetailedIds(Document document, Set<String> structureElements) {
+		return getDetailedIds(getMetsIndex(document), structureElements);
+	}
+
+	/**
+	 * Gets all structure elements of an indexed METS-XML document with all their data at once. See getDetailedIds(Document, Set<String>).
+	 * 
+	 * @param metsIndex				a MetsIndex of a METS-XML document
+	 * @param structureElements		a Set<String> of stucture elements to parse, e. g. "Article", "Chapter", etc. Use "null" to parse all structure elements
+	 * @return						a List<Id> or null if the logical structure map is empty
+	 */
+	public List<Id> getDetailedIds(MetsIndex metsIndex, Set<String> structureElements) {
+		long start = System.nanoTime();
+		try {
+			List<Id> ids = new ArrayList<Id>();
+			List<LogicalDiv> logicalDivs = metsIndex.getLogicalDivs();
+
+			// If there are no structure elements, just return null
+			if (logicalDivs.isEmpty()) {
+				return null;
+			}
+
+			for (LogicalDiv logicalDiv : logicalDivs) {
+				if (structureElements != null && !structureElements.contains(logicalDiv.getType())) {
+					continue;
+				}
+
+				List<String> physIds = copyStructLinks(metsIndex, logicalDiv.getLogId());
+				Id id = new Id(logicalDiv.getDmdlogId(), logicalDiv.getLogId(), physIds);
+				id.setType(logicalDiv.getType());
+
+				if (physIds != null) {
+					List<String> orderNos = new ArrayList<String>(physIds.size());
+					List<String> orderLabels = new ArrayList<String>(physIds.size());
+					List<String> urns = new ArrayList<String>(physIds.size());
+					for (String physId : physIds) {
+						PhysicalPage physicalPage = metsIndex.getPhysicalPage(physId);
+						orderNos.add((physicalPage != null && physicalPage.getOrder() != null) ? getImageNo(physicalPage) : null);
+						orderLabels.add((physicalPage != null) ? physicalPage.getOrderLabel() : null);
+						urns.add((physicalPage != null) ? physicalPage.getContentIds() : null);
+					}
+					id.setOrderNos(orderNos);
+					id.setOrderLabels(orderLabels);
+					id.setUrns(urns);
+
+					String firstPage = orderLabels.get(0);
+					String lastPage = orderLabels.get(orderLabels.size()-1);
+					if (firstPage != null && lastPage != null) {
+						id.setPageLabel((firstPage.equals(lastPage)) ? firstPage.trim() : firstPage.trim() + "-" + lastPage.trim());
 					}
-				} else { // If no structure elements (e. g. article, editorial, etc.) are specified (structureElements = null), then add all of them
-					phsyIds = getPhysIds(document, logId);
-					ids.add(new Id(dmdlogId, logId, phsyIds));
 				}
+
+				ids.add(id);
 			}
-		} else {
-			ids = null;
+
+			return ids;
+		} finally {
+			getMetrics().time(EXTRACT_GET_DETAILED_IDS, System.nanoTime() - start);
 		}
+	}
+
+	/**
+	 * Gets all structure elements of an indexed METS-XML document as memory saving CompactIds. A CompactId holds the pages of a structure element as
+	 * runs of page orders and looks up its physical IDs, page labels and URNs in the MetsIndex only when they are requested. The getters return the same
+	 * values as the Ids of getDetailedIds(). Structure elements with pages that have no unique numeric ORDER attribute are returned as Ids with physical IDs only.
+	 * 
+	 * @param metsIndex				a MetsIndex of a METS-XML document. It is referenced by the CompactIds.
+	 * @param structureElements		a Set<String> of stucture elements to parse, e. g. "Article", "Chapter", etc. Use "null" to parse all structure elements
+	 * @return						a List<Id> or null if the logical structure map is empty
+	 */
+	public List<Id> getCompactIds(MetsIndex metsIndex, Set<String> structureElements) {
+		long start = System.nanoTime();
+		try {
+			List<Id> ids = new ArrayList<Id>();
+			List<LogicalDiv> logicalDivs = metsIndex.getLogicalDivs();
+
+			// If there are no structure elements, just return null
+			if (logicalDivs.isEmpty()) {
+				return null;
+			}
+
+			for (LogicalDiv logicalDiv : logicalDivs) {
+				if (structureElements != null && !structureElements.contains(logicalDiv.getType())) {
+					continue;
+				}
+
+				List<String> physIds = metsIndex.getStructLinks(logicalDiv.getLogId());
+				int[] orders = (physIds != null) ? new int[physIds.size()] : null;
+				for (int i = 0; orders != null && i < orders.length; i++) {
+					PhysicalPage physicalPage = metsIndex.getPhysicalPage(physIds.get(i));
+					orders[i] = (physicalPage != null) ? physicalPage.getOrderNo() : -1;
+					// The page must be found again by its order
+					if (orders[i] < 0 || metsIndex.getPhysicalPageByOrder(orders[i]) != physicalPage) {
+						orders = null;
+					}
+				}
+
+				Id id;
+				if (orders != null) {
+					id = new CompactId(logicalDiv.getDmdlogId(), logicalDiv.getLogId(), logicalDiv.getType(), new PageOrders(orders), metsIndex);
+				} else {
+					id = new Id(logicalDiv.getDmdlogId(), logicalDiv.getLogId(), (physIds != null) ? new ArrayList<String>(physIds) : null);
+					id.setType(logicalDiv.getType());
+				}
+				ids.add(id);
+			}
 
-		return ids;
+			return ids;
+		} finally {
+			getMetrics().time(EXTRACT_GET_COMPACT_IDS, System.nanoTime() - start);
+		}
 	}
 
 	/**
@@ -99,10 +367,40 @@ public class GoobiOaiHelper extends XmlParser {
 	 * @return				a List<String> with the identifiers of the physical structure map
 	 * @throws Exception
 	 */
-	public List<String> getPhysIds(Document document, String logId) throws Exception {	
-		List<String> physIds = new ArrayList<String>();
-		physIds = xmlParser.getAttributeValues(document, "//mets/structLink//smLink[@from='" + logId + "']", "xlink:to");
-		return physIds;
+	public List<String> getPhysIds(Document document, String logId) throws Exception {
+		return getPhysIds(getMetsIndex(document), logId);
+	}
+
+	/**
+	 * Gets the identifiers of the physical structure map (see element <mets:structMap TYPE="PHYSICAL">) of an indexed METS-XML.
+	 * 
+	 * @param metsIndex		a MetsIndex of a METS-XML document
+	 * @param logId			a String with an identifier of the logical structure map (see element <mets:structMap TYPE="LOGICAL">) of the METS-XML
+	 * @return				a List<String> with the identifiers of the physical structure map or null if there are none
+	 */
+	public List<String> getPhysIds(MetsIndex metsIndex, String logId) {
+		long start = System.nanoTime();
+		try {
+			return copyStructLinks(metsIndex, logId);
+		} finally {
+			getMetrics().time(EXTRACT_GET_PHYS_IDS, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Gets the identifiers of the physical structure map of a PageIndex that are linked to an identifier of the logical structure map.
+	 * 
+	 * @param pageIndex		a PageIndex of a METS-XML document
+	 * @param logId			a String with an identifier of the logical structure map (see element <mets:structMap TYPE="LOGICAL">) of the METS-XML
+	 * @return				a List<String> with the identifiers of the physical structure map or null if there are none
+	 */
+	public List<String> getPhysIds(PageIndex pageIndex, String logId) {
+		long start = System.nanoTime();
+		try {
+			return pageIndex.getPhysIds(logId);
+		} finally {
+			getMetrics().time(EXTRACT_GET_PHYS_IDS, System.nanoTime() - start);
+		}
 	}
 
 
@@ -116,22 +414,65 @@ public class GoobiOaiHelper extends XmlParser {
 	 * @throws XPathExpressionException
 	 */
 	public String getPageLabelByPhysId(Document document, List<String> physIds) throws XPathExpressionException {
-		String pageLabel = null;
+		return getPageLabelByPhysId(getMetsIndex(document), physIds);
+	}
+
+	/**
+	 * Gets a String with the page label for a structure element of an indexed METS-XML. See getPageLabelByPhysId(Document, List<String>).
+	 * 
+	 * @param metsIndex						a MetsIndex of a METS-XML document
+	 * @param physIds						a List<String> with the identifiers of the physical structure map (see element <mets:structMap TYPE="PHYSICAL">) of the METS-XML
+	 * @return								a String with the page labels
+	 */
+	public String getPageLabelByPhysId(MetsIndex metsIndex, List<String> physIds) {
+		long start = System.nanoTime();
+		try {
+			String pageLabel = null;
+
+			// Prevent NullPointerException. If there are no physIds, just return null
+			if (physIds != null) {
+				String firstPage = getOrderLabel(metsIndex, physIds.get(0));
+				String lastPage = getOrderLabel(metsIndex, physIds.get(physIds.size()-1));
+
+				if (firstPage.equals(lastPage)) {
+					pageLabel = firstPage.trim();
+				} else {
+					pageLabel = firstPage.trim() + "-" + lastPage.trim();
+				}
+			}
+			return pageLabel;
+		} finally {
+			getMetrics().time(EXTRACT_GET_PAGE_LABEL_BY_PHYS_ID, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Gets a String with the page label for a structure element of a PageIndex. See getPageLabelByPhysId(Document, List<String>).
+	 * 
+	 * @param pageIndex						a PageIndex of a METS-XML document
+	 * @param physIds						a List<String> with the identifiers of the physical structure map (see element <mets:structMap TYPE="PHYSICAL">) of the METS-XML
+	 * @return								a String with the page labels
+	 */
+	public String getPageLabelByPhysId(PageIndex pageIndex, List<String> physIds) {
+		long start = System.nanoTime();
+		try {
+			String pageLabel = null;
 
-		// Prevent NullPointerException. If there are no physIds, just return null
-		if (physIds != null) {
-			String firstPhysId = physIds.get(0);
-			String lastPhysId = physIds.get(physIds.size()-1);
-			String firstPage = xmlParser.getAttributeValue(document, "//mets/structMap[@TYPE=\"PHYSICAL\"]//div[@ID='" + firstPhysId + "']", "ORDERLABEL");
-			String lastPage = xmlParser.getAttributeValue(document, "//mets/structMap[@TYPE=\"PHYSICAL\"]//div[@ID='" + lastPhysId + "']", "ORDERLABEL");
+			// Prevent NullPointerException. If there are no physIds, just return null
+			if (physIds != null) {
+				String firstPage = getOrderLabel(pageIndex, physIds.get(0));
+				String lastPage = getOrderLabel(pageIndex, physIds.get(physIds.size()-1));
 
-			if (firstPage.equals(lastPage)) {
-				pageLabel = firstPage.trim();
-			} else {
-				pageLabel = firstPage.trim() + "-" + lastPage.trim();
+				if (firstPage.equals(lastPage)) {
+					pageLabel = firstPage.trim();
+				} else {
+					pageLabel = firstPage.trim() + "-" + lastPage.trim();
+				}
 			}
+			return pageLabel;
+		} finally {
+			getMetrics().time(EXTRACT_GET_PAGE_LABEL_BY_PHYS_ID, System.nanoTime() - start);
 		}
-		return pageLabel;
 	}
 
 
@@ -145,19 +486,51 @@ public class GoobiOaiHelper extends XmlParser {
 	 * @throws XPathExpressionException
 	 */
 	public List<String> getFirstLastLabelByPhysId(Document document, List<String> physIds) throws XPathExpressionException {
-		List<String> lstPageLabels = new ArrayList<String>();
-		String firstPage = null;
-		String lastPage = null;
+		return getFirstLastLabelByPhysId(getMetsIndex(document), physIds);
+	}
+
+	/**
+	 * Gets a List<String> with separated fist page label and last page label for a structure element of an indexed METS-XML. See getFirstLastLabelByPhysId(Document, List<String>).
+	 * 
+	 * @param metsIndex						a MetsIndex of a METS-XML document
+	 * @param physIds						a List<String> with the identifiers of the physical structure map (see element <mets:structMap TYPE="PHYSICAL">) of the METS-XML
+	 * @return								a List<String>, where the first element ist the first page, the second element is the second page
+	 */
+	public List<String> getFirstLastLabelByPhysId(MetsIndex metsIndex, List<String> physIds) {
+		long start = System.nanoTime();
+		try {
+			List<String> lstPageLabels = new ArrayList<String>();
+
+			if (physIds != null) {
+				lstPageLabels.add(getOrderLabel(metsIndex, physIds.get(0)));
+				lstPageLabels.add(getOrderLabel(metsIndex, physIds.get(physIds.size()-1)));
+			}
+			return lstPageLabels;
+		} finally {
+			getMetrics().time(EXTRACT_GET_FIRST_LAST_LABEL_BY_PHYS_ID, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Gets a List<String> with separated fist page label and last page label for a structure element of a PageIndex. See getFirstLastLabelByPhysId(Document, List<String>).
+	 * 
+	 * @param pageIndex						a PageIndex of a METS-XML document
+	 * @param physIds						a List<String> with the identifiers of the physical structure map (see element <mets:structMap TYPE="PHYSICAL">) of the METS-XML
+	 * @return								a List<String>, where the first element ist the first page, the second element is the second page
+	 */
+	public List<String> getFirstLastLabelByPhysId(PageIndex pageIndex, List<String> physIds) {
+		long start = System.nanoTime();
+		try {
+			List<String> lstPageLabels = new ArrayList<String>();
 
-		if (physIds != null) {
-			String firstPhysId = physIds.get(0);
-			String lastPhysId = physIds.get(physIds.size()-1);
-			firstPage = xmlParser.getAttributeValue(document, "//mets/structMap[@TYPE=\"PHYSICAL\"]//div[@ID='" + firstPhysId + "']", "ORDERLABEL");
-			lastPage = xmlParser.getAttributeValue(document, "//mets/structMap[@TYPE=\"PHYSICAL\"]//div[@ID='" + lastPhysId + "']", "ORDERLABEL");
-			lstPageLabels.add(firstPage);
-			lstPageLabels.add(lastPage);	
+			if (physIds != null) {
+				lstPageLabels.add(getOrderLabel(pageIndex, physIds.get(0)));
+				lstPageLabels.add(getOrderLabel(pageIndex, physIds.get(physIds.size()-1)));
+			}
+			return lstPageLabels;
+		} finally {
+			getMetrics().time(EXTRACT_GET_FIRST_LAST_LABEL_BY_PHYS_ID, System.nanoTime() - start);
 		}
-		return lstPageLabels;
 	}
 
 
@@ -169,18 +542,59 @@ public class GoobiOaiHelper extends XmlParser {
 	 * @throws XPathExpressionException
 	 */
 	public List<String> getOrderNoByPhysId(Document document, List<String> physIds) throws XPathExpressionException {
-		List<String> images = new ArrayList<String>();
+		return getOrderNoByPhysId(getMetsIndex(document), physIds);
+	}
 
-		for (String physId : physIds) {
-			String imageNo = xmlParser.getAttributeValue(document, "//mets/structMap[@TYPE=\"PHYSICAL\"]//div[@ID='" + physId + "']", "ORDER");
+	/**
+	 * Gets a List<String> which contains the 8-digit image numbers that orders a structure element of an indexed METS-XML. See getOrderNoByPhysId(Document, List<String>).
+	 * 
+	 * @param metsIndex						a MetsIndex of a METS-XML document
+	 * @param physIds						a List<String> with the identifiers of the physical structure map (see element <mets:structMap TYPE="PHYSICAL">) of the METS-XML
+	 * @return								a List<String> containing the 8-digit image numbers that orders a structure element
+	 */
+	public List<String> getOrderNoByPhysId(MetsIndex metsIndex, List<String> physIds) {
+		long start = System.nanoTime();
+		try {
+			List<String> images = new ArrayList<String>();
 
-			int intImageNo = Integer.parseInt(imageNo); // Convert to int to be able to add leading zeros and make it 8 digits long
-			imageNo = String.format("%08d", intImageNo); // Image-number-string with leading zeros by using String.format
+			for (String physId : physIds) {
+				PhysicalPage physicalPage = metsIndex.getPhysicalPage(physId);
+				if (physicalPage == null) {
+					throw new NumberFormatException("null"); // Same as Integer.parseInt() for a div without ORDER attribute
+				}
+				images.add(getImageNo(physicalPage));
+			}
 
-			images.add(imageNo);
+			return images;
+		} finally {
+			getMetrics().time(EXTRACT_GET_ORDER_NO_BY_PHYS_ID, System.nanoTime() - start);
 		}
+	}
+
+	/**
+	 * Gets a List<String> which contains the 8-digit image numbers that orders a structure element of a PageIndex. See getOrderNoByPhysId(Document, List<String>).
+	 * 
+	 * @param pageIndex						a PageIndex of a METS-XML document
+	 * @param physIds						a List<String> with the identifiers of the physical structure map (see element <mets:structMap TYPE="PHYSICAL">) of the METS-XML
+	 * @return								a List<String> containing the 8-digit image numbers that orders a structure element
+	 */
+	public List<String> getOrderNoByPhysId(PageIndex pageIndex, List<String> physIds) {
+		long start = System.nanoTime();
+		try {
+			List<String> images = new ArrayList<String>();
 
-		return images;
+			for (String physId : physIds) {
+				int pageNo = pageIndex.getPageNo(physId);
+				if (pageNo < 0) {
+					throw new NumberFormatException("null"); // Same as Integer.parseInt() for a div without ORDER attribute
+				}
+				images.add(pageIndex.getImageNo(pageNo));
+			}
+
+			return images;
+		} finally {
+			getMetrics().time(EXTRACT_GET_ORDER_NO_BY_PHYS_ID, System.nanoTime() - start);
+		}
 	}
 
 	/**
@@ -192,46 +606,125 @@ public class GoobiOaiHelper extends XmlParser {
 	 * @throws XPathExpressionException
 	 */
 	public List<String> getUrnsByPhysIds(Document document, List<String> physIds) throws XPathExpressionException {
-		List<String> urns = new ArrayList<String>();
-		for (String physId : physIds) {
-			String urn = xmlParser.getAttributeValue(document, "//mets/structMap[@TYPE=\"PHYSICAL\"]//div[@ID='" + physId + "']", "CONTENTIDS");
-			urns.add(urn);
+		return getUrnsByPhysIds(getMetsIndex(document), physIds);
+	}
+
+	/**
+	 * Gets a List<String> of all URNs of the given PhysIDs of an indexed METS-XML.
+	 * 
+	 * @param metsIndex						a MetsIndex of a METS-XML document
+	 * @param physIds						a List<String> with the identifiers of the physical structure map (see element <mets:structMap TYPE="PHYSICAL">) of the METS-XML
+	 * @return								a List<String> containing the URNs for the given PhysIDs
+	 */
+	public List<String> getUrnsByPhysIds(MetsIndex metsIndex, List<String> physIds) {
+		long start = System.nanoTime();
+		try {
+			List<String> urns = new ArrayList<String>();
+			for (String physId : physIds) {
+				PhysicalPage physicalPage = metsIndex.getPhysicalPage(physId);
+				urns.add((physicalPage != null) ? physicalPage.getContentIds() : null);
+			}
+
+			return urns;
+		} finally {
+			getMetrics().time(EXTRACT_GET_URNS_BY_PHYS_IDS, System.nanoTime() - start);
 		}
+	}
+
+	/**
+	 * Gets a List<String> of all URNs of the given PhysIDs of a PageIndex.
+	 * 
+	 * @param pageIndex						a PageIndex of a METS-XML document
+	 * @param physIds						a List<String> with the identifiers of the physical structure map (see element <mets:structMap TYPE="PHYSICAL">) of the METS-XML
+	 * @return								a List<String> containing the URNs for the given PhysIDs
+	 */
+	public List<String> getUrnsByPhysIds(PageIndex pageIndex, List<String> physIds) {
+		long start = System.nanoTime();
+		try {
+			List<String> urns = new ArrayList<String>();
+			for (String physId : physIds) {
+				int pageNo = pageIndex.getPageNo(physId);
+				urns.add((pageNo >= 0) ? pageIndex.getUrn(pageNo) : null);
+			}
 
-		return urns;
+			return urns;
+		} finally {
+			getMetrics().time(EXTRACT_GET_URNS_BY_PHYS_IDS, System.nanoTime() - start);
+		}
 	}
 
 	/**
 	 * Gets a List<String> of author names for a given DmdLogId (= ID of a structure element). The names will be in the format "FirstName LastName".
+	 * Given and family name are taken from the same <mods:name type="personal"> element.
 	 * 
 	 * @param document	a Document object (METS-XML)
 	 * @param dmdlogId	a String containing a DmdLogId
 	 * @return			a List<String> containing author names or null if no names were found
 	 */
 	public List<String> getAuthorsByDmdlogId(Document document, String dmdlogId) {
-		List<String> authorNames = new ArrayList<String>();
-
-		String xPathName				= "//mets/dmdSec[@ID='" + dmdlogId + "']/mdWrap/xmlData/mods/name[@type='personal']";
-		String xpathAuthorGivenName		= "//mets/dmdSec[@ID='" + dmdlogId + "']/mdWrap/xmlData/mods/name/namePart[@type='given']";
-		String xpathAuthorFamilyName	= "//mets/dmdSec[@ID='" + dmdlogId + "']/mdWrap/xmlData/mods/name/namePart[@type='family']";
+		return getAuthorsByDmdlogId(getMetsIndex(document), dmdlogId);
+	}
 
+	/**
+	 * Gets a List<String> of author names for a given DmdLogId (= ID of a structure element) of an indexed METS-XML. The names will be in the format "FirstName LastName".
+	 * 
+	 * @param metsIndex	a MetsIndex of a METS-XML document
+	 * @param dmdlogId	a String containing a DmdLogId
+	 * @return			a List<String> containing author names or null if no names were found
+	 */
+	public List<String> getAuthorsByDmdlogId(MetsIndex metsIndex, String dmdlogId) {
+		long start = System.nanoTime();
 		try {
-			XPath xPath =  XPathFactory.newInstance().newXPath();
-			NodeList nameNodes = (NodeList)xPath.compile(xPathName).evaluate(document, XPathConstants.NODESET);
+			return metsIndex.getAuthorNames(dmdlogId);
+		} finally {
+			getMetrics().time(EXTRACT_GET_AUTHORS_BY_DMDLOG_ID, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Gets the MODS metadata (authors with roles, title, subtitle, languages and identifiers) of all structure elements of a METS-XML document in one
+	 * call. The MODS sections were read once when the document was indexed.
+	 * 
+	 * @param document	a Document object (METS-XML)
+	 * @return			a Map<String, ModsRecord> with the DmdLogId as key in the order of the <mets:dmdSec> elements. It is empty if there are no MODS sections.
+	 */
+	public Map<String, ModsRecord> getModsRecords(Document document) {
+		return getModsRecords(getMetsIndex(document));
+	}
 
-			for (int i = 0; i < nameNodes.getLength(); i++) {
-				NodeList givenNameNode = (NodeList)xPath.compile(xpathAuthorGivenName).evaluate(document, XPathConstants.NODESET);
-				NodeList familyNameNode = (NodeList)xPath.compile(xpathAuthorFamilyName).evaluate(document, XPathConstants.NODESET);
-				String givenName = givenNameNode.item(i).getFirstChild().getNodeValue();
-				String familyName = familyNameNode.item(i).getFirstChild().getNodeValue();
-				authorNames.add(givenName + " " + familyName);
+	/**
+	 * Gets the MODS metadata (authors with roles, title, subtitle, languages and identifiers) of all structure elements of an indexed METS-XML.
+	 * 
+	 * @param metsIndex	a MetsIndex of a METS-XML document
+	 * @return			a Map<String, ModsRecord> with the DmdLogId as key in the order of the <mets:dmdSec> elements. It is empty if there are no MODS sections.
+	 */
+	public Map<String, ModsRecord> getModsRecords(MetsIndex metsIndex) {
+		long start = System.nanoTime();
+		try {
+			Map<String, ModsRecord> modsRecords = new LinkedHashMap<String, ModsRecord>();
+			for (ModsRecord modsRecord : metsIndex.getModsRecords()) {
+				modsRecords.put(modsRecord.getDmdlogId(), modsRecord);
 			}
-		} catch (XPathExpressionException e) {
-			e.printStackTrace();
+			return modsRecords;
+		} finally {
+			getMetrics().time(EXTRACT_GET_MODS_RECORDS, System.nanoTime() - start);
 		}
+	}
 
-		authorNames = (authorNames.isEmpty() == false) ? authorNames : null;
-		return authorNames;
+	/**
+	 * Gets the MODS metadata of a structure element by its DmdLogId.
+	 * 
+	 * @param metsIndex	a MetsIndex of a METS-XML document
+	 * @param dmdlogId	a String containing a DmdLogId
+	 * @return			a ModsRecord or null if there is no MODS section for the DmdLogId
+	 */
+	public ModsRecord getModsRecord(MetsIndex metsIndex, String dmdlogId) {
+		long start = System.nanoTime();
+		try {
+			return metsIndex.getModsRecord(dmdlogId);
+		} finally {
+			getMetrics().time(EXTRACT_GET_MODS_RECORD, System.nanoTime() - start);
+		}
 	}
 
 	/**
@@ -243,4 +736,74 @@ public class GoobiOaiHelper extends XmlParser {
 		return oaiPmh;
 	}
 
+	/**
+	 * Gets the Network that is used by processRecords().
+	 * 
+	 * @return a Network
+	 */
+	public Network getNetwork() {
+		if (network == null) {
+			network = new Network();
+		}
+		return network;
+	}
+
+	/**
+	 * Sets the Network that is used by processRecords(), e. g. one with a configured HttpClient or a MetsRecordCache.
+	 * 
+	 * @param network	a Network
+	 */
+	public void setNetwork(Network network) {
+		this.network = network;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets the number of threads for processDocuments() and processRecords(). Default is the number of available processors.
+	 * 
+	 * @param threads	the number of threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+
+	/**
+	 * Gets the 8-digit image number of a div of the physical structure map. The order was already parsed when the index was built, so only orders that are
+	 * not simple numbers are parsed (and formatted) again here, which throws a NumberFormatException for orders that are not numbers at all.
+	 */
+	private String getImageNo(PhysicalPage physicalPage) {
+		if (physicalPage.getOrderNo() >= 0) {
+			return PageOrders.formatImageNo(physicalPage.getOrderNo());
+		}
+		return String.format("%08d", Integer.parseInt(physicalPage.getOrder()));
+	}
+
+	/**
+	 * Gets the ORDERLABEL attribute of a page of a PageIndex or null if the page or the attribute does not exist.
+	 */
+	private String getOrderLabel(PageIndex pageIndex, String physId) {
+		int pageNo = pageIndex.getPageNo(physId);
+		return (pageNo >= 0) ? pageIndex.getOrderLabel(pageNo) : null;
+	}
+
+	/**
+	 * Gets a copy of the identifiers of the physical structure map that are linked to an identifier of the logical structure map or null if there are none.
+	 */
+	private List<String> copyStructLinks(MetsIndex metsIndex, String logId) {
+		List<String> structLinks = metsIndex.getStructLinks(logId);
+		return (structLinks != null) ? new ArrayList<String>(structLinks) : null;
+	}
+
+	/**
+	 * Gets the ORDERLABEL attribute of a div of the physical structure map or null if the div or the attribute does not exist.
+	 */
+	private String getOrderLabel(MetsIndex metsIndex, String physId) {
+		PhysicalPage physicalPage = metsIndex.getPhysicalPage(physId);
+		return (physicalPage != null) ? physicalPage.getOrderLabel() : null;
+	}
+
 }
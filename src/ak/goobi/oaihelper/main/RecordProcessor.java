@@ -0,0 +1,39 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.main;
+
+import ak.goobi.oaihelper.classes.MetsIndex;
+
+/**
+ * Implement this interface to process records of an OAI-PMH interface in parallel with GoobiOaiHelper.processRecords().
+ * 
+ * @param <T>	the type of the result for one record
+ * @author Michael Birkner
+ */
+public interface RecordProcessor<T> {
+
+	/**
+	 * Processes one record. This method is called from several threads at the same time, so implementations must be thread-safe.
+	 * 
+	 * @param identifier	a String with the identifier of the record
+	 * @param metsIndex		the MetsIndex of the METS-XML of the record
+	 * @return				the result for the record
+	 * @throws Exception	stops the processing of the batch
+	 */
+	public T process(String identifier, MetsIndex metsIndex) throws Exception;
+
+}
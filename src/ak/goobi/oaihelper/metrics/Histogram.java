@@ -0,0 +1,180 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts the distribution of non-negative values (e. g. durations in nanoseconds or sizes in bytes) in buckets, so percentiles can be
+ * estimated without storing the values. Every power of 2 is divided into 4 buckets, so a percentile is at most 25 % higher than the exact value.
+ * Recording a value does not lock and does not allocate, so a Histogram can be updated from many threads on the hot path.
+ * 
+ * @author Michael Birkner
+ */
+public class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 * 
+	 * @param value	the value
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets.incrementAndGet(getBucket(value));
+		count.increment();
+		sum.add(value);
+
+		long currentMin = min.get();
+		while (value < currentMin && !min.compareAndSet(currentMin, value)) {
+			currentMin = min.get();
+		}
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+
+	/**
+	 * Gets the number of recorded values.
+	 * 
+	 * @return	the number of values
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+
+	/**
+	 * Gets the sum of all recorded values, e. g. the total number of downloaded bytes.
+	 * 
+	 * @return	the sum
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+
+	/**
+	 * Gets the smallest recorded value.
+	 * 
+	 * @return	the smallest value or 0 if no value was recorded
+	 */
+	public long getMin() {
+		long value = min.get();
+		return (value == Long.MAX_VALUE) ? 0 : value;
+	}
+
+
+	/**
+	 * Gets the largest recorded value.
+	 * 
+	 * @return	the largest value or 0 if no value was recorded
+	 */
+	public long getMax() {
+		long value = max.get();
+		return (value == Long.MIN_VALUE) ? 0 : value;
+	}
+
+
+	/**
+	 * Gets the mean of all recorded values.
+	 * 
+	 * @return	the mean or 0 if no value was recorded
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return (n == 0) ? 0 : (double)sum.sum() / n;
+	}
+
+
+	/**
+	 * Estimates a percentile of the recorded values. The result is the upper bound of the bucket that contains the percentile, but never more than the
+	 * largest recorded value. Values that are recorded during the call may or may not be taken into account.
+	 * 
+	 * @param percentile	the percentile between 0 and 100, e. g. 99 for the value below which 99 % of the values are
+	 * @return				the estimated percentile or 0 if no value was recorded
+	 */
+	public long getPercentile(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long)Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(getUpperBound(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+
+	/**
+	 * Values 0 to 3 have a bucket each. Larger values are assigned to one of 4 buckets per power of 2 by the 2 bits after the highest bit.
+	 */
+	private static int getBucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int)(value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+
+	private static long getUpperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		int subBucket = bucket % SUB_BUCKETS;
+		long width = 1L << (highestBit - SUB_BUCKET_BITS);
+		long lowerBound = ((long)(SUB_BUCKETS + subBucket)) << (highestBit - SUB_BUCKET_BITS);
+		return lowerBound + width - 1;
+	}
+
+
+	@Override
+	public String toString() {
+		return "Histogram [count=" + getCount() + ", mean=" + getMean() + ", min=" + getMin() + ", max=" + getMax() + "]";
+	}
+
+}
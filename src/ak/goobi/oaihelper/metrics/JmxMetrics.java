@@ -0,0 +1,196 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * This class collects the measurements like MetricsRegistry and publishes them as read-only attributes of an MBean with the ObjectName
+ * "ak.goobi.oaihelper:type=Metrics,name=...", e. g. for JConsole or a JMX exporter of a monitoring system. Every counter is an attribute with its name,
+ * every timer and histogram has the attributes "<name>.count", "<name>.mean", "<name>.p50", "<name>.p95", "<name>.p99" and "<name>.max" (for timers in
+ * milliseconds) and histograms have the attribute "<name>.sum" in addition. The attributes are read when they are requested, so there are no costs
+ * between two requests. Metrics that are created after a JMX client has read the MBeanInfo appear when the client reconnects.
+ * 
+ * @author Michael Birkner
+ */
+public class JmxMetrics extends MetricsRegistry implements AutoCloseable {
+
+	private static final String[] STATISTICS = { "count", "mean", "p50", "p95", "p99", "max" };
+
+	private ObjectName objectName;
+
+
+	/**
+	 * Creates the metrics and registers the MBean at the platform MBeanServer.
+	 * 
+	 * @param name				a String to distinguish more than one instance, e. g. the name of the application
+	 * @throws JMException		if the MBean can not be registered, e. g. because there is already one with the same name
+	 */
+	public JmxMetrics(String name) throws JMException {
+		objectName = new ObjectName("ak.goobi.oaihelper:type=Metrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), objectName);
+	}
+
+
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+
+	/**
+	 * Unregisters the MBean. The measurements are still collected.
+	 */
+	@Override
+	public void close() {
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (mBeanServer.isRegistered(objectName)) {
+				mBeanServer.unregisterMBean(objectName);
+			}
+		} catch (JMException e) {
+			// The MBean was unregistered in the meantime
+		}
+	}
+
+
+	private Object getAttributeValue(String attribute) throws AttributeNotFoundException {
+		if (getCounterNames().contains(attribute)) {
+			return Long.valueOf(getCount(attribute));
+		}
+
+		int separator = attribute.lastIndexOf('.');
+		if (separator > 0) {
+			String name = attribute.substring(0, separator);
+			String statistic = attribute.substring(separator + 1);
+			Histogram timer = getTimer(name);
+			if (timer != null) {
+				return getStatistic(timer, statistic, true);
+			}
+			Histogram histogram = getHistogram(name);
+			if (histogram != null) {
+				if ("sum".equals(statistic)) {
+					return Long.valueOf(histogram.getSum());
+				}
+				return getStatistic(histogram, statistic, false);
+			}
+		}
+		throw new AttributeNotFoundException(attribute);
+	}
+
+
+	private Object getStatistic(Histogram histogram, String statistic, boolean millis) throws AttributeNotFoundException {
+		long value;
+		if ("count".equals(statistic)) {
+			return Long.valueOf(histogram.getCount());
+		} else if ("mean".equals(statistic)) {
+			return Double.valueOf(millis ? histogram.getMean() / 1000000 : histogram.getMean());
+		} else if ("p50".equals(statistic)) {
+			value = histogram.getPercentile(50);
+		} else if ("p95".equals(statistic)) {
+			value = histogram.getPercentile(95);
+		} else if ("p99".equals(statistic)) {
+			value = histogram.getPercentile(99);
+		} else if ("max".equals(statistic)) {
+			value = histogram.getMax();
+		} else {
+			throw new AttributeNotFoundException(statistic);
+		}
+		return millis ? (Object)Double.valueOf(toMillis(value)) : (Object)Long.valueOf(value);
+	}
+
+
+	private MBeanAttributeInfo[] getAttributeInfos() {
+		List<MBeanAttributeInfo> attributeInfos = new ArrayList<MBeanAttributeInfo>();
+		for (String name : getCounterNames()) {
+			attributeInfos.add(new MBeanAttributeInfo(name, "java.lang.Long", "Counter", true, false, false));
+		}
+		for (String name : getTimerNames()) {
+			for (String statistic : STATISTICS) {
+				String type = "count".equals(statistic) ? "java.lang.Long" : "java.lang.Double";
+				attributeInfos.add(new MBeanAttributeInfo(name + "." + statistic, type, "Timer in milliseconds", true, false, false));
+			}
+		}
+		for (String name : getHistogramNames()) {
+			for (String statistic : STATISTICS) {
+				String type = "mean".equals(statistic) ? "java.lang.Double" : "java.lang.Long";
+				attributeInfos.add(new MBeanAttributeInfo(name + "." + statistic, type, "Histogram", true, false, false));
+			}
+			attributeInfos.add(new MBeanAttributeInfo(name + ".sum", "java.lang.Long", "Histogram", true, false, false));
+		}
+		return attributeInfos.toArray(new MBeanAttributeInfo[attributeInfos.size()]);
+	}
+
+
+	/**
+	 * Publishes the counters, timers and histograms of the registry as read-only attributes.
+	 */
+	private class MetricsMBean implements DynamicMBean {
+
+		@Override
+		public Object getAttribute(String attribute) throws AttributeNotFoundException {
+			return getAttributeValue(attribute);
+		}
+
+		@Override
+		public AttributeList getAttributes(String[] attributes) {
+			AttributeList attributeList = new AttributeList();
+			for (String attribute : attributes) {
+				try {
+					attributeList.add(new Attribute(attribute, getAttributeValue(attribute)));
+				} catch (AttributeNotFoundException e) {
+					// Unknown attributes are left out, as defined by DynamicMBean
+				}
+			}
+			return attributeList;
+		}
+
+		@Override
+		public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+			throw new AttributeNotFoundException("Attribute " + attribute.getName() + " is read-only");
+		}
+
+		@Override
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		@Override
+		public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+			throw new ReflectionException(new NoSuchMethodException(actionName));
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo() {
+			return new MBeanInfo(JmxMetrics.class.getName(), "Metrics of GoobiOaiHelper", getAttributeInfos(), null, new MBeanOperationInfo[0], null);
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.metrics;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class collects the measurements like MetricsRegistry and writes the report of MetricsRegistry.report() periodically to the java.util.logging
+ * Logger "ak.goobi.oaihelper.metrics" with level INFO. The report is written by a daemon thread, so the threads that record the measurements are not
+ * slowed down. Close the metrics to stop the reports; a last report is written on closing.
+ * 
+ * @author Michael Birkner
+ */
+public class LogMetrics extends MetricsRegistry implements AutoCloseable {
+
+	private static final Logger LOGGER = Logger.getLogger("ak.goobi.oaihelper.metrics");
+
+	private ScheduledExecutorService scheduler;
+
+
+	/**
+	 * Creates the metrics without periodic reports. Call log() to write a report.
+	 */
+	public LogMetrics() {
+	}
+
+
+	/**
+	 * Creates the metrics and writes a report periodically.
+	 * 
+	 * @param interval	the time between two reports in milliseconds, e. g. 60000
+	 */
+	public LogMetrics(long interval) {
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "GoobiOaiHelper-metrics");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				log();
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+
+	/**
+	 * Writes a report now. Nothing is written if there are no measurements yet.
+	 */
+	public void log() {
+		String report = report();
+		if (!report.isEmpty() && LOGGER.isLoggable(Level.INFO)) {
+			LOGGER.info("GoobiOaiHelper metrics:" + System.lineSeparator() + report);
+		}
+	}
+
+
+	/**
+	 * Stops the periodic reports and writes a last report.
+	 */
+	@Override
+	public void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		log();
+	}
+
+}
@@ -0,0 +1,207 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.metrics;
+
+/**
+ * This class defines the names of the measurements that are passed to Metrics. Counters are passed to Metrics.count(), timers to Metrics.time() and
+ * histograms of other values to Metrics.value().
+ * 
+ * @author Michael Birkner
+ */
+public final class MetricNames {
+
+	/**
+	 * Counter of the HTTP requests that were sent by HttpClient, including retries.
+	 */
+	public static final String HTTP_REQUESTS = "http.requests";
+
+	/**
+	 * Counter of the HTTP requests that were repeated after a connection error or a temporary error status.
+	 */
+	public static final String HTTP_RETRIES = "http.retries";
+
+	/**
+	 * Counter of the HTTP requests that failed, also after all retries.
+	 */
+	public static final String HTTP_ERRORS = "http.errors";
+
+	/**
+	 * Timer of the wait for a free slot of the host (see HttpClient.setMaxConnectionsPerHost()).
+	 */
+	public static final String HTTP_WAIT = "http.wait";
+
+	/**
+	 * Timer of establishing the connection. It is close to 0 if a kept alive connection is reused.
+	 */
+	public static final String HTTP_CONNECT = "http.connect";
+
+	/**
+	 * Timer from sending the request until the status and the headers of the response were received (time to first byte).
+	 */
+	public static final String HTTP_RESPONSE = "http.response";
+
+	/**
+	 * Timer from receiving the headers until the body of the response was closed. If the body is parsed while it is read (e. g. by OaiHarvester),
+	 * this includes the parsing.
+	 */
+	public static final String HTTP_DOWNLOAD = "http.download";
+
+	/**
+	 * Histogram of the number of decoded bytes of the response bodies.
+	 */
+	public static final String HTTP_DOWNLOAD_BYTES = "http.download.bytes";
+
+	/**
+	 * Counter of the records that were got by Network.
+	 */
+	public static final String NETWORK_RECORDS = "network.records";
+
+	/**
+	 * Counter of the records that could not be got or parsed by Network.
+	 */
+	public static final String NETWORK_ERRORS = "network.errors";
+
+	/**
+	 * Counter of the records that were read from the MetsRecordCache without a request.
+	 */
+	public static final String NETWORK_CACHE_HITS = "network.cache.hits";
+
+	/**
+	 * Counter of the records that were read from the MetsRecordCache after the server answered with 304 (not modified).
+	 */
+	public static final String NETWORK_CACHE_NOT_MODIFIED = "network.cache.notModified";
+
+	/**
+	 * Counter of the records that were downloaded although a MetsRecordCache is set.
+	 */
+	public static final String NETWORK_CACHE_MISSES = "network.cache.misses";
+
+	/**
+	 * Timer of parsing a record to a DOM Document.
+	 */
+	public static final String PARSE_DOCUMENT = "parse.document";
+
+	/**
+	 * Timer of parsing a record to a MetsIndex with the streaming parser.
+	 */
+	public static final String PARSE_INDEX = "parse.index";
+
+	/**
+	 * Timer of building a MetsIndex from a DOM Document (see GoobiOaiHelper.getMetsIndex(Document)).
+	 */
+	public static final String INDEX_DOCUMENT = "index.document";
+
+	/**
+	 * Timer of evaluating an XPath expression (see XmlParser).
+	 */
+	public static final String XPATH_EVALUATE = "xpath.evaluate";
+
+	/**
+	 * Prefix of the timers of the extraction methods of GoobiOaiHelper. The name of the method is appended, e. g. "extract.getIds".
+	 */
+	public static final String EXTRACT_PREFIX = "extract.";
+
+	/**
+	 * Counter of the ListRecords or ListIdentifiers responses that were read by OaiHarvester.
+	 */
+	public static final String HARVEST_RESPONSES = "harvest.responses";
+
+	/**
+	 * Counter of the records that were passed to the OaiRecordHandler by OaiHarvester.
+	 */
+	public static final String HARVEST_RECORDS = "harvest.records";
+
+	/**
+	 * Counter of the records for which the OaiRecordHandler threw an exception.
+	 */
+	public static final String HARVEST_ERRORS = "harvest.errors";
+
+	/**
+	 * Timer of requesting one ListRecords or ListIdentifiers response. OaiHarvester measures the download only (see HARVEST_PARSE), HarvestScheduler
+	 * the download and the parsing.
+	 */
+	public static final String HARVEST_RESPONSE = "harvest.response";
+
+	/**
+	 * Timer of parsing one downloaded ListRecords or ListIdentifiers response by OaiHarvester, including the indexing of the METS-XML of its records.
+	 */
+	public static final String HARVEST_PARSE = "harvest.parse";
+
+	/**
+	 * Timer of the OaiRecordHandler for one record.
+	 */
+	public static final String HARVEST_HANDLER = "harvest.handler";
+
+	/**
+	 * Counter of the records that were read by an Exporter.
+	 */
+	public static final String EXPORT_RECORDS = "export.records";
+
+	/**
+	 * Counter of the structure elements that were written by an Exporter.
+	 */
+	public static final String EXPORT_ELEMENTS = "export.elements";
+
+	/**
+	 * Timer of the wait of a reading thread of an Exporter for space in the queue of the writer. High values mean that the output is the bottleneck.
+	 */
+	public static final String EXPORT_WAIT = "export.wait";
+
+	/**
+	 * Counter of the requests to a VolumeCache that were answered from the cache.
+	 */
+	public static final String VOLUME_CACHE_HITS = "volumeCache.hits";
+
+	/**
+	 * Counter of the requests to a VolumeCache that loaded the record.
+	 */
+	public static final String VOLUME_CACHE_MISSES = "volumeCache.misses";
+
+	/**
+	 * Counter of the requests to a VolumeCache that waited for the load of the same record by another thread.
+	 */
+	public static final String VOLUME_CACHE_COALESCED = "volumeCache.coalesced";
+
+	/**
+	 * Counter of the records that were removed from a VolumeCache because its maximum weight was exceeded.
+	 */
+	public static final String VOLUME_CACHE_EVICTIONS = "volumeCache.evictions";
+
+	/**
+	 * Counter of the records that were removed from a VolumeCache because their time to live was over.
+	 */
+	public static final String VOLUME_CACHE_EXPIRATIONS = "volumeCache.expirations";
+
+	/**
+	 * Timer of the loads of records by a VolumeCache, including download and parsing.
+	 */
+	public static final String VOLUME_CACHE_LOAD = "volumeCache.load";
+
+	/**
+	 * Counter of the requests of a HarvestScheduler that were repeated after a temporary error.
+	 */
+	public static final String SCHEDULER_RETRIES = "scheduler.retries";
+
+	/**
+	 * Counter of the requests of a HarvestScheduler that were answered with status 503 or 429 or timed out, so the concurrency was decreased.
+	 */
+	public static final String SCHEDULER_OVERLOADS = "scheduler.overloads";
+
+	private MetricNames() {
+	}
+
+}
@@ -0,0 +1,68 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.metrics;
+
+/**
+ * This interface receives the measurements of Network, HttpClient, OaiHarvester and GoobiOaiHelper, e. g. the time of a download or the number of
+ * retries. The names of the measurements are defined in MetricNames. Implementations are called on the hot path from many threads at once, so they
+ * must be thread safe and should not block. Use MetricsRegistry to collect the measurements in memory, JmxMetrics to publish them over JMX or
+ * LogMetrics to write them to a log periodically.
+ * 
+ * @author Michael Birkner
+ */
+public interface Metrics {
+
+	/**
+	 * Discards all measurements. This is the default of all classes that can be instrumented.
+	 */
+	Metrics NONE = new Metrics() {
+		@Override
+		public void count(String name, long delta) {
+		}
+		@Override
+		public void time(String name, long nanos) {
+		}
+		@Override
+		public void value(String name, long value) {
+		}
+	};
+
+	/**
+	 * Adds a number to a counter, e. g. the number of records or errors.
+	 * 
+	 * @param name	a String with the name of the counter (see MetricNames)
+	 * @param delta	the number to add
+	 */
+	void count(String name, long delta);
+
+	/**
+	 * Records the duration of one execution of a stage, e. g. parsing a record.
+	 * 
+	 * @param name	a String with the name of the timer (see MetricNames)
+	 * @param nanos	the duration in nanoseconds (see System.nanoTime())
+	 */
+	void time(String name, long nanos);
+
+	/**
+	 * Records a value whose distribution is of interest, e. g. the size of a download.
+	 * 
+	 * @param name	a String with the name of the histogram (see MetricNames)
+	 * @param value	the value
+	 */
+	void value(String name, long value);
+
+}
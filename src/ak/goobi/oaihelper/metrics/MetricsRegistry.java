@@ -0,0 +1,158 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.metrics;
+
+import java.util.Locale;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects the measurements of Metrics in memory: counters as LongAdder, timers and other values as Histogram. A counter, timer or histogram
+ * is created with the first measurement of its name, after that a measurement costs only a map lookup and a few atomic additions, so the registry can be
+ * left on in production. The values are cumulative since the registry was created. JmxMetrics and LogMetrics publish them.
+ * 
+ * @author Michael Birkner
+ */
+public class MetricsRegistry implements Metrics {
+
+	private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentMap<String, Histogram> timers = new ConcurrentHashMap<String, Histogram>();
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+
+	@Override
+	public void count(String name, long delta) {
+		LongAdder counter = counters.get(name);
+		if (counter == null) {
+			counter = new LongAdder();
+			LongAdder existingCounter = counters.putIfAbsent(name, counter);
+			if (existingCounter != null) {
+				counter = existingCounter;
+			}
+		}
+		counter.add(delta);
+	}
+
+
+	@Override
+	public void time(String name, long nanos) {
+		getOrCreate(timers, name).record(nanos);
+	}
+
+
+	@Override
+	public void value(String name, long value) {
+		getOrCreate(histograms, name).record(value);
+	}
+
+
+	/**
+	 * Gets the value of a counter.
+	 * 
+	 * @param name	a String with the name of the counter
+	 * @return		the value or 0 if nothing was counted yet
+	 */
+	public long getCount(String name) {
+		LongAdder counter = counters.get(name);
+		return (counter != null) ? counter.sum() : 0;
+	}
+
+
+	/**
+	 * Gets a timer. Its values are durations in nanoseconds.
+	 * 
+	 * @param name	a String with the name of the timer
+	 * @return		a Histogram or null if nothing was timed yet
+	 */
+	public Histogram getTimer(String name) {
+		return timers.get(name);
+	}
+
+
+	/**
+	 * Gets a histogram of values that are not durations.
+	 * 
+	 * @param name	a String with the name of the histogram
+	 * @return		a Histogram or null if no value was recorded yet
+	 */
+	public Histogram getHistogram(String name) {
+		return histograms.get(name);
+	}
+
+
+	public SortedSet<String> getCounterNames() {
+		return new TreeSet<String>(counters.keySet());
+	}
+
+
+	public SortedSet<String> getTimerNames() {
+		return new TreeSet<String>(timers.keySet());
+	}
+
+
+	public SortedSet<String> getHistogramNames() {
+		return new TreeSet<String>(histograms.keySet());
+	}
+
+
+	/**
+	 * Creates a report of all counters, timers and histograms with one line each. Timers are reported in milliseconds.
+	 * 
+	 * @return	a String with the report
+	 */
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		for (String name : getCounterNames()) {
+			report.append(String.format(Locale.US, "%-32s %d%n", name, getCount(name)));
+		}
+		for (String name : getTimerNames()) {
+			Histogram timer = timers.get(name);
+			report.append(String.format(Locale.US, "%-32s count=%d mean=%.3fms p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms%n", name, timer.getCount(),
+					timer.getMean() / 1000000, toMillis(timer.getPercentile(50)), toMillis(timer.getPercentile(95)), toMillis(timer.getPercentile(99)),
+					toMillis(timer.getMax())));
+		}
+		for (String name : getHistogramNames()) {
+			Histogram histogram = histograms.get(name);
+			report.append(String.format(Locale.US, "%-32s count=%d sum=%d mean=%.1f p50=%d p95=%d p99=%d max=%d%n", name, histogram.getCount(),
+					histogram.getSum(), histogram.getMean(), histogram.getPercentile(50), histogram.getPercentile(95), histogram.getPercentile(99),
+					histogram.getMax()));
+		}
+		return report.toString();
+	}
+
+
+	static double toMillis(long nanos) {
+		return nanos / 1000000.0;
+	}
+
+
+	private static Histogram getOrCreate(ConcurrentMap<String, Histogram> map, String name) {
+		Histogram histogram = map.get(name);
+		if (histogram == null) {
+			histogram = new Histogram();
+			Histogram existingHistogram = map.putIfAbsent(name, histogram);
+			if (existingHistogram != null) {
+				histogram = existingHistogram;
+			}
+		}
+		return histogram;
+	}
+
+}
@@ -0,0 +1,288 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class limits the requests to one OAI-PMH interface for HarvestScheduler. It combines two limits:
+ * 
+ * A token bucket limits the rate of the requests. The bucket holds up to "burst" tokens and is refilled with "rate" tokens per second; each request
+ * takes one token. So a server gets at most "burst" requests at once after a pause and "rate" requests per second on average.
+ * 
+ * An adaptive limit bounds the number of concurrent requests (AIMD: additive increase, multiplicative decrease). Every request that is answered in
+ * time raises the limit by 1 / limit, so it grows by about one per round of requests, up to the maximum concurrency. If the server is overloaded
+ * (status 503 or 429, or a timeout), the limit is halved and no request is started for the cooldown time. If the latency of the responses rises above
+ * the latency tolerance times the lowest latency seen so far, the limit is decreased by 10 percent, at most once per round.
+ * 
+ * All methods are thread-safe.
+ * 
+ * @author Michael Birkner
+ */
+public class AdaptiveLimiter {
+
+	private static final double LATENCY_DECREASE = 0.9;
+	private static final double OVERLOAD_DECREASE = 0.5;
+	// Weight of a new sample in the smoothed latency
+	private static final double SMOOTHING = 0.2;
+	// Share of the difference to the smoothed latency that the baseline moves after a decrease, so a server that got slower for good is followed
+	private static final double BASELINE_DRIFT = 0.1;
+
+	private double rate;
+	private int burst;
+	private int maxConcurrency;
+	private double latencyTolerance = 2.0;
+	private long cooldown = TimeUnit.SECONDS.toNanos(1);
+
+	private double tokens;
+	private long refilled = System.nanoTime();
+	private double limit = 1;
+	private int inFlight = 0;
+	// System.nanoTime() may be negative, so the times are initialized relative to it
+	private long blockedUntil = refilled;
+	private long lastDecrease = refilled - Long.MAX_VALUE / 2;
+	private double smoothedLatency = 0;
+	private double baselineLatency = 0;
+	private long overloads = 0;
+
+
+	/**
+	 * @param rate				the average number of requests per second or 0 for no rate limit
+	 * @param burst				the number of requests that may be started at once after a pause, at least 1
+	 * @param maxConcurrency	the maximum number of concurrent requests, at least 1
+	 */
+	public AdaptiveLimiter(double rate, int burst, int maxConcurrency) {
+		setRate(rate, burst);
+		setMaxConcurrency(maxConcurrency);
+		this.tokens = this.burst;
+	}
+
+
+	/**
+	 * Starts a request if the limits allow it.
+	 * 
+	 * @return	0 if the request may start (release() must be called when it is finished), the time in nanoseconds until the next token is available
+	 * 			or -1 if the concurrency limit is reached and a request must be finished first
+	 */
+	public synchronized long tryAcquire() {
+		long now = System.nanoTime();
+		if (inFlight >= getLimit()) {
+			return -1;
+		}
+		if (blockedUntil - now > 0) {
+			return blockedUntil - now;
+		}
+		if (rate > 0) {
+			tokens = Math.min(burst, tokens + (now - refilled) * rate / TimeUnit.SECONDS.toNanos(1));
+			refilled = now;
+			if (tokens < 1) {
+				return Math.max(1, (long) Math.ceil((1 - tokens) * TimeUnit.SECONDS.toNanos(1) / rate));
+			}
+			tokens -= 1;
+		}
+		inFlight++;
+		return 0;
+	}
+
+
+	/**
+	 * Finishes a request that was started with tryAcquire() and adapts the concurrency limit.
+	 * 
+	 * @param latency		the time of the request in nanoseconds
+	 * @param overloaded	true if the server was overloaded (status 503 or 429, or a timeout)
+	 */
+	public void release(long latency, boolean overloaded) {
+		release(latency, overloaded, 0);
+	}
+
+
+	/**
+	 * Finishes a request that was started with tryAcquire() and adapts the concurrency limit (see release(long, boolean)). If the server asked to wait
+	 * (see HttpStatusException.getRetryAfter()), no request is started before that time, even if it is longer than the cooldown.
+	 * 
+	 * @param latency		the time of the request in nanoseconds
+	 * @param overloaded	true if the server was overloaded (status 503 or 429, or a timeout)
+	 * @param retryAfter	the wait time the server asked for in milliseconds or 0 if it did not ask
+	 */
+	public synchronized void release(long latency, boolean overloaded, long retryAfter) {
+		inFlight--;
+		long now = System.nanoTime();
+		if (retryAfter > 0 && now + TimeUnit.MILLISECONDS.toNanos(retryAfter) - blockedUntil > 0) {
+			blockedUntil = now + TimeUnit.MILLISECONDS.toNanos(retryAfter);
+		}
+		if (overloaded) {
+			overloads++;
+			if (now + cooldown - blockedUntil > 0) {
+				blockedUntil = now + cooldown;
+			}
+			// Several concurrent requests may fail at once, so one overload decreases the limit only once
+			if (now - lastDecrease > cooldown) {
+				limit = Math.max(1, limit * OVERLOAD_DECREASE);
+				lastDecrease = now;
+			}
+			return;
+		}
+
+		if (baselineLatency == 0) {
+			baselineLatency = latency;
+			smoothedLatency = latency;
+		} else {
+			baselineLatency = Math.min(baselineLatency, latency);
+			smoothedLatency += SMOOTHING * (latency - smoothedLatency);
+		}
+		if (smoothedLatency > latencyTolerance * baselineLatency) {
+			// Decrease once per round, the responses of one round all see the same latency
+			if (now - lastDecrease > smoothedLatency) {
+				limit = Math.max(1, limit * LATENCY_DECREASE);
+				lastDecrease = now;
+				baselineLatency += BASELINE_DRIFT * (smoothedLatency - baselineLatency);
+			}
+		} else if (inFlight + 1 >= getLimit()) {
+			// Increase only if the limit was used, otherwise an idle limiter would grow without a test
+			limit = Math.min(maxConcurrency, limit + 1 / limit);
+		}
+	}
+
+
+	/**
+	 * Finishes a request that was started with tryAcquire(), but not sent, e. g. because there was nothing to request. The token is given back and the
+	 * concurrency limit is not changed.
+	 */
+	public synchronized void cancel() {
+		inFlight--;
+		tokens = Math.min(burst, tokens + 1);
+	}
+
+
+	/**
+	 * Gets the current concurrency limit.
+	 * 
+	 * @return	the number of requests that may run at the same time
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+
+	/**
+	 * Gets the number of requests that were started and not released yet.
+	 * 
+	 * @return	the number of running requests
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+
+	/**
+	 * Gets the smoothed latency of the recent requests.
+	 * 
+	 * @return	the latency in nanoseconds or 0 if no request was released yet
+	 */
+	public synchronized long getLatency() {
+		return (long) smoothedLatency;
+	}
+
+
+	/**
+	 * Gets the number of requests that were released as overloaded.
+	 * 
+	 * @return	the number of overloads
+	 */
+	public synchronized long getOverloads() {
+		return overloads;
+	}
+
+
+	public synchronized double getRate() {
+		return rate;
+	}
+
+
+	public synchronized int getBurst() {
+		return burst;
+	}
+
+
+	/**
+	 * Sets the rate limit.
+	 * 
+	 * @param rate	the average number of requests per second or 0 for no rate limit
+	 * @param burst	the number of requests that may be started at once after a pause, at least 1
+	 */
+	public synchronized void setRate(double rate, int burst) {
+		if (rate < 0 || burst < 1) {
+			throw new IllegalArgumentException("Invalid rate limit: rate=" + rate + ", burst=" + burst);
+		}
+		this.rate = rate;
+		this.burst = burst;
+		tokens = Math.min(tokens, burst);
+	}
+
+
+	public synchronized int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+
+	/**
+	 * Sets the maximum number of concurrent requests. The concurrency limit starts at 1 and grows up to this number while the server answers in time.
+	 * 
+	 * @param maxConcurrency	the maximum number of concurrent requests, at least 1
+	 */
+	public synchronized void setMaxConcurrency(int maxConcurrency) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be at least 1: " + maxConcurrency);
+		}
+		this.maxConcurrency = maxConcurrency;
+		limit = Math.min(limit, maxConcurrency);
+	}
+
+
+	public synchronized double getLatencyTolerance() {
+		return latencyTolerance;
+	}
+
+
+	/**
+	 * Sets how much the latency may rise above the lowest latency before the concurrency limit is decreased. Default is 2.0.
+	 * 
+	 * @param latencyTolerance	the factor, greater than 1
+	 */
+	public synchronized void setLatencyTolerance(double latencyTolerance) {
+		if (latencyTolerance <= 1) {
+			throw new IllegalArgumentException("latencyTolerance must be greater than 1: " + latencyTolerance);
+		}
+		this.latencyTolerance = latencyTolerance;
+	}
+
+
+	public synchronized long getCooldown() {
+		return TimeUnit.NANOSECONDS.toMillis(cooldown);
+	}
+
+
+	/**
+	 * Sets the time after an overload in which no request is started. Default is 1 second.
+	 * 
+	 * @param cooldown	the time in milliseconds
+	 */
+	public synchronized void setCooldown(long cooldown) {
+		this.cooldown = TimeUnit.MILLISECONDS.toNanos(cooldown);
+	}
+
+}
@@ -0,0 +1,376 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.w3c.dom.Document;
+
+import ak.goobi.oaihelper.cache.VolumeCache;
+import ak.goobi.oaihelper.classes.MetsIndex;
+
+/**
+ * This class provides the methods of Network without blocking the caller. Each method returns a CompletableFuture at once. The record is downloaded
+ * by a download thread and then parsed by a separate pool of parse threads, so the number of parallel downloads (which mostly wait for the network)
+ * and the number of parallel parses (which need the CPU) can be chosen independently.
+ * 
+ * If the Network has a VolumeCache or a document cache (see Network.setVolumeCache()), a cached record is returned at once and the loads of the same
+ * record by this class and by the Network are coalesced; a load from the cache occupies its download thread until the record is parsed.
+ * 
+ * The requests themselves still use the blocking HttpClient of the Network, including its cache, retries and connection limits per host. On Java 21 or
+ * later, every download runs in its own virtual thread, so a waiting download does not occupy a platform thread. On older Java versions, the downloads
+ * run in a pool of platform threads with one thread per allowed parallel download, so every download in flight still holds a platform thread (at most
+ * maxInFlight threads).
+ * 
+ * The number of downloads in flight is limited (see AsyncNetwork(Network, int, ExecutorService)). Further downloads wait until a download has
+ * finished, either in the queue of the download pool or as a parked virtual thread, which does not occupy a platform thread either.
+ * Call close() to stop the threads of this class when it is not needed anymore.
+ * 
+ * @author Michael Birkner
+ */
+public class AsyncNetwork implements AutoCloseable {
+
+	private static final AtomicInteger poolNumber = new AtomicInteger();
+
+	private Network network;
+	private int maxInFlight;
+	private Semaphore inFlight;
+	private ExecutorService downloadExecutor;
+	private ExecutorService parseExecutor;
+	private boolean ownParseExecutor;
+	private boolean virtualThreads;
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile boolean closed;
+
+
+	/**
+	 * Creates an AsyncNetwork with at most 64 downloads in flight and one parse thread per available processor.
+	 * 
+	 * @param network	the Network for the requests
+	 */
+	public AsyncNetwork(Network network) {
+		this(network, 64, null);
+	}
+
+	/**
+	 * @param network			the Network for the requests
+	 * @param maxInFlight		the maximum number of downloads in flight. The connection limit per host of the HttpClient of the Network still applies.
+	 * @param parseExecutor		an ExecutorService for parsing the records or null for a pool with one thread per available processor. An ExecutorService
+	 * 							that is passed here is not shut down by close().
+	 */
+	public AsyncNetwork(Network network, int maxInFlight, ExecutorService parseExecutor) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+		}
+		this.network = network;
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight, true);
+
+		int poolNo = poolNumber.incrementAndGet();
+		this.downloadExecutor = createVirtualThreadExecutor();
+		this.virtualThreads = (downloadExecutor != null);
+		if (downloadExecutor == null) {
+			ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), daemonThreadFactory("AsyncNetwork-" + poolNo + "-download-"));
+			threadPoolExecutor.allowCoreThreadTimeOut(true);
+			this.downloadExecutor = threadPoolExecutor;
+		}
+
+		this.ownParseExecutor = (parseExecutor == null);
+		this.parseExecutor = (parseExecutor != null) ? parseExecutor : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), daemonThreadFactory("AsyncNetwork-" + poolNo + "-parse-"));
+	}
+
+
+	/**
+	 * Gets a METS-XML Document from an OAI-PMH interface (see Network.getMetsXmlRecord(String, String, String)). The document cache of the Network is
+	 * used if it is set.
+	 * 
+	 * @param oaiPmh		a String of the URL to the OAI-PMH interface with an ending slash (e. g. http://example.com/viewer/oai/)
+	 * @param id			a String of the identifier of an individual record which is available over the OAI-PMH interface
+	 * @param datestamp		a String with the current datestamp of the record or null if it is unknown
+	 * @return				a CompletableFuture of the Document. It completes exceptionally with a CompletionException if the download or the parsing fails.
+	 */
+	public CompletableFuture<Document> getMetsXmlRecord(String oaiPmh, String id, String datestamp) {
+		return get(oaiPmh, id, datestamp, network.getActiveDocumentCache(), xml -> network.parseDocument(new ByteArrayInputStream(xml)));
+	}
+
+	public CompletableFuture<Document> getMetsXmlRecord(String oaiPmh, String id) {
+		return getMetsXmlRecord(oaiPmh, id, null);
+	}
+
+
+	/**
+	 * Gets the index of a METS-XML record from an OAI-PMH interface (see Network.getMetsIndex(String, String, String)). The VolumeCache of the Network
+	 * is used if it is set.
+	 * 
+	 * @param oaiPmh		a String of the URL to the OAI-PMH interface with an ending slash (e. g. http://example.com/viewer/oai/)
+	 * @param id			a String of the identifier of an individual record which is available over the OAI-PMH interface
+	 * @param datestamp		a String with the current datestamp of the record or null if it is unknown
+	 * @return				a CompletableFuture of the MetsIndex. It completes exceptionally with a CompletionException if the download or the parsing fails.
+	 */
+	public CompletableFuture<MetsIndex> getMetsIndex(String oaiPmh, String id, String datestamp) {
+		return get(oaiPmh, id, datestamp, network.getActiveVolumeCache(), xml -> network.parseMetsIndex(new ByteArrayInputStream(xml)));
+	}
+
+	public CompletableFuture<MetsIndex> getMetsIndex(String oaiPmh, String id) {
+		return getMetsIndex(oaiPmh, id, null);
+	}
+
+
+	/**
+	 * Gets the METS-XML Documents of many records. The records are downloaded and parsed in parallel within the limits of this AsyncNetwork.
+	 * 
+	 * @param oaiPmh		a String of the URL to the OAI-PMH interface with an ending slash (e. g. http://example.com/viewer/oai/)
+	 * @param ids			a List<String> with the identifiers of the records
+	 * @return				a CompletableFuture of a List<Document> in the order of the identifiers. It completes exceptionally if one of the records fails.
+	 */
+	public CompletableFuture<List<Document>> getMetsXmlRecords(String oaiPmh, List<String> ids) {
+		List<CompletableFuture<Document>> futures = new ArrayList<CompletableFuture<Document>>(ids.size());
+		for (String id : ids) {
+			futures.add(getMetsXmlRecord(oaiPmh, id, null));
+		}
+		return allOf(futures);
+	}
+
+
+	/**
+	 * Gets the indexes of the METS-XML of many records. The records are downloaded and parsed in parallel within the limits of this AsyncNetwork.
+	 * 
+	 * @param oaiPmh		a String of the URL to the OAI-PMH interface with an ending slash (e. g. http://example.com/viewer/oai/)
+	 * @param ids			a List<String> with the identifiers of the records
+	 * @return				a CompletableFuture of a List<MetsIndex> in the order of the identifiers. It completes exceptionally if one of the records fails.
+	 */
+	public CompletableFuture<List<MetsIndex>> getMetsIndexes(String oaiPmh, List<String> ids) {
+		List<CompletableFuture<MetsIndex>> futures = new ArrayList<CompletableFuture<MetsIndex>>(ids.size());
+		for (String id : ids) {
+			futures.add(getMetsIndex(oaiPmh, id, null));
+		}
+		return allOf(futures);
+	}
+
+
+	/**
+	 * Stops the download threads and, if it was created by this class, the parse pool. Records that were already requested are still completed; the
+	 * parse pool is shut down when the last of them is parsed. Records that are requested after close() fail with a RejectedExecutionException.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		downloadExecutor.shutdown();
+		if (pending.get() == 0) {
+			shutdownParseExecutor();
+		}
+	}
+
+
+	private void shutdownParseExecutor() {
+		if (ownParseExecutor) {
+			parseExecutor.shutdown();
+		}
+	}
+
+
+	/**
+	 * Counts a requested record until its future is completed, so close() does not shut down the parse pool while the record still needs it.
+	 */
+	private <T> CompletableFuture<T> track(Supplier<CompletableFuture<T>> request) {
+		pending.incrementAndGet();
+		CompletableFuture<T> future;
+		try {
+			future = request.get();
+		} catch (RuntimeException e) {
+			requestCompleted();
+			throw e;
+		}
+		future.whenComplete((value, e) -> requestCompleted());
+		return future;
+	}
+
+
+	private void requestCompleted() {
+		if (pending.decrementAndGet() == 0 && closed) {
+			shutdownParseExecutor();
+		}
+	}
+
+
+	/**
+	 * Gets a record from the cache or downloads it in a download thread and parses it in a parse thread. Without a cache, the download thread is free
+	 * again as soon as the XML is read. With a cache, the load runs in VolumeCache.get(), so the download thread waits for the parsing and other
+	 * requests for the same record wait for this load.
+	 */
+	private <T> CompletableFuture<T> get(final String oaiPmh, final String id, final String datestamp, final VolumeCache<T> cache, final RecordParser<T> parser) {
+		if (cache == null) {
+			return track(() -> parse(download(oaiPmh, id, datestamp), parser));
+		}
+		T value = cache.getIfPresent(oaiPmh, id);
+		if (value != null) {
+			return CompletableFuture.completedFuture(value);
+		}
+		return track(() -> CompletableFuture.supplyAsync(() -> {
+			try {
+				return cache.get(oaiPmh, id, () -> {
+					byte[] xml = downloadXml(oaiPmh, id, datestamp);
+					try {
+						return parse(CompletableFuture.completedFuture(xml), parser).get();
+					} catch (ExecutionException e) {
+						throw (e.getCause() instanceof Exception) ? (Exception)e.getCause() : e;
+					}
+				});
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(e);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, downloadExecutor));
+	}
+
+
+	/**
+	 * Parses the XML of a record in a parse thread.
+	 */
+	private <T> CompletableFuture<T> parse(CompletableFuture<byte[]> download, final RecordParser<T> parser) {
+		return download.thenApplyAsync(xml -> {
+			try {
+				return parser.parse(xml);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, parseExecutor);
+	}
+
+
+	/**
+	 * Downloads the XML of a record in a download thread.
+	 */
+	private CompletableFuture<byte[]> download(final String oaiPmh, final String id, final String datestamp) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return downloadXml(oaiPmh, id, datestamp);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(e);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, downloadExecutor);
+	}
+
+
+	/**
+	 * Downloads the XML of a record in the current thread. A download slot is taken before the request and given back when the XML was read completely.
+	 */
+	private byte[] downloadXml(String oaiPmh, String id, String datestamp) throws Exception {
+		inFlight.acquire();
+		try {
+			return network.getRecordXml(oaiPmh, id, datestamp);
+		} finally {
+			inFlight.release();
+		}
+	}
+
+
+	/**
+	 * Combines futures to one future of a List with their results in the same order.
+	 */
+	private static <T> CompletableFuture<List<T>> allOf(final List<CompletableFuture<T>> futures) {
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenApply(ignored -> {
+			List<T> results = new ArrayList<T>(futures.size());
+			for (CompletableFuture<T> future : futures) {
+				results.add(future.join());
+			}
+			return results;
+		});
+	}
+
+
+	/**
+	 * Creates an ExecutorService that starts a new virtual thread for each task (Executors.newVirtualThreadPerTaskExecutor() of Java 21). It is called by
+	 * reflection, so this class also runs on older Java versions.
+	 * 
+	 * @return	an ExecutorService or null if virtual threads are not available
+	 */
+	private static ExecutorService createVirtualThreadExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)method.invoke(null);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	private static ThreadFactory daemonThreadFactory(final String namePrefix) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+
+	public Network getNetwork() {
+		return network;
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Gets the number of downloads that are in flight at the moment.
+	 * 
+	 * @return	the number of downloads in flight
+	 */
+	public int getInFlight() {
+		return maxInFlight - inFlight.availablePermits();
+	}
+
+	/**
+	 * Checks if the downloads run in virtual threads.
+	 * 
+	 * @return	true if the Java runtime supports virtual threads (Java 21 or later)
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+
+	/**
+	 * Parses the downloaded XML of a record, e. g. to a Document or to a MetsIndex.
+	 */
+	private interface RecordParser<T> {
+		T parse(byte[] xml) throws Exception;
+	}
+
+}
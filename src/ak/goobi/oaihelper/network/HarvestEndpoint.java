@@ -0,0 +1,283 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import ak.goobi.oaihelper.classes.OaiHeader;
+
+/**
+ * This class holds one OAI-PMH interface of a HarvestScheduler: its limits, the clients for the requests and the progress of the harvest. The
+ * identifiers of the records are listed with the verb "ListIdentifiers" and the arguments of getOaiHarvester() (metadata prefix, set, from, until),
+ * unless a list of identifiers is set. Each record is requested with Network.getMetsIndex() of getNetwork(), so a MetsRecordCache or VolumeCache of
+ * that Network is used.
+ * 
+ * The HttpClient of the endpoint does not retry requests itself, because the HarvestScheduler has to see the errors to adapt the concurrency; the
+ * scheduler retries them instead.
+ * 
+ * @author Michael Birkner
+ */
+public class HarvestEndpoint {
+
+	private String oaiPmh;
+	private HttpClient httpClient;
+	private OaiHarvester oaiHarvester;
+	private Network network;
+	private AdaptiveLimiter limiter = new AdaptiveLimiter(2, 2, 4);
+	private List<String> identifiers;
+
+	// State of the harvest, changed by the HarvestScheduler while it holds its lock
+	ArrayDeque<Item> pending = new ArrayDeque<Item>();
+	// The backoffs differ per attempt and with the "Retry-After" of the server, so the retries are ordered by their time and not by their failure
+	PriorityQueue<Item> delayed = new PriorityQueue<Item>(11, new Comparator<Item>() {
+		@Override
+		public int compare(Item item1, Item item2) {
+			// Compare the difference, because System.nanoTime() may overflow
+			return Long.signum(item1.notBefore - item2.notBefore);
+		}
+	});
+	String resumptionToken;
+	boolean listComplete;
+	boolean listRunning;
+	int listAttempts;
+	long listNotBefore;
+	int running;
+
+	// Progress, read by other threads
+	volatile long records;
+	volatile long failures;
+	volatile long retries;
+	volatile int listSize = -1;
+	volatile long started;
+	volatile long finished;
+	volatile Exception exception;
+
+
+	/**
+	 * @param oaiPmh	a String of the URL to the OAI-PMH interface with an ending slash (e. g. http://example.com/viewer/oai/)
+	 */
+	public HarvestEndpoint(String oaiPmh) {
+		this.oaiPmh = oaiPmh;
+		this.httpClient = new HttpClient();
+		this.httpClient.setMaxRetries(0);
+		this.oaiHarvester = new OaiHarvester(oaiPmh, httpClient);
+		this.network = new Network(httpClient);
+	}
+
+
+	/**
+	 * Resets the state for a new harvest.
+	 */
+	void start(long now) {
+		pending.clear();
+		delayed.clear();
+		resumptionToken = oaiHarvester.getResumptionToken();
+		listComplete = false;
+		listRunning = false;
+		listAttempts = 0;
+		listNotBefore = now;
+		running = 0;
+		records = 0;
+		failures = 0;
+		retries = 0;
+		listSize = -1;
+		started = now;
+		finished = 0;
+		exception = null;
+		if (identifiers != null) {
+			for (String identifier : identifiers) {
+				pending.add(new Item(new OaiHeader(identifier, null, Collections.<String>emptyList(), false)));
+			}
+			listComplete = true;
+			listSize = identifiers.size();
+		}
+		// The limiter bounds the requests, the HttpClient must not bound them further
+		if (httpClient.getMaxConnectionsPerHost() < limiter.getMaxConcurrency()) {
+			httpClient.setMaxConnectionsPerHost(limiter.getMaxConcurrency());
+		}
+	}
+
+
+	/**
+	 * Returns true if all records were processed and no task of this endpoint is running.
+	 */
+	boolean isDone() {
+		return listComplete && pending.isEmpty() && delayed.isEmpty() && running == 0;
+	}
+
+
+	public String getOaiPmh() {
+		return oaiPmh;
+	}
+
+
+	/**
+	 * Gets the HttpClient of the requests to this endpoint, e. g. to set the timeouts or the user agent.
+	 * 
+	 * @return	an HttpClient
+	 */
+	public HttpClient getHttpClient() {
+		return httpClient;
+	}
+
+
+	/**
+	 * Gets the OaiHarvester whose arguments are used for the "ListIdentifiers" requests (metadata prefix, set, from, until and resumption token). Its
+	 * threads, queue size and page listener are not used.
+	 * 
+	 * @return	an OaiHarvester
+	 */
+	public OaiHarvester getOaiHarvester() {
+		return oaiHarvester;
+	}
+
+
+	/**
+	 * Gets the Network that requests the records, e. g. to set a MetsRecordCache.
+	 * 
+	 * @return	a Network
+	 */
+	public Network getNetwork() {
+		return network;
+	}
+
+
+	/**
+	 * Gets the limiter of the requests to this endpoint, e. g. to set the rate limit or the maximum concurrency. Default is 2 requests per second with a
+	 * burst of 2 and at most 4 concurrent requests.
+	 * 
+	 * @return	an AdaptiveLimiter
+	 */
+	public AdaptiveLimiter getLimiter() {
+		return limiter;
+	}
+
+
+	public List<String> getIdentifiers() {
+		return identifiers;
+	}
+
+
+	/**
+	 * Sets the identifiers of the records to harvest instead of listing them with "ListIdentifiers".
+	 * 
+	 * @param identifiers	a List<String> with the identifiers or null to list the identifiers
+	 */
+	public void setIdentifiers(List<String> identifiers) {
+		this.identifiers = identifiers;
+	}
+
+
+	/**
+	 * Gets the number of records that were passed to the handler in the current or last harvest.
+	 * 
+	 * @return	the number of records
+	 */
+	public long getRecords() {
+		return records;
+	}
+
+
+	/**
+	 * Gets the number of records that could not be requested, also after all retries.
+	 * 
+	 * @return	the number of failed records
+	 */
+	public long getFailures() {
+		return failures;
+	}
+
+
+	/**
+	 * Gets the number of requests that were repeated after a temporary error.
+	 * 
+	 * @return	the number of retries
+	 */
+	public long getRetries() {
+		return retries;
+	}
+
+
+	/**
+	 * Gets the number of records to harvest: the size of the list of identifiers or the "completeListSize" of the "ListIdentifiers" response.
+	 * 
+	 * @return	the number of records or -1 if it is unknown
+	 */
+	public int getListSize() {
+		return listSize;
+	}
+
+
+	/**
+	 * Returns true if the current or last harvest of this endpoint is finished.
+	 * 
+	 * @return	true if it is finished
+	 */
+	public boolean isFinished() {
+		return finished != 0;
+	}
+
+
+	/**
+	 * Gets the number of records that were passed to the handler per second since the start of the harvest.
+	 * 
+	 * @return	the number of records per second
+	 */
+	public double getThroughput() {
+		long start = started;
+		long end = (finished != 0) ? finished : System.nanoTime();
+		return (end > start) ? records * 1000000000.0 / (end - start) : 0;
+	}
+
+
+	/**
+	 * Gets the error that stopped the listing of the identifiers, e. g. an OaiPmhException or an IOException after all retries. The identifiers that
+	 * were listed before are harvested nevertheless.
+	 * 
+	 * @return	an Exception or null if there was no error
+	 */
+	public Exception getException() {
+		return exception;
+	}
+
+
+	@Override
+	public String toString() {
+		return "HarvestEndpoint [oaiPmh=" + oaiPmh + ", records=" + records + ", failures=" + failures + ", listSize=" + listSize + "]";
+	}
+
+
+	/**
+	 * A record that is waiting to be requested, with the number of failed attempts.
+	 */
+	static class Item {
+
+		final OaiHeader header;
+		int attempts = 0;
+		long notBefore;
+
+		Item(OaiHeader header) {
+			this.header = header;
+		}
+
+	}
+
+}
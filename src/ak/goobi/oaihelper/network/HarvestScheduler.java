@@ -0,0 +1,618 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ak.goobi.oaihelper.classes.MetsIndex;
+import ak.goobi.oaihelper.classes.OaiHeader;
+import ak.goobi.oaihelper.classes.OaiRecord;
+import ak.goobi.oaihelper.classes.OaiResponse;
+import ak.goobi.oaihelper.metrics.MetricNames;
+import ak.goobi.oaihelper.metrics.Metrics;
+
+/**
+ * This class harvests the records of several OAI-PMH interfaces at once, e. g. of several Goobi viewer instances, with separate limits for each of
+ * them (see HarvestEndpoint and AdaptiveLimiter). The identifiers of each endpoint are listed with "ListIdentifiers" and the records are requested
+ * one by one with "GetRecord", so the number of concurrent requests to an endpoint can be adapted to its load.
+ * 
+ * A fixed number of threads serves all endpoints. The endpoints are served in turns (round robin), so a fast endpoint with many records does not
+ * starve a slow one, and a thread never waits for an endpoint while another endpoint could take a request. Requests that fail with a temporary error
+ * (status 503, 429, 502 or 504, timeouts and connection errors) are repeated with a backoff; records that still fail are counted as failures of
+ * their endpoint and skipped.
+ * 
+ * The progress of all endpoints is available with report() while the harvest runs, and can be written to the java.util.logging Logger
+ * "ak.goobi.oaihelper.network" periodically (see setReportInterval()).
+ * 
+ * @author Michael Birkner
+ */
+public class HarvestScheduler {
+
+	private static final Logger LOGGER = Logger.getLogger("ak.goobi.oaihelper.network");
+	// The next page of identifiers is requested when fewer identifiers of an endpoint are waiting, so the lists are not held in memory completely
+	private static final int LIST_LOW_WATER = 100;
+
+	private List<HarvestEndpoint> endpoints = new ArrayList<HarvestEndpoint>();
+	private int threads = 16;
+	private int maxRetries = 3;
+	private long retryBackoff = 1000;
+	private long maxRetryWait = 60000;
+	private long reportInterval = 0;
+	private volatile Metrics metrics = Metrics.NONE;
+
+
+	/**
+	 * Adds an OAI-PMH interface with the default limits (see HarvestEndpoint.getLimiter()).
+	 * 
+	 * @param oaiPmh	a String of the URL to the OAI-PMH interface with an ending slash (e. g. http://example.com/viewer/oai/), e. g. GoobiOaiHelper.getOaiPmh()
+	 * @return			the HarvestEndpoint, e. g. to set its limits
+	 */
+	public HarvestEndpoint addEndpoint(String oaiPmh) {
+		return addEndpoint(new HarvestEndpoint(oaiPmh));
+	}
+
+
+	/**
+	 * Adds an OAI-PMH interface. Endpoints must not be added while a harvest runs.
+	 * 
+	 * @param endpoint	a HarvestEndpoint
+	 * @return			the HarvestEndpoint
+	 */
+	public synchronized HarvestEndpoint addEndpoint(HarvestEndpoint endpoint) {
+		endpoints.add(endpoint);
+		return endpoint;
+	}
+
+
+	/**
+	 * Gets the endpoints in the order they were added.
+	 * 
+	 * @return	an unmodifiable List<HarvestEndpoint>
+	 */
+	public synchronized List<HarvestEndpoint> getEndpoints() {
+		return Collections.unmodifiableList(new ArrayList<HarvestEndpoint>(endpoints));
+	}
+
+
+	/**
+	 * Harvests the records of all endpoints and passes each record with the index of its METS-XML to the handler. Deleted records are passed with
+	 * their header only. The handler is called by many threads at once and gets the records of all endpoints mixed (see OaiRecord.getHeader() and
+	 * getOaiPmh() of the endpoints to tell them apart, e. g. by a separate handler per endpoint).
+	 * 
+	 * @param handler		an OaiRecordHandler that processes the records
+	 * @return				the number of records that were passed to the handler
+	 * @throws Exception	the first exception of the handler. The remaining records are skipped. Errors of the requests do not stop the harvest,
+	 * 						see HarvestEndpoint.getFailures() and HarvestEndpoint.getException().
+	 */
+	public int harvest(OaiRecordHandler handler) throws Exception {
+		List<HarvestEndpoint> endpoints = getEndpoints();
+		final Run run = new Run(endpoints, handler);
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count = 0;
+			@Override
+			public synchronized Thread newThread(Runnable runnable) {
+				return new Thread(runnable, "GoobiOaiHelper-harvest-" + (++count));
+			}
+		});
+		ScheduledExecutorService reporter = startReports();
+		try {
+			for (int i = 0; i < threads; i++) {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						run.work();
+					}
+				});
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			if (reporter != null) {
+				reporter.shutdownNow();
+				log();
+			}
+		}
+
+		if (run.exception != null) {
+			throw run.exception;
+		}
+		long records = 0;
+		for (HarvestEndpoint endpoint : endpoints) {
+			records += endpoint.records;
+		}
+		return (int) records;
+	}
+
+
+	/**
+	 * Creates a report of the progress of all endpoints with one line each: the harvested and failed records, the size of the list, the current and
+	 * maximum concurrency, the latency, the overloads and the throughput.
+	 * 
+	 * @return	a String with the report
+	 */
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		long records = 0;
+		double throughput = 0;
+		for (HarvestEndpoint endpoint : getEndpoints()) {
+			AdaptiveLimiter limiter = endpoint.getLimiter();
+			int listSize = endpoint.getListSize();
+			String progress = (listSize > 0) ? String.format(Locale.US, "%5.1f%%", Math.min(100.0, (endpoint.getRecords() + endpoint.getFailures()) * 100.0 / listSize)) : "    ?";
+			report.append(String.format(Locale.US, "%-48s records=%d/%s %s failures=%d retries=%d concurrency=%d/%d latency=%.0fms overloads=%d %.1f records/s%s%n",
+					endpoint.getOaiPmh(), endpoint.getRecords(), (listSize >= 0) ? String.valueOf(listSize) : "?", progress, endpoint.getFailures(),
+					endpoint.getRetries(), limiter.getLimit(), limiter.getMaxConcurrency(), limiter.getLatency() / 1000000.0, limiter.getOverloads(),
+					endpoint.getThroughput(), endpoint.isFinished() ? " finished" : ""));
+			records += endpoint.getRecords();
+			throughput += endpoint.getThroughput();
+		}
+		report.append(String.format(Locale.US, "%-48s records=%d %.1f records/s%n", "total", records, throughput));
+		return report.toString();
+	}
+
+
+	/**
+	 * Writes the report of report() to the Logger "ak.goobi.oaihelper.network" with level INFO.
+	 */
+	public void log() {
+		if (LOGGER.isLoggable(Level.INFO)) {
+			LOGGER.info("GoobiOaiHelper harvest:" + System.lineSeparator() + report());
+		}
+	}
+
+
+	private ScheduledExecutorService startReports() {
+		if (reportInterval <= 0) {
+			return null;
+		}
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "GoobiOaiHelper-harvest-report");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		reporter.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				log();
+			}
+		}, reportInterval, reportInterval, TimeUnit.MILLISECONDS);
+		return reporter;
+	}
+
+
+	/**
+	 * Status 503 and 429 and timeouts mean that the server can not keep up, so the concurrency is decreased.
+	 */
+	private static boolean isOverload(Exception e) {
+		if (e instanceof HttpStatusException) {
+			int statusCode = ((HttpStatusException) e).getStatusCode();
+			return statusCode == 503 || statusCode == 429;
+		}
+		return e instanceof SocketTimeoutException;
+	}
+
+
+	/**
+	 * The same errors as in HttpClient are temporary: status 503, 429, 502 and 504 and connection errors.
+	 */
+	private static boolean isRetryable(Exception e) {
+		if (e instanceof HttpStatusException) {
+			int statusCode = ((HttpStatusException) e).getStatusCode();
+			return statusCode == 503 || statusCode == 429 || statusCode == 502 || statusCode == 504;
+		}
+		return e instanceof IOException;
+	}
+
+
+	/**
+	 * Gets the wait time before a retry in nanoseconds: the exponential backoff, but at least the "Retry-After" of the server (up to maxRetryWait).
+	 */
+	private long getBackoff(int attempt, Exception e) {
+		long backoff = Math.max(retryBackoff << Math.min(attempt - 1, 20), getRetryAfter(e));
+		return TimeUnit.MILLISECONDS.toNanos(Math.min(backoff, maxRetryWait));
+	}
+
+
+	/**
+	 * Gets the "Retry-After" of an error response in milliseconds, which the HttpClient of the endpoint does not handle itself because it does not retry.
+	 */
+	private static long getRetryAfter(Exception e) {
+		return (e instanceof HttpStatusException) ? ((HttpStatusException) e).getRetryAfter() : 0;
+	}
+
+
+	/**
+	 * The state of one harvest. The threads take the tasks of the endpoints in turns; all changes of the state of the endpoints are made while holding
+	 * the lock of the Run.
+	 */
+	private class Run {
+
+		private final List<HarvestEndpoint> endpoints;
+		private final OaiRecordHandler handler;
+		private final Metrics metrics = HarvestScheduler.this.metrics;
+		private int next = 0;
+		private volatile Exception exception;
+
+		private Run(List<HarvestEndpoint> endpoints, OaiRecordHandler handler) {
+			this.endpoints = endpoints;
+			this.handler = handler;
+			long now = System.nanoTime();
+			for (HarvestEndpoint endpoint : endpoints) {
+				endpoint.start(now);
+			}
+		}
+
+
+		private void work() {
+			try {
+				Runnable task;
+				while ((task = nextTask()) != null) {
+					task.run();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				stop(e);
+			}
+		}
+
+
+		/**
+		 * Waits until an endpoint has a task that the limits allow. Returns null if all endpoints are done or the harvest was stopped.
+		 */
+		private synchronized Runnable nextTask() throws InterruptedException {
+			while (exception == null) {
+				long now = System.nanoTime();
+				long wait = Long.MAX_VALUE;
+				boolean done = true;
+				for (int i = 0; i < endpoints.size(); i++) {
+					int index = (next + i) % endpoints.size();
+					HarvestEndpoint endpoint = endpoints.get(index);
+					if (endpoint.isDone()) {
+						continue;
+					}
+					done = false;
+					long endpointWait = schedule(endpoint, now);
+					if (endpointWait == 0) {
+						Runnable task = takeTask(endpoint, now);
+						if (task != null) {
+							// The next search starts after this endpoint, so all endpoints get their turn
+							next = (index + 1) % endpoints.size();
+							return task;
+						}
+					}
+					wait = Math.min(wait, endpointWait);
+				}
+				if (done) {
+					return null;
+				}
+				if (wait == Long.MAX_VALUE) {
+					// Only running tasks can create new work, they notify on completion
+					wait();
+				} else {
+					TimeUnit.NANOSECONDS.timedWait(this, wait);
+				}
+			}
+			return null;
+		}
+
+
+		/**
+		 * Gets the time until the endpoint has a task that may start: 0 if it may start now, Long.MAX_VALUE if it has to wait for its running tasks.
+		 */
+		private long schedule(HarvestEndpoint endpoint, long now) {
+			long wait = Long.MAX_VALUE;
+			boolean ready = false;
+			if (!endpoint.listComplete && !endpoint.listRunning && endpoint.pending.size() < LIST_LOW_WATER) {
+				if (endpoint.listNotBefore - now <= 0) {
+					ready = true;
+				} else {
+					wait = endpoint.listNotBefore - now;
+				}
+			}
+			if (!endpoint.delayed.isEmpty()) {
+				long delay = endpoint.delayed.peek().notBefore - now;
+				if (delay <= 0) {
+					ready = true;
+				} else {
+					wait = Math.min(wait, delay);
+				}
+			}
+			if (!endpoint.pending.isEmpty()) {
+				ready = true;
+			}
+			if (!ready) {
+				return wait;
+			}
+			long limit = endpoint.getLimiter().tryAcquire();
+			if (limit == 0) {
+				return 0;
+			}
+			return (limit < 0) ? wait : Math.min(wait, limit);
+		}
+
+
+		/**
+		 * Takes the next task of an endpoint after schedule() returned 0: a page of identifiers if few are left, else a retried or a new record.
+		 */
+		private Runnable takeTask(final HarvestEndpoint endpoint, long now) {
+			endpoint.running++;
+			if (!endpoint.listComplete && !endpoint.listRunning && endpoint.pending.size() < LIST_LOW_WATER && endpoint.listNotBefore - now <= 0) {
+				endpoint.listRunning = true;
+				final String resumptionToken = endpoint.resumptionToken;
+				return new Runnable() {
+					@Override
+					public void run() {
+						listIdentifiers(endpoint, resumptionToken);
+					}
+				};
+			}
+			final HarvestEndpoint.Item item = (!endpoint.delayed.isEmpty() && endpoint.delayed.peek().notBefore - now <= 0) ? endpoint.delayed.poll() : endpoint.pending.poll();
+			return new Runnable() {
+				@Override
+				public void run() {
+					getRecord(endpoint, item);
+				}
+			};
+		}
+
+
+		private void listIdentifiers(HarvestEndpoint endpoint, String resumptionToken) {
+			long start = System.nanoTime();
+			try {
+				OaiResponse oaiResponse = endpoint.getOaiHarvester().getListPage("ListIdentifiers", resumptionToken);
+				listCompleted(endpoint, oaiResponse, System.nanoTime() - start);
+			} catch (Exception e) {
+				listFailed(endpoint, e, System.nanoTime() - start);
+			}
+		}
+
+
+		private synchronized void listCompleted(HarvestEndpoint endpoint, OaiResponse oaiResponse, long latency) {
+			endpoint.getLimiter().release(latency, false);
+			endpoint.listRunning = false;
+			endpoint.listAttempts = 0;
+			if (oaiResponse.getErrorCode() != null) {
+				// "noRecordsMatch" is not an error for us, there are just no records for the given arguments
+				if (!"noRecordsMatch".equals(oaiResponse.getErrorCode())) {
+					endpoint.exception = new OaiPmhException(oaiResponse.getErrorCode(), oaiResponse.getErrorMessage());
+					metrics.count(MetricNames.HARVEST_ERRORS, 1);
+				}
+				endpoint.listComplete = true;
+			} else {
+				for (OaiRecord record : oaiResponse.getRecords()) {
+					endpoint.pending.add(new HarvestEndpoint.Item(record.getHeader()));
+				}
+				if (oaiResponse.getCompleteListSize() >= 0) {
+					endpoint.listSize = oaiResponse.getCompleteListSize();
+				}
+				endpoint.resumptionToken = oaiResponse.getResumptionToken();
+				endpoint.listComplete = (endpoint.resumptionToken == null);
+			}
+			taskCompleted(endpoint);
+		}
+
+
+		private synchronized void listFailed(HarvestEndpoint endpoint, Exception e, long latency) {
+			endpoint.getLimiter().release(latency, isOverload(e), getRetryAfter(e));
+			endpoint.listRunning = false;
+			if (isRetryable(e) && endpoint.listAttempts < maxRetries) {
+				endpoint.listAttempts++;
+				endpoint.listNotBefore = System.nanoTime() + getBackoff(endpoint.listAttempts, e);
+				endpoint.retries++;
+				metrics.count(MetricNames.SCHEDULER_RETRIES, 1);
+			} else {
+				endpoint.exception = e;
+				endpoint.listComplete = true;
+				metrics.count(MetricNames.HARVEST_ERRORS, 1);
+			}
+			countOverload(e);
+			taskCompleted(endpoint);
+		}
+
+
+		private void getRecord(HarvestEndpoint endpoint, HarvestEndpoint.Item item) {
+			OaiHeader header = item.header;
+			MetsIndex metsIndex = null;
+			if (!header.isDeleted()) {
+				long start = System.nanoTime();
+				try {
+					metsIndex = endpoint.getNetwork().getMetsIndex(endpoint.getOaiPmh(), header.getIdentifier(), header.getDatestamp());
+				} catch (Exception e) {
+					recordFailed(endpoint, item, e, System.nanoTime() - start);
+					return;
+				}
+				fetched(endpoint, System.nanoTime() - start);
+			} else {
+				fetched(endpoint, -1);
+			}
+
+			boolean handled = false;
+			try {
+				// Skip the remaining records after the first failure
+				if (exception == null) {
+					long start = System.nanoTime();
+					handler.handleRecord(new OaiRecord(header, metsIndex));
+					metrics.time(MetricNames.HARVEST_HANDLER, System.nanoTime() - start);
+					metrics.count(MetricNames.HARVEST_RECORDS, 1);
+					handled = true;
+				}
+			} catch (Exception e) {
+				metrics.count(MetricNames.HARVEST_ERRORS, 1);
+				stop(e);
+			} finally {
+				recordCompleted(endpoint, handled);
+			}
+		}
+
+
+		/**
+		 * Releases the limit after the download, so the time of the handler does not count as latency of the server. Deleted records were not requested.
+		 */
+		private synchronized void fetched(HarvestEndpoint endpoint, long latency) {
+			if (latency >= 0) {
+				endpoint.getLimiter().release(latency, false);
+			} else {
+				endpoint.getLimiter().cancel();
+			}
+			// A slot of the endpoint is free again
+			notifyAll();
+		}
+
+
+		private synchronized void recordCompleted(HarvestEndpoint endpoint, boolean handled) {
+			if (handled) {
+				endpoint.records++;
+			}
+			taskCompleted(endpoint);
+		}
+
+
+		private synchronized void recordFailed(HarvestEndpoint endpoint, HarvestEndpoint.Item item, Exception e, long latency) {
+			endpoint.getLimiter().release(latency, isOverload(e), getRetryAfter(e));
+			item.attempts++;
+			if (isRetryable(e) && item.attempts <= maxRetries) {
+				item.notBefore = System.nanoTime() + getBackoff(item.attempts, e);
+				endpoint.delayed.add(item);
+				endpoint.retries++;
+				metrics.count(MetricNames.SCHEDULER_RETRIES, 1);
+			} else {
+				endpoint.failures++;
+				metrics.count(MetricNames.HARVEST_ERRORS, 1);
+				LOGGER.log(Level.WARNING, "Could not harvest record " + item.header.getIdentifier() + " from " + endpoint.getOaiPmh(), e);
+			}
+			countOverload(e);
+			taskCompleted(endpoint);
+		}
+
+
+		private void countOverload(Exception e) {
+			if (isOverload(e)) {
+				metrics.count(MetricNames.SCHEDULER_OVERLOADS, 1);
+			}
+		}
+
+
+		private void taskCompleted(HarvestEndpoint endpoint) {
+			endpoint.running--;
+			if (endpoint.isDone()) {
+				endpoint.finished = System.nanoTime();
+			}
+			notifyAll();
+		}
+
+
+		private synchronized void stop(Exception e) {
+			if (exception == null) {
+				exception = e;
+			}
+			notifyAll();
+		}
+
+	}
+
+
+	public int getThreads() {
+		return threads;
+	}
+
+
+	/**
+	 * Sets the number of threads that serve all endpoints. It should be at least the sum of the maximum concurrency of the endpoints, or the threads
+	 * limit the concurrency instead of the endpoints. Default is 16.
+	 * 
+	 * @param threads	the number of threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+
+	/**
+	 * Sets how often a request is repeated after a temporary error (see HttpClient.setMaxRetries()). Default is 3.
+	 * 
+	 * @param maxRetries	the number of retries
+	 */
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+
+	public long getRetryBackoff() {
+		return retryBackoff;
+	}
+
+
+	/**
+	 * Sets the wait time before the first retry. It is doubled for every further retry, up to 1 minute. Default is 1 second.
+	 * 
+	 * @param retryBackoff	the wait time in milliseconds
+	 */
+	public void setRetryBackoff(long retryBackoff) {
+		this.retryBackoff = retryBackoff;
+	}
+
+
+	public long getReportInterval() {
+		return reportInterval;
+	}
+
+
+	/**
+	 * Sets the time between two progress reports that are written to the log while a harvest runs (see log()). Default is 0 (no reports).
+	 * 
+	 * @param reportInterval	the time in milliseconds, e. g. 60000, or 0 for no reports
+	 */
+	public void setReportInterval(long reportInterval) {
+		this.reportInterval = reportInterval;
+	}
+
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+
+	/**
+	 * Sets the Metrics that receive the measurements of the scheduler: the number of records, errors, retries and overloads and the time of the
+	 * handler (see MetricNames). The Networks and HttpClients of the endpoints have their own Metrics. Default is Metrics.NONE.
+	 * 
+	 * @param metrics	a Metrics, e. g. a JmxMetrics or a LogMetrics
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = (metrics != null) ? metrics : Metrics.NONE;
+	}
+
+}
@@ -0,0 +1,422 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import ak.goobi.oaihelper.metrics.MetricNames;
+import ak.goobi.oaihelper.metrics.Metrics;
+
+/**
+ * This class executes HTTP GET requests for Network and OaiHarvester. It sets connect and read timeouts, requests gzip or deflate compressed responses
+ * and decodes them transparently, retries requests with a backoff if a server is unavailable (e. g. status 503 with a "Retry-After" header, as OAI-PMH
+ * interfaces send it under load) and limits the number of concurrent requests per host.
+ * 
+ * Connections are kept alive and reused by the connection pool of java.net.HttpURLConnection as long as the responses are closed. The pool keeps at most
+ * as many idle connections per host as set by the system property "http.maxConnections" (default: 5), so set it at least to the value of
+ * setMaxConnectionsPerHost() when that is higher. The client works with any URL, so it can also be used against a local stub server, e. g. one started
+ * with com.sun.net.httpserver.HttpServer.
+ * 
+ * If Metrics are set, the client records the wait for a slot of the host, the time to connect, the time to the response headers, the time and the
+ * number of bytes of the download of the body and counts requests, retries and errors (see MetricNames).
+ * 
+ * @author Michael Birkner
+ */
+public class HttpClient {
+
+	private int connectTimeout = 10000;
+	private int readTimeout = 60000;
+	private int maxRetries = 3;
+	private long retryBackoff = 1000;
+	private long maxRetryWait = 120000;
+	private int maxConnectionsPerHost = 4;
+	private String userAgent = "GoobiOaiHelper";
+	private ConcurrentMap<String, Semaphore> hostSemaphores = new ConcurrentHashMap<String, Semaphore>();
+	private volatile Metrics metrics = Metrics.NONE;
+
+
+	/**
+	 * Executes a GET request.
+	 * 
+	 * @param url				a String of the URL
+	 * @return					an HttpResponse. Close it after reading the body.
+	 * @throws IOException		if the request fails, also after all retries. An HttpStatusException is thrown if the server answers with an error status.
+	 */
+	public HttpResponse get(String url) throws IOException {
+		return get(url, Collections.<String, String>emptyMap());
+	}
+
+
+	/**
+	 * Executes a GET request with additional request headers, e. g. "If-Modified-Since" for a conditional request.
+	 * 
+	 * @param url				a String of the URL
+	 * @param requestHeaders	a Map<String, String> with the names and values of additional request headers
+	 * @return					an HttpResponse. Close it after reading the body.
+	 * @throws IOException		if the request fails, also after all retries. An HttpStatusException is thrown if the server answers with an error status.
+	 */
+	public HttpResponse get(String url, Map<String, String> requestHeaders) throws IOException {
+		URL uUrl = new URL(url);
+		Semaphore hostSemaphore = getHostSemaphore(uUrl);
+		Metrics metrics = this.metrics;
+
+		for (int attempt = 0; ; attempt++) {
+			long wait = getBackoff(attempt);
+			long start = System.nanoTime();
+			acquire(hostSemaphore);
+			metrics.time(MetricNames.HTTP_WAIT, System.nanoTime() - start);
+			metrics.count(MetricNames.HTTP_REQUESTS, 1);
+			if (attempt > 0) {
+				metrics.count(MetricNames.HTTP_RETRIES, 1);
+			}
+			HttpURLConnection conn = null;
+			boolean holdsSlot = true;
+			try {
+				conn = (HttpURLConnection)uUrl.openConnection();
+				conn.setConnectTimeout(connectTimeout);
+				conn.setReadTimeout(readTimeout);
+				conn.setRequestProperty("Accept-Encoding", "gzip, deflate");
+				conn.setRequestProperty("User-Agent", userAgent);
+				for (Map.Entry<String, String> requestHeader : requestHeaders.entrySet()) {
+					conn.setRequestProperty(requestHeader.getKey(), requestHeader.getValue());
+				}
+
+				start = System.nanoTime();
+				conn.connect();
+				long connected = System.nanoTime();
+				metrics.time(MetricNames.HTTP_CONNECT, connected - start);
+				int statusCode = conn.getResponseCode();
+				long responded = System.nanoTime();
+				metrics.time(MetricNames.HTTP_RESPONSE, responded - connected);
+				if (statusCode < 400) {
+					// The slot for the host is released when the response is closed
+					InputStream inputStream = (statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) ? null : decode(conn);
+					if (inputStream != null && metrics != Metrics.NONE) {
+						inputStream = new MeteredInputStream(inputStream, metrics, responded);
+					}
+					holdsSlot = false;
+					return new HttpResponse(conn, statusCode, inputStream, hostSemaphore);
+				}
+
+				// Read the error body, so the connection can be reused
+				discardErrorStream(conn);
+				holdsSlot = false;
+				hostSemaphore.release();
+				long retryAfter = isRetryable(statusCode) ? getRetryAfter(conn) : 0;
+				if (!isRetryable(statusCode) || attempt >= maxRetries) {
+					metrics.count(MetricNames.HTTP_ERRORS, 1);
+					throw new HttpStatusException(statusCode, url, retryAfter);
+				}
+				wait = Math.max(wait, retryAfter);
+			} catch (HttpStatusException e) {
+				throw e;
+			} catch (IOException e) {
+				// Connection refused, timeouts, etc.
+				if (conn != null) {
+					discardErrorStream(conn);
+				}
+				holdsSlot = false;
+				hostSemaphore.release();
+				if (attempt >= maxRetries) {
+					metrics.count(MetricNames.HTTP_ERRORS, 1);
+					throw e;
+				}
+			} catch (RuntimeException e) {
+				// E. g. a URL that is not an HTTP URL or an invalid request header. It is not retried, but the slot of the host must be given back.
+				if (holdsSlot) {
+					if (conn != null) {
+						conn.disconnect();
+					}
+					hostSemaphore.release();
+				}
+				throw e;
+			}
+
+			sleep(Math.min(wait, maxRetryWait));
+		}
+	}
+
+
+	/**
+	 * Wraps the InputStream of the connection with a decoder for the "Content-Encoding" of the response.
+	 */
+	private InputStream decode(HttpURLConnection conn) throws IOException {
+		InputStream inputStream = conn.getInputStream();
+		String contentEncoding = conn.getContentEncoding();
+		if (contentEncoding != null) {
+			contentEncoding = contentEncoding.trim().toLowerCase(Locale.ENGLISH);
+			if ("gzip".equals(contentEncoding) || "x-gzip".equals(contentEncoding)) {
+				inputStream = new GZIPInputStream(inputStream);
+			} else if ("deflate".equals(contentEncoding)) {
+				inputStream = new InflaterInputStream(inputStream);
+			}
+		}
+		return inputStream;
+	}
+
+
+	/**
+	 * Status 503 (service unavailable), 429 (too many requests), 502 (bad gateway) and 504 (gateway timeout) are temporary, so the request is repeated.
+	 */
+	private boolean isRetryable(int statusCode) {
+		return statusCode == 503 || statusCode == 429 || statusCode == 502 || statusCode == 504;
+	}
+
+
+	/**
+	 * Gets the exponential backoff for an attempt: 0 for the first attempt, then retryBackoff, 2 * retryBackoff, 4 * retryBackoff, ...
+	 */
+	private long getBackoff(int attempt) {
+		return (attempt == 0) ? 0 : retryBackoff << Math.min(attempt - 1, 20);
+	}
+
+
+	/**
+	 * Gets the wait time in milliseconds from the "Retry-After" header, which contains either seconds or an HTTP date. Returns 0 if there is no valid header.
+	 */
+	private long getRetryAfter(HttpURLConnection conn) {
+		String retryAfter = conn.getHeaderField("Retry-After");
+		if (retryAfter == null) {
+			return 0;
+		}
+		retryAfter = retryAfter.trim();
+		if (retryAfter.matches("\\d+")) {
+			return Long.parseLong(retryAfter) * 1000;
+		}
+		SimpleDateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+		try {
+			Date retryDate = httpDateFormat.parse(retryAfter);
+			return Math.max(0, retryDate.getTime() - System.currentTimeMillis());
+		} catch (ParseException e) {
+			return 0;
+		}
+	}
+
+
+	private void discardErrorStream(HttpURLConnection conn) {
+		InputStream errorStream = conn.getErrorStream();
+		if (errorStream == null) {
+			return;
+		}
+		try {
+			byte[] buffer = new byte[4096];
+			while (errorStream.read(buffer) != -1) {
+				// Discard
+			}
+			errorStream.close();
+		} catch (IOException e) {
+			// The connection can not be reused, nothing else to do
+		}
+	}
+
+
+	private Semaphore getHostSemaphore(URL url) {
+		String host = url.getHost() + ":" + url.getPort();
+		Semaphore hostSemaphore = hostSemaphores.get(host);
+		if (hostSemaphore == null) {
+			hostSemaphore = new Semaphore(maxConnectionsPerHost, true);
+			Semaphore existingSemaphore = hostSemaphores.putIfAbsent(host, hostSemaphore);
+			if (existingSemaphore != null) {
+				hostSemaphore = existingSemaphore;
+			}
+		}
+		return hostSemaphore;
+	}
+
+
+	private void acquire(Semaphore hostSemaphore) throws IOException {
+		try {
+			hostSemaphore.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for a connection");
+		}
+	}
+
+
+	private void sleep(long millis) throws IOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for a retry");
+		}
+	}
+
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+	/**
+	 * Sets the timeout for establishing a connection. Default is 10 seconds.
+	 * 
+	 * @param connectTimeout	the timeout in milliseconds. 0 means no timeout.
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+	/**
+	 * Sets the timeout for waiting for data from an established connection. Default is 60 seconds.
+	 * 
+	 * @param readTimeout	the timeout in milliseconds. 0 means no timeout.
+	 */
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+	/**
+	 * Sets how often a request is repeated after a connection error or a temporary error status (503, 429, 502, 504). Default is 3.
+	 * 
+	 * @param maxRetries	the number of retries. 0 means no retries.
+	 */
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public long getRetryBackoff() {
+		return retryBackoff;
+	}
+	/**
+	 * Sets the wait time before the first retry. It is doubled for every further retry. A longer "Retry-After" of the server is respected. Default is 1 second.
+	 * 
+	 * @param retryBackoff	the wait time in milliseconds
+	 */
+	public void setRetryBackoff(long retryBackoff) {
+		this.retryBackoff = retryBackoff;
+	}
+
+	public long getMaxRetryWait() {
+		return maxRetryWait;
+	}
+	/**
+	 * Sets the maximum wait time before a retry, also if the server sends a longer "Retry-After". Default is 2 minutes.
+	 * 
+	 * @param maxRetryWait	the maximum wait time in milliseconds
+	 */
+	public void setMaxRetryWait(long maxRetryWait) {
+		this.maxRetryWait = maxRetryWait;
+	}
+
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+	/**
+	 * Sets the maximum number of concurrent requests per host. Further requests wait until a response is closed. Default is 4. Set it before the first request.
+	 * 
+	 * @param maxConnectionsPerHost	the maximum number of concurrent requests per host
+	 */
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+	/**
+	 * Sets the Metrics that receive the measurements of the requests. Default is Metrics.NONE.
+	 * 
+	 * @param metrics	a Metrics, e. g. a JmxMetrics or a LogMetrics
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = (metrics != null) ? metrics : Metrics.NONE;
+	}
+
+	public String getUserAgent() {
+		return userAgent;
+	}
+	public void setUserAgent(String userAgent) {
+		this.userAgent = userAgent;
+	}
+
+
+	/**
+	 * Counts the bytes of the decoded body and records them and the time until the body is closed.
+	 */
+	private static class MeteredInputStream extends FilterInputStream {
+
+		private Metrics metrics;
+		private long start;
+		private long bytes = 0;
+		private boolean closed = false;
+
+		MeteredInputStream(InputStream inputStream, Metrics metrics, long start) {
+			super(inputStream);
+			this.metrics = metrics;
+			this.start = start;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				bytes++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int count = super.read(buffer, offset, length);
+			if (count > 0) {
+				bytes += count;
+			}
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			bytes += skipped;
+			return skipped;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				metrics.time(MetricNames.HTTP_DOWNLOAD, System.nanoTime() - start);
+				metrics.value(MetricNames.HTTP_DOWNLOAD_BYTES, bytes);
+			}
+			super.close();
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.Semaphore;
+
+/**
+ * This class holds the response of a request of HttpClient. The body is already decoded if it was sent with gzip or deflate compression. Always close
+ * the response after reading the body, so the connection can be reused and the slot for the host is freed (see HttpClient.setMaxConnectionsPerHost()).
+ * 
+ * @author Michael Birkner
+ */
+public class HttpResponse {
+
+	private HttpURLConnection connection;
+	private int statusCode;
+	private InputStream inputStream;
+	private Semaphore hostSemaphore;
+	private boolean closed = false;
+
+	HttpResponse(HttpURLConnection connection, int statusCode, InputStream inputStream, Semaphore hostSemaphore) {
+		this.connection = connection;
+		this.statusCode = statusCode;
+		this.inputStream = (inputStream != null) ? inputStream : new ByteArrayInputStream(new byte[0]);
+		this.hostSemaphore = hostSemaphore;
+	}
+
+	/**
+	 * Gets the HTTP status code, e. g. 200 or 304 (not modified, only if a conditional request was made).
+	 * 
+	 * @return	the HTTP status code
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Gets the value of a response header.
+	 * 
+	 * @param name	a String with the name of the header
+	 * @return		a String with the value of the header or null if the response has no such header
+	 */
+	public String getHeader(String name) {
+		return connection.getHeaderField(name);
+	}
+
+	/**
+	 * Gets the value of the "Last-Modified" header in milliseconds since January 1, 1970 GMT.
+	 * 
+	 * @return	the last modification date or 0 if the response has no "Last-Modified" header
+	 */
+	public long getLastModified() {
+		return connection.getLastModified();
+	}
+
+	/**
+	 * Gets the decoded body of the response. It is empty for responses with status 304 (not modified).
+	 * 
+	 * @return	an InputStream of the body
+	 */
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	/**
+	 * Closes the body and frees the slot for the host. Calling this method more than once has no effect.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			inputStream.close();
+		} finally {
+			hostSemaphore.release();
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import java.io.IOException;
+
+/**
+ * This exception is thrown by HttpClient if a server answers with an HTTP status code that indicates an error, also after all retries.
+ * 
+ * @author Michael Birkner
+ */
+public class HttpStatusException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+	private int statusCode;
+	private String url;
+	private long retryAfter;
+
+	public HttpStatusException(int statusCode, String url) {
+		this(statusCode, url, 0);
+	}
+
+	/**
+	 * @param statusCode	the HTTP status code
+	 * @param url			a String of the requested URL
+	 * @param retryAfter	the wait time of the "Retry-After" header in milliseconds or 0 if there is none
+	 */
+	public HttpStatusException(int statusCode, String url, long retryAfter) {
+		super("HTTP status " + statusCode + " for " + url);
+		this.statusCode = statusCode;
+		this.url = url;
+		this.retryAfter = retryAfter;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+	public String getUrl() {
+		return url;
+	}
+	/**
+	 * Gets the time the server asked to wait before the next request (see the "Retry-After" header of status 503 or 429).
+	 * 
+	 * @return	the wait time in milliseconds or 0 if the server sent no "Retry-After" header
+	 */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+
+}
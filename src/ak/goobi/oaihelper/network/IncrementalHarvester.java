@@ -0,0 +1,235 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ak.goobi.oaihelper.cache.HarvestState;
+import ak.goobi.oaihelper.classes.HarvestedRecord;
+import ak.goobi.oaihelper.classes.OaiHeader;
+import ak.goobi.oaihelper.classes.OaiRecord;
+import ak.goobi.oaihelper.classes.OaiResponse;
+
+/**
+ * This class harvests only the records of an OAI-PMH interface that changed since the last harvest. The harvested records are remembered in a state
+ * file (see HarvestState) with their datestamps and a hash of their metadata. Each harvest requests the records that were changed since the date of
+ * the first response of the last complete harvest and passes only new, changed and newly deleted records to the handler. A record is changed if the
+ * hash of its metadata is different, so records whose datestamp changed without a change of the metadata are skipped.
+ * 
+ * The resumption token is saved in the state file whenever all records of a response were processed. If a harvest is interrupted (e. g. by a crash or
+ * an exception of the handler), the next harvest continues with this token. If the token has expired in the meantime, the interrupted harvest is
+ * started again; records that were already processed are skipped because their hash did not change.
+ * 
+ * The OaiHarvester is configured by this class (from, resumption token, page listener and content hash), so it must not be used for other harvests at
+ * the same time.
+ * 
+ * @author Michael Birkner
+ */
+public class IncrementalHarvester {
+
+	private OaiHarvester oaiHarvester;
+	private File stateFile;
+	private int checkpointInterval = 1;
+
+
+	/**
+	 * @param oaiHarvester	an OaiHarvester with the URL, the metadata prefix and the set to harvest
+	 * @param stateFile		the state file. It is created by the first harvest.
+	 */
+	public IncrementalHarvester(OaiHarvester oaiHarvester, File stateFile) {
+		this.oaiHarvester = oaiHarvester;
+		this.stateFile = stateFile;
+	}
+
+
+	/**
+	 * Harvests the records that changed since the last harvest with the verb "ListRecords" and passes new, changed and deleted records to the handler.
+	 * The first harvest passes all records. The state file is saved after the harvest, also if it fails.
+	 * 
+	 * @param handler		an OaiRecordHandler that processes the changed records. Deleted records have a header with isDeleted() == true and no MetsIndex.
+	 * @return				the number of records that were passed to the handler
+	 * @throws Exception	if the state file belongs to another OAI-PMH interface, metadata prefix or set, if a request or the parsing of a response
+	 * 						fails, if the OAI-PMH interface returns an error other than "noRecordsMatch" or if the handler throws an exception
+	 */
+	public int harvest(final OaiRecordHandler handler) throws Exception {
+		final HarvestState harvestState = loadState();
+		final AtomicInteger noOfChangedRecords = new AtomicInteger();
+		final AtomicBoolean dayGranularity = new AtomicBoolean(false);
+
+		OaiRecordHandler changedRecordHandler = new OaiRecordHandler() {
+			@Override
+			public void handleRecord(OaiRecord record) throws Exception {
+				OaiHeader header = record.getHeader();
+				if (header.getIdentifier() == null) {
+					return;
+				}
+				if (header.getDatestamp() != null && header.getDatestamp().length() == 10) {
+					dayGranularity.set(true);
+				}
+				HarvestedRecord harvestedRecord = new HarvestedRecord(header.getIdentifier(), header.getDatestamp(), record.getContentHash(), header.isDeleted());
+				if (isChanged(harvestState.getRecord(header.getIdentifier()), harvestedRecord)) {
+					handler.handleRecord(record);
+					noOfChangedRecords.incrementAndGet();
+				}
+				// Remember the record only after it was processed, so it is passed to the handler again if the handler failed
+				harvestState.putRecord(harvestedRecord);
+			}
+		};
+
+		OaiPageListener checkpointListener = new OaiPageListener() {
+			private int noOfPages = 0;
+
+			@Override
+			public void pageCompleted(OaiResponse oaiResponse) throws Exception {
+				if (harvestState.getHarvestDate() == null) {
+					harvestState.setHarvestDate((oaiResponse.getResponseDate() != null) ? oaiResponse.getResponseDate() : getCurrentDate());
+				}
+				harvestState.setResumptionToken(oaiResponse.getResumptionToken());
+				noOfPages++;
+				if (oaiResponse.getResumptionToken() != null && noOfPages % checkpointInterval == 0) {
+					harvestState.save(stateFile);
+				}
+			}
+		};
+
+		oaiHarvester.setContentHash(true);
+		oaiHarvester.setPageListener(checkpointListener);
+		try {
+			if (harvestState.getResumptionToken() != null) {
+				// Continue an interrupted harvest
+				try {
+					oaiHarvester.setFrom(harvestState.getHarvestFrom());
+					oaiHarvester.setResumptionToken(harvestState.getResumptionToken());
+					oaiHarvester.listRecords(changedRecordHandler);
+				} catch (OaiPmhException e) {
+					if (!"badResumptionToken".equals(e.getErrorCode())) {
+						throw e;
+					}
+					// The token has expired, so start the interrupted harvest again
+					oaiHarvester.setResumptionToken(null);
+					oaiHarvester.listRecords(changedRecordHandler);
+				}
+			} else {
+				harvestState.setHarvestFrom(harvestState.getLastHarvestDate());
+				harvestState.setHarvestDate(null);
+				oaiHarvester.setFrom(harvestState.getHarvestFrom());
+				oaiHarvester.setResumptionToken(null);
+				oaiHarvester.listRecords(changedRecordHandler);
+			}
+
+			// The harvest is complete
+			String harvestDate = harvestState.getHarvestDate();
+			if (harvestDate != null && harvestDate.length() > 10 && (dayGranularity.get() || isDayGranularity(harvestState.getHarvestFrom()))) {
+				// The OAI-PMH interface supports only dates without time
+				harvestDate = harvestDate.substring(0, 10);
+			}
+			harvestState.setLastHarvestDate(harvestDate);
+			harvestState.setHarvestFrom(null);
+			harvestState.setHarvestDate(null);
+			harvestState.setResumptionToken(null);
+		} finally {
+			oaiHarvester.setPageListener(null);
+			oaiHarvester.setResumptionToken(null);
+			harvestState.save(stateFile);
+		}
+
+		return noOfChangedRecords.get();
+	}
+
+
+	/**
+	 * Loads the state file or creates a new state if it does not exist.
+	 */
+	private HarvestState loadState() throws IOException {
+		if (!stateFile.exists()) {
+			return new HarvestState(oaiHarvester.getOaiPmh(), oaiHarvester.getMetadataPrefix(), oaiHarvester.getSet());
+		}
+		HarvestState harvestState = HarvestState.load(stateFile);
+		if (!harvestState.getOaiPmh().equals(oaiHarvester.getOaiPmh()) || !harvestState.getMetadataPrefix().equals(oaiHarvester.getMetadataPrefix())
+				|| !equals(harvestState.getSet(), oaiHarvester.getSet())) {
+			throw new IOException("The state file " + stateFile + " belongs to another harvest: " + harvestState);
+		}
+		return harvestState;
+	}
+
+
+	/**
+	 * Checks if a record must be passed to the handler.
+	 * 
+	 * @param previous	the HarvestedRecord of the last harvest or null if the record is new
+	 * @param current	the HarvestedRecord of this harvest
+	 */
+	private boolean isChanged(HarvestedRecord previous, HarvestedRecord current) {
+		if (previous == null || previous.isDeleted() != current.isDeleted()) {
+			return true;
+		}
+		if (current.isDeleted()) {
+			// Deleted before and still deleted
+			return false;
+		}
+		if (previous.getContentHash() != null && current.getContentHash() != null) {
+			return !previous.getContentHash().equals(current.getContentHash());
+		}
+		return !equals(previous.getDatestamp(), current.getDatestamp());
+	}
+
+
+	private boolean isDayGranularity(String date) {
+		return date != null && date.length() == 10;
+	}
+
+
+	private String getCurrentDate() {
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return dateFormat.format(new Date());
+	}
+
+
+	private static boolean equals(String value1, String value2) {
+		return (value1 == null) ? value2 == null : value1.equals(value2);
+	}
+
+
+	public OaiHarvester getOaiHarvester() {
+		return oaiHarvester;
+	}
+
+	public File getStateFile() {
+		return stateFile;
+	}
+
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+	/**
+	 * Sets after how many responses the state file is saved during a harvest. Default is 1 (after every response). Saving takes longer the more records
+	 * are in the state, so use a higher value for very large harvests.
+	 * 
+	 * @param checkpointInterval	the number of responses
+	 */
+	public void setCheckpointInterval(int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+
+}
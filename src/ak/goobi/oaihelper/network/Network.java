@@ -16,29 +16,73 @@
 
 package ak.goobi.oaihelper.network;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.net.URL;
-import java.net.URLConnection;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.TransformerException;
 
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import ak.goobi.oaihelper.cache.CachedRecord;
+import ak.goobi.oaihelper.cache.MetsRecordCache;
+import ak.goobi.oaihelper.cache.VolumeCache;
+import ak.goobi.oaihelper.classes.MetsIndex;
+import ak.goobi.oaihelper.metrics.MetricNames;
+import ak.goobi.oaihelper.metrics.Metrics;
+import ak.goobi.oaihelper.parsers.DocumentBuilderPool;
+import ak.goobi.oaihelper.parsers.MetsStreamParser;
+import ak.goobi.oaihelper.parsers.OaiResponseParser;
+import ak.goobi.oaihelper.parsers.ParseProfile;
+
 
 /**
  * This class provides methods to get the METS-XML document from an OAI-PMH interface.
  * 
+ * The Documents are parsed namespace aware by default, so XPath expressions on them must use the prefixes of MetsNamespaceContext (e. g.
+ * "//mets:structMap//mets:div" instead of "//mets/structMap//div"). Call setNamespaceAware(false) for code that uses XPath expressions without prefixes.
+ * 
  * @author Michael Birkner
  */
 public class Network {
 
-	
+	private HttpClient httpClient;
+	private MetsRecordCache metsRecordCache;
+	private volatile VolumeCache<MetsIndex> volumeCache;
+	private volatile VolumeCache<Document> documentCache;
+	private volatile DocumentBuilderPool documentBuilderPool = new DocumentBuilderPool();
+	private MetsStreamParser metsStreamParser = new MetsStreamParser();
+	private OaiResponseParser oaiResponseParser = new OaiResponseParser();
+	private volatile ParseProfile parseProfile = ParseProfile.COMPLETE;
+	private volatile Metrics metrics = Metrics.NONE;
+
+	public Network() {
+		this(new HttpClient());
+	}
+
+	/**
+	 * @param httpClient	an HttpClient with the timeouts, retries and connection limits for the requests to the OAI-PMH interface
+	 */
+	public Network(HttpClient httpClient) {
+		this.httpClient = httpClient;
+	}
+
 	/**
 	 * Gets a METS-XML Document from an OAI-PMH interface. It uses the "GetRecord" command of OAI (further information: http://www.openarchives.org/OAI/openarchivesprotocol.html#GetRecord).
+	 * The Document is parsed namespace aware without loading external DTDs or entities (see DocumentBuilderPool and setNamespaceAware(boolean)).
 	 *  
 	 * @param oaiPmh							a String of the URL to the OAI-PMH interface, without the part which begins with "?verb=GetRecord...", but with an ending slash (e. g. http://example.com/viewer/oai/)
 	 * @param id								a String of the identifier of an individual record which is available over the OAI-PMH interface
@@ -49,13 +93,438 @@ public class Network {
 	 * @throws TransformerException
 	 */
 	public Document getMetsXmlRecord(String oaiPmh, String id) throws IOException, ParserConfigurationException, SAXException, TransformerException {
-		URL uUrl = new URL(oaiPmh+"?verb=GetRecord&metadataPrefix=mets&identifier="+id);
-		URLConnection conn = uUrl.openConnection();
-
-		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-		DocumentBuilder db = dbf.newDocumentBuilder();
-		Document document = db.parse(conn.getInputStream());
-		
-		return document;
+		return getMetsXmlRecord(oaiPmh, id, null);
+	}
+
+
+	/**
+	 * Gets a METS-XML Document from an OAI-PMH interface (see getMetsXmlRecord(String, String)). If a MetsRecordCache is set and it contains the record
+	 * with the given datestamp, the record is read from the cache without a request to the OAI-PMH interface. If a document cache is set (see
+	 * setDocumentCache()), a parsed Document is returned from memory.
+	 * 
+	 * @param oaiPmh							a String of the URL to the OAI-PMH interface, without the part which begins with "?verb=GetRecord...", but with an ending slash (e. g. http://example.com/viewer/oai/)
+	 * @param id								a String of the identifier of an individual record which is available over the OAI-PMH interface
+	 * @param datestamp							a String with the current datestamp of the record, e. g. from the header of a ListIdentifiers response, or null if it is unknown
+	 * @return									a Document of the record as METS-XML
+	 * @throws IOException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws TransformerException
+	 */
+	public Document getMetsXmlRecord(final String oaiPmh, final String id, final String datestamp) throws IOException, ParserConfigurationException, SAXException, TransformerException {
+		VolumeCache<Document> cache = getActiveDocumentCache();
+		if (cache == null) {
+			return loadMetsXmlRecord(oaiPmh, id, datestamp);
+		}
+		try {
+			return cache.get(oaiPmh, id, new Callable<Document>() {
+				@Override
+				public Document call() throws Exception {
+					return loadMetsXmlRecord(oaiPmh, id, datestamp);
+				}
+			});
+		} catch (IOException | ParserConfigurationException | SAXException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	private Document loadMetsXmlRecord(String oaiPmh, String id, String datestamp) throws IOException, ParserConfigurationException, SAXException {
+		boolean success = false;
+		try {
+			InputStream inputStream = openRecord(oaiPmh, id, datestamp);
+			try {
+				Document document = parseDocument(inputStream);
+				success = true;
+				return document;
+			} finally {
+				inputStream.close();
+			}
+		} finally {
+			countRecord(success);
+		}
+	}
+
+
+	/**
+	 * Gets the index of a METS-XML record from an OAI-PMH interface (see getMetsXmlRecord()). Other than getMetsXmlRecord(), the response is read once with
+	 * a streaming parser and no DOM Document is built, so the memory footprint depends on the structural metadata of the record and not on the size of the
+	 * whole METS-XML. Use the returned MetsIndex with the methods of GoobiOaiHelper that take a MetsIndex.
+	 * 
+	 * @param oaiPmh							a String of the URL to the OAI-PMH interface, without the part which begins with "?verb=GetRecord...", but with an ending slash (e. g. http://example.com/viewer/oai/)
+	 * @param id								a String of the identifier of an individual record which is available over the OAI-PMH interface
+	 * @return									a MetsIndex of the record
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public MetsIndex getMetsIndex(String oaiPmh, String id) throws IOException, XMLStreamException {
+		return getMetsIndex(oaiPmh, id, null);
+	}
+
+
+	/**
+	 * Gets the index of a METS-XML record from an OAI-PMH interface (see getMetsIndex(String, String)). If a MetsRecordCache is set and it contains the
+	 * record with the given datestamp, the record is read from the cache without a request to the OAI-PMH interface. If a VolumeCache is set (see
+	 * setVolumeCache()), a parsed MetsIndex is returned from memory.
+	 * 
+	 * @param oaiPmh							a String of the URL to the OAI-PMH interface, without the part which begins with "?verb=GetRecord...", but with an ending slash (e. g. http://example.com/viewer/oai/)
+	 * @param id								a String of the identifier of an individual record which is available over the OAI-PMH interface
+	 * @param datestamp							a String with the current datestamp of the record, e. g. from the header of a ListIdentifiers response, or null if it is unknown
+	 * @return									a MetsIndex of the record
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public MetsIndex getMetsIndex(final String oaiPmh, final String id, final String datestamp) throws IOException, XMLStreamException {
+		VolumeCache<MetsIndex> cache = getActiveVolumeCache();
+		if (cache == null) {
+			return loadMetsIndex(oaiPmh, id, datestamp);
+		}
+		try {
+			return cache.get(oaiPmh, id, new Callable<MetsIndex>() {
+				@Override
+				public MetsIndex call() throws Exception {
+					return loadMetsIndex(oaiPmh, id, datestamp);
+				}
+			});
+		} catch (IOException | XMLStreamException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	private MetsIndex loadMetsIndex(String oaiPmh, String id, String datestamp) throws IOException, XMLStreamException {
+		boolean success = false;
+		try {
+			InputStream inputStream = openRecord(oaiPmh, id, datestamp);
+			try {
+				MetsIndex metsIndex = parseMetsIndex(inputStream);
+				success = true;
+				return metsIndex;
+			} finally {
+				inputStream.close();
+			}
+		} finally {
+			countRecord(success);
+		}
+	}
+
+
+	/**
+	 * Downloads the XML of a GetRecord response completely (or reads it from the cache), without parsing it. Used by AsyncNetwork to separate the
+	 * download from the parsing.
+	 */
+	byte[] getRecordXml(String oaiPmh, String id, String datestamp) throws IOException {
+		boolean success = false;
+		try {
+			InputStream inputStream = openRecord(oaiPmh, id, datestamp);
+			try {
+				ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int length;
+				while ((length = inputStream.read(buffer)) != -1) {
+					byteArrayOutputStream.write(buffer, 0, length);
+				}
+				success = true;
+				return byteArrayOutputStream.toByteArray();
+			} finally {
+				inputStream.close();
+			}
+		} finally {
+			countRecord(success);
+		}
+	}
+
+
+	/**
+	 * Parses a record to a Document. If the InputStream is the body of a response, the recorded time includes the download.
+	 */
+	Document parseDocument(InputStream inputStream) throws IOException, ParserConfigurationException, SAXException {
+		long start = System.nanoTime();
+		try {
+			return documentBuilderPool.parse(inputStream, parseProfile);
+		} finally {
+			metrics.time(MetricNames.PARSE_DOCUMENT, System.nanoTime() - start);
+		}
+	}
+
+
+	/**
+	 * Parses a record to a MetsIndex. If the InputStream is the body of a response, the recorded time includes the download.
+	 */
+	MetsIndex parseMetsIndex(InputStream inputStream) throws XMLStreamException {
+		long start = System.nanoTime();
+		try {
+			return metsStreamParser.parse(inputStream, parseProfile);
+		} finally {
+			metrics.time(MetricNames.PARSE_INDEX, System.nanoTime() - start);
+		}
+	}
+
+
+	private void countRecord(boolean success) {
+		metrics.count(success ? MetricNames.NETWORK_RECORDS : MetricNames.NETWORK_ERRORS, 1);
+	}
+
+
+	/**
+	 * Gets the HttpClient that is used for the requests.
+	 * 
+	 * @return	an HttpClient
+	 */
+	public HttpClient getHttpClient() {
+		return httpClient;
+	}
+
+
+	/**
+	 * Gets the MetsRecordCache that is used for the records.
+	 * 
+	 * @return	a MetsRecordCache or null if no cache is used
+	 */
+	public MetsRecordCache getMetsRecordCache() {
+		return metsRecordCache;
+	}
+
+
+	/**
+	 * Sets a MetsRecordCache for the records. A cached record is used without a request if the caller passes the datestamp of the record and it equals
+	 * the datestamp of the cached record. Otherwise the record is requested with an "If-Modified-Since" header (the "Last-Modified" date of the cached
+	 * response or the datestamp of the cached record) and the cached record is used if the server answers with 304 (not modified). New and changed
+	 * records are put into the cache.
+	 * 
+	 * @param metsRecordCache	a MetsRecordCache or null for no cache
+	 */
+	public void setMetsRecordCache(MetsRecordCache metsRecordCache) {
+		this.metsRecordCache = metsRecordCache;
+	}
+
+
+	/**
+	 * Gets the VolumeCache that is used for the results of getMetsIndex().
+	 * 
+	 * @return	a VolumeCache or null if no cache is used
+	 */
+	public VolumeCache<MetsIndex> getVolumeCache() {
+		return volumeCache;
+	}
+
+
+	/**
+	 * Sets a VolumeCache for the results of getMetsIndex(), so a record that is requested again before it expires is neither downloaded nor parsed again.
+	 * Concurrent requests for the same record are served by one download, also if they come from an AsyncNetwork with this Network. The cache may be shared
+	 * by several Networks; use Weighers.METS_INDEX for its weigher. A record from the cache is returned even if the caller passes a newer datestamp, until
+	 * it expires. The cache is only used while the ParseProfile is ParseProfile.COMPLETE, because it does not know with which profile a record was parsed.
+	 * 
+	 * @param volumeCache	a VolumeCache or null for no cache
+	 */
+	public void setVolumeCache(VolumeCache<MetsIndex> volumeCache) {
+		this.volumeCache = volumeCache;
+	}
+
+
+	/**
+	 * Gets the VolumeCache that is used for the results of getMetsXmlRecord().
+	 * 
+	 * @return	a VolumeCache or null if no cache is used
+	 */
+	public VolumeCache<Document> getDocumentCache() {
+		return documentCache;
+	}
+
+
+	/**
+	 * Sets a VolumeCache for the results of getMetsXmlRecord() (see setVolumeCache()). Use Weighers.DOCUMENT for its weigher. The cached Documents are
+	 * shared between all threads, so they must not be changed; the methods of GoobiOaiHelper only read them and lock a Document while they read it.
+	 * Other code that reads a cached Document must synchronize on it as well, because a DOM is not thread-safe even for reading.
+	 * 
+	 * @param documentCache	a VolumeCache or null for no cache
+	 */
+	public void setDocumentCache(VolumeCache<Document> documentCache) {
+		this.documentCache = documentCache;
+	}
+
+
+	/**
+	 * Gets the VolumeCache for getMetsIndex() if it can be used with the current ParseProfile. A record in the cache may have been parsed by another
+	 * Network with another profile, so only complete records are cached.
+	 * 
+	 * @return	a VolumeCache or null if the records must not be cached
+	 */
+	VolumeCache<MetsIndex> getActiveVolumeCache() {
+		return parseProfile.isComplete() ? volumeCache : null;
+	}
+
+
+	/**
+	 * Gets the VolumeCache for getMetsXmlRecord() if it can be used with the current ParseProfile (see getActiveVolumeCache()).
+	 * 
+	 * @return	a VolumeCache or null if the records must not be cached
+	 */
+	VolumeCache<Document> getActiveDocumentCache() {
+		return parseProfile.isComplete() ? documentCache : null;
+	}
+
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+
+	/**
+	 * Sets the Metrics that receive the measurements of this Network and of its HttpClient: the number of records and errors, the hits of the
+	 * MetsRecordCache and the time for parsing the records (see MetricNames). Default is Metrics.NONE.
+	 * 
+	 * @param metrics	a Metrics, e. g. a JmxMetrics or a LogMetrics
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = (metrics != null) ? metrics : Metrics.NONE;
+		httpClient.setMetrics(metrics);
+	}
+
+
+	public ParseProfile getParseProfile() {
+		return parseProfile;
+	}
+
+
+	/**
+	 * Sets the sections of the METS-XML records that are parsed by getMetsXmlRecord() and getMetsIndex(), e. g. ParseProfile.STRUCTURE for jobs that
+	 * only need the structure maps and the structure links. All other sections and the OAI-PMH envelope are skipped while reading the response, which
+	 * saves time and memory for large records. Default is ParseProfile.COMPLETE. With another profile, the
+	 * VolumeCache and the document cache are bypassed, because they only hold complete records.
+	 * 
+	 * @param parseProfile	a ParseProfile
+	 */
+	public void setParseProfile(ParseProfile parseProfile) {
+		this.parseProfile = (parseProfile != null) ? parseProfile : ParseProfile.COMPLETE;
+	}
+
+
+	public boolean isNamespaceAware() {
+		return documentBuilderPool.isNamespaceAware();
+	}
+
+
+	/**
+	 * Sets if the Documents of getMetsXmlRecord() are parsed namespace aware. Default is true, so XPath expressions must use the prefixes of
+	 * MetsNamespaceContext (e. g. "//mets:structMap//mets:div"). Set it to false for XPath expressions without prefixes (e. g. "//mets/structMap//div").
+	 * The methods of GoobiOaiHelper work with both kinds of Documents.
+	 * 
+	 * @param namespaceAware	true for namespace aware parsing
+	 */
+	public void setNamespaceAware(boolean namespaceAware) {
+		if (namespaceAware != documentBuilderPool.isNamespaceAware()) {
+			documentBuilderPool = new DocumentBuilderPool(namespaceAware, Runtime.getRuntime().availableProcessors());
+		}
+	}
+
+
+	/**
+	 * Opens the XML of a GetRecord response, from the cache if possible.
+	 */
+	private InputStream openRecord(String oaiPmh, String id, String datestamp) throws IOException {
+		if (metsRecordCache == null) {
+			return new ResponseInputStream(httpClient.get(getRecordUrl(oaiPmh, id)));
+		}
+
+		CachedRecord cachedRecord = metsRecordCache.get(oaiPmh, id);
+		if (cachedRecord != null && datestamp != null && datestamp.equals(cachedRecord.getDatestamp())) {
+			try {
+				InputStream inputStream = cachedRecord.openInputStream();
+				metrics.count(MetricNames.NETWORK_CACHE_HITS, 1);
+				return inputStream;
+			} catch (IOException e) {
+				// The record was evicted in the meantime, so download it again
+				cachedRecord = null;
+			}
+		}
+
+		Map<String, String> requestHeaders = new HashMap<String, String>();
+		if (cachedRecord != null) {
+			long modifiedSince = (cachedRecord.getLastModified() > 0) ? cachedRecord.getLastModified() : parseDatestamp(cachedRecord.getDatestamp());
+			if (modifiedSince > 0) {
+				SimpleDateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+				httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+				requestHeaders.put("If-Modified-Since", httpDateFormat.format(new Date(modifiedSince)));
+			}
+		}
+
+		HttpResponse response = httpClient.get(getRecordUrl(oaiPmh, id), requestHeaders);
+		try {
+			if (response.getStatusCode() == 304 && cachedRecord != null) {
+				metrics.count(MetricNames.NETWORK_CACHE_NOT_MODIFIED, 1);
+				return cachedRecord.openInputStream();
+			}
+			metrics.count(MetricNames.NETWORK_CACHE_MISSES, 1);
+
+			ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = response.getInputStream().read(buffer)) != -1) {
+				byteArrayOutputStream.write(buffer, 0, length);
+			}
+			byte[] xml = byteArrayOutputStream.toByteArray();
+
+			// Cache only real records, not OAI-PMH errors (e. g. "idDoesNotExist") or other invalid responses
+			String recordDatestamp = null;
+			try {
+				recordDatestamp = oaiResponseParser.parseDatestamp(new ByteArrayInputStream(xml));
+			} catch (XMLStreamException e) {
+				recordDatestamp = null;
+			}
+			if (recordDatestamp != null) {
+				metsRecordCache.put(oaiPmh, id, recordDatestamp, response.getLastModified(), xml);
+			}
+
+			return new ByteArrayInputStream(xml);
+		} finally {
+			response.close();
+		}
+	}
+
+
+	/**
+	 * Converts an OAI-PMH datestamp ("YYYY-MM-DD" or "YYYY-MM-DDThh:mm:ssZ") to milliseconds since January 1, 1970 GMT. Returns 0 if it can not be parsed.
+	 */
+	private long parseDatestamp(String datestamp) {
+		if (datestamp == null) {
+			return 0;
+		}
+		String pattern = (datestamp.length() > 10) ? "yyyy-MM-dd'T'HH:mm:ss'Z'" : "yyyy-MM-dd";
+		SimpleDateFormat datestampFormat = new SimpleDateFormat(pattern, Locale.US);
+		datestampFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		try {
+			return datestampFormat.parse(datestamp).getTime();
+		} catch (ParseException e) {
+			return 0;
+		}
+	}
+
+
+	private String getRecordUrl(String oaiPmh, String id) {
+		return oaiPmh+"?verb=GetRecord&metadataPrefix=mets&identifier="+id;
+	}
+
+
+	/**
+	 * Closes the HttpResponse when the InputStream of its body is closed.
+	 */
+	private static class ResponseInputStream extends FilterInputStream {
+
+		private HttpResponse response;
+
+		ResponseInputStream(HttpResponse response) {
+			super(response.getInputStream());
+			this.response = response;
+		}
+
+		@Override
+		public void close() throws IOException {
+			response.close();
+		}
 	}
 }
@@ -0,0 +1,531 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.stream.XMLStreamException;
+
+import ak.goobi.oaihelper.classes.OaiRecord;
+import ak.goobi.oaihelper.classes.OaiResponse;
+import ak.goobi.oaihelper.metrics.MetricNames;
+import ak.goobi.oaihelper.metrics.Metrics;
+import ak.goobi.oaihelper.parsers.OaiResponseParser;
+import ak.goobi.oaihelper.parsers.ParseProfile;
+
+/**
+ * This class harvests many records from an OAI-PMH interface with the verbs "ListRecords" or "ListIdentifiers" (further information:
+ * http://www.openarchives.org/OAI/openarchivesprotocol.html#ListRecords). Resumption tokens are followed until the list is complete. Selective
+ * harvesting is possible with from, until and set.
+ * 
+ * The harvest is a pipeline of three stages. A download thread requests the responses and stays one response ahead: it reads only the resumption token
+ * of a response (skipping the metadata) and requests the next part of the list at once. The calling thread indexes the METS-XML of the records of the
+ * downloaded responses (see OaiResponseParser) and hands the records to a bounded pool of worker threads that call the OaiRecordHandler. So network
+ * wait, parsing and processing overlap. If all workers are busy and the queue is full, the calling thread waits for space in the queue.
+ * 
+ * An OaiPageListener is notified when all records of a response were processed, so the resumption token can be saved and an interrupted harvest can be
+ * continued later with setResumptionToken(String).
+ * 
+ * @author Michael Birkner
+ */
+public class OaiHarvester {
+
+	private String oaiPmh;
+	private String metadataPrefix = "mets";
+	private String from;
+	private String until;
+	private String set;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int queueSize = 200;
+	private String resumptionToken;
+	private OaiPageListener pageListener;
+	private HttpClient httpClient;
+	private OaiResponseParser oaiResponseParser = new OaiResponseParser();
+	private volatile Metrics metrics = Metrics.NONE;
+
+	/**
+	 * @param oaiPmh	a String of the URL to the OAI-PMH interface with an ending slash (e. g. http://example.com/viewer/oai/)
+	 */
+	public OaiHarvester(String oaiPmh) {
+		this(oaiPmh, new HttpClient());
+	}
+
+	/**
+	 * @param oaiPmh		a String of the URL to the OAI-PMH interface with an ending slash (e. g. http://example.com/viewer/oai/)
+	 * @param httpClient	an HttpClient with the timeouts, retries and connection limits for the requests to the OAI-PMH interface
+	 */
+	public OaiHarvester(String oaiPmh, HttpClient httpClient) {
+		this.oaiPmh = oaiPmh;
+		this.httpClient = httpClient;
+	}
+
+
+	/**
+	 * Harvests all records with the verb "ListRecords" and passes each record with the index of its METS-XML to the handler.
+	 * 
+	 * @param handler		an OaiRecordHandler that processes the records
+	 * @return				the number of harvested records (including deleted records)
+	 * @throws Exception	if a request or the parsing of a response fails, if the OAI-PMH interface returns an error other than "noRecordsMatch" (OaiPmhException) or if the handler throws an exception
+	 */
+	public int listRecords(OaiRecordHandler handler) throws Exception {
+		return harvest("ListRecords", handler);
+	}
+
+
+	/**
+	 * Harvests the headers of all records with the verb "ListIdentifiers" and passes each header to the handler. The records passed to the handler have no MetsIndex.
+	 * 
+	 * @param handler		an OaiRecordHandler that processes the records
+	 * @return				the number of harvested headers (including deleted records)
+	 * @throws Exception	if a request or the parsing of a response fails, if the OAI-PMH interface returns an error other than "noRecordsMatch" (OaiPmhException) or if the handler throws an exception
+	 */
+	public int listIdentifiers(OaiRecordHandler handler) throws Exception {
+		return harvest("ListIdentifiers", handler);
+	}
+
+
+	private int harvest(String verb, final OaiRecordHandler handler) throws Exception {
+		int noOfRecords = 0;
+		final AtomicReference<Exception> handlerException = new AtomicReference<Exception>();
+		final PageTracker pageTracker = new PageTracker(pageListener, handlerException);
+		final Metrics metrics = this.metrics;
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), WAIT_FOR_SPACE);
+		PageFetcher pageFetcher = new PageFetcher(verb, this.resumptionToken);
+
+		try {
+			String resumptionToken;
+			do {
+				byte[] xml = pageFetcher.next();
+				if (xml == null) {
+					break;
+				}
+				long start = System.nanoTime();
+				OaiResponse oaiResponse = oaiResponseParser.parse(new ByteArrayInputStream(xml));
+				metrics.time(MetricNames.HARVEST_PARSE, System.nanoTime() - start);
+
+				if (oaiResponse.getErrorCode() != null) {
+					// "noRecordsMatch" is not an error for us, there are just no records for the given arguments
+					if ("noRecordsMatch".equals(oaiResponse.getErrorCode())) {
+						pageTracker.pageCompleted(pageTracker.addPage(oaiResponse, 0));
+						break;
+					}
+					throw new OaiPmhException(oaiResponse.getErrorCode(), oaiResponse.getErrorMessage());
+				}
+
+				final Page page = pageTracker.addPage(oaiResponse, oaiResponse.getRecords().size());
+				for (final OaiRecord record : oaiResponse.getRecords()) {
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								// Skip the remaining records after the first failure
+								if (handlerException.get() == null) {
+									long start = System.nanoTime();
+									handler.handleRecord(record);
+									metrics.time(MetricNames.HARVEST_HANDLER, System.nanoTime() - start);
+									metrics.count(MetricNames.HARVEST_RECORDS, 1);
+								}
+							} catch (Exception e) {
+								metrics.count(MetricNames.HARVEST_ERRORS, 1);
+								handlerException.compareAndSet(null, e);
+							} finally {
+								pageTracker.recordCompleted(page);
+							}
+						}
+					});
+					noOfRecords++;
+				}
+				pageTracker.pageCompleted(page);
+
+				resumptionToken = oaiResponse.getResumptionToken();
+			} while (resumptionToken != null && handlerException.get() == null);
+		} finally {
+			pageFetcher.close();
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+
+		if (handlerException.get() != null) {
+			throw handlerException.get();
+		}
+		return noOfRecords;
+	}
+
+
+	/**
+	 * Puts a record into the queue of the workers and waits if the queue is full, so the parsing thread never runs the handler itself.
+	 */
+	private static final RejectedExecutionHandler WAIT_FOR_SPACE = new RejectedExecutionHandler() {
+		@Override
+		public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+			try {
+				executor.getQueue().put(runnable);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting for a worker", e);
+			}
+		}
+	};
+
+
+	/**
+	 * Downloads the responses of a list in its own thread, one response ahead of the parsing thread. The resumption token of a response is read with a
+	 * fast pass that skips the metadata, so the next part of the list is requested while the records of the current part are indexed.
+	 */
+	private class PageFetcher implements Runnable {
+
+		private final String verb;
+		private final String resumptionToken;
+		// Hands over one response at a time, so at most one response is downloaded ahead
+		private final SynchronousQueue<Object> responses = new SynchronousQueue<Object>();
+		private final Thread thread;
+		private volatile boolean closed = false;
+
+		private PageFetcher(String verb, String resumptionToken) {
+			this.verb = verb;
+			this.resumptionToken = resumptionToken;
+			thread = new Thread(this, "GoobiOaiHelper-harvest-download");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public void run() {
+			String token = resumptionToken;
+			try {
+				try {
+					do {
+						byte[] xml = download(getListUrl(verb, token));
+						token = oaiResponseParser.parseResumptionToken(new ByteArrayInputStream(xml));
+						responses.put(xml);
+					} while (token != null && !closed);
+					responses.put(END_OF_LIST);
+				} catch (InterruptedException e) {
+					throw e;
+				} catch (Exception e) {
+					responses.put(e);
+				}
+			} catch (InterruptedException e) {
+				// The harvest was finished or stopped by the parsing thread
+			}
+		}
+
+		/**
+		 * Gets the XML of the next response or null if the list is complete.
+		 */
+		private byte[] next() throws Exception {
+			Object response = responses.take();
+			if (response instanceof Exception) {
+				throw (Exception) response;
+			}
+			return (response != END_OF_LIST) ? (byte[]) response : null;
+		}
+
+		private void close() {
+			closed = true;
+			thread.interrupt();
+		}
+
+		private byte[] download(String url) throws IOException {
+			long start = System.nanoTime();
+			HttpResponse response = httpClient.get(url);
+			try {
+				ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int length;
+				while ((length = response.getInputStream().read(buffer)) != -1) {
+					byteArrayOutputStream.write(buffer, 0, length);
+				}
+				return byteArrayOutputStream.toByteArray();
+			} finally {
+				response.close();
+				metrics.time(MetricNames.HARVEST_RESPONSE, System.nanoTime() - start);
+				metrics.count(MetricNames.HARVEST_RESPONSES, 1);
+			}
+		}
+
+	}
+
+	private static final Object END_OF_LIST = new Object();
+
+
+	/**
+	 * One response of a list and the number of its records that were not processed yet.
+	 */
+	private static class Page {
+		private OaiResponse oaiResponse;
+		private int pending;
+		private boolean complete;
+	}
+
+
+	/**
+	 * Notifies the OaiPageListener of the pages in the order of the responses when all of their records were processed.
+	 */
+	private static class PageTracker {
+
+		private OaiPageListener pageListener;
+		private AtomicReference<Exception> handlerException;
+		private Deque<Page> pages = new ArrayDeque<Page>();
+
+		private PageTracker(OaiPageListener pageListener, AtomicReference<Exception> handlerException) {
+			this.pageListener = pageListener;
+			this.handlerException = handlerException;
+		}
+
+		private synchronized Page addPage(OaiResponse oaiResponse, int noOfRecords) {
+			Page page = new Page();
+			page.oaiResponse = oaiResponse;
+			page.pending = noOfRecords;
+			if (pageListener != null) {
+				pages.addLast(page);
+			}
+			return page;
+		}
+
+		/**
+		 * Is called when all records of the page were passed to the worker threads.
+		 */
+		private synchronized void pageCompleted(Page page) {
+			page.complete = true;
+			notifyListener();
+		}
+
+		private synchronized void recordCompleted(Page page) {
+			page.pending--;
+			notifyListener();
+		}
+
+		private void notifyListener() {
+			while (!pages.isEmpty() && pages.peekFirst().complete && pages.peekFirst().pending == 0 && handlerException.get() == null) {
+				try {
+					pageListener.pageCompleted(pages.removeFirst().oaiResponse);
+				} catch (Exception e) {
+					handlerException.compareAndSet(null, e);
+				}
+			}
+		}
+
+	}
+
+
+	/**
+	 * Requests one page of a list with the arguments of this harvester or with a resumption token. Used by HarvestScheduler to request the pages itself.
+	 */
+	OaiResponse getListPage(String verb, String resumptionToken) throws IOException, XMLStreamException {
+		return getOaiResponse(getListUrl(verb, resumptionToken));
+	}
+
+
+	/**
+	 * Gets the URL for the first request of a list (with metadataPrefix, from, until and set) or for a following request (with the resumption token only).
+	 */
+	private String getListUrl(String verb, String resumptionToken) throws UnsupportedEncodingException {
+		StringBuilder url = new StringBuilder(oaiPmh).append("?verb=").append(verb);
+		if (resumptionToken != null) {
+			url.append("&resumptionToken=").append(URLEncoder.encode(resumptionToken, "UTF-8"));
+		} else {
+			url.append("&metadataPrefix=").append(URLEncoder.encode(metadataPrefix, "UTF-8"));
+			if (from != null) {
+				url.append("&from=").append(URLEncoder.encode(from, "UTF-8"));
+			}
+			if (until != null) {
+				url.append("&until=").append(URLEncoder.encode(until, "UTF-8"));
+			}
+			if (set != null) {
+				url.append("&set=").append(URLEncoder.encode(set, "UTF-8"));
+			}
+		}
+		return url.toString();
+	}
+
+
+	/**
+	 * Calculate a hash of the metadata of each record (see OaiRecord.getContentHash()). Default is false.
+	 * 
+	 * @param contentHash	true if a hash should be calculated
+	 */
+	public void setContentHash(boolean contentHash) {
+		oaiResponseParser.setContentHash(contentHash);
+	}
+
+	public boolean isContentHash() {
+		return oaiResponseParser.isContentHash();
+	}
+
+
+	/**
+	 * Sets the sections of the METS-XML of the records that are indexed, e. g. ParseProfile.STRUCTURE if the handler does not need the MODS sections
+	 * (see MetsStreamParser.parse(InputStream, ParseProfile)). Default is ParseProfile.COMPLETE.
+	 * 
+	 * @param parseProfile	a ParseProfile
+	 */
+	public void setParseProfile(ParseProfile parseProfile) {
+		oaiResponseParser.setParseProfile(parseProfile);
+	}
+
+	public ParseProfile getParseProfile() {
+		return oaiResponseParser.getParseProfile();
+	}
+
+
+	private OaiResponse getOaiResponse(String url) throws IOException, XMLStreamException {
+		long start = System.nanoTime();
+		HttpResponse response = httpClient.get(url);
+		try {
+			return oaiResponseParser.parse(response.getInputStream());
+		} finally {
+			response.close();
+			metrics.time(MetricNames.HARVEST_RESPONSE, System.nanoTime() - start);
+			metrics.count(MetricNames.HARVEST_RESPONSES, 1);
+		}
+	}
+
+
+	public String getOaiPmh() {
+		return oaiPmh;
+	}
+
+	public HttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	public String getMetadataPrefix() {
+		return metadataPrefix;
+	}
+	/**
+	 * Sets the metadata prefix of the requests. Default is "mets". Only METS-XML metadata is indexed, records in other formats have an empty MetsIndex.
+	 * 
+	 * @param metadataPrefix	a String with the metadata prefix
+	 */
+	public void setMetadataPrefix(String metadataPrefix) {
+		this.metadataPrefix = metadataPrefix;
+	}
+
+	public String getFrom() {
+		return from;
+	}
+	/**
+	 * Harvest only records that were changed on or after this date.
+	 * 
+	 * @param from	a String with a date in the format of the OAI-PMH interface (e. g. "2016-01-31" or "2016-01-31T12:00:00Z") or null for no lower limit
+	 */
+	public void setFrom(String from) {
+		this.from = from;
+	}
+
+	public String getUntil() {
+		return until;
+	}
+	/**
+	 * Harvest only records that were changed on or before this date.
+	 * 
+	 * @param until	a String with a date in the format of the OAI-PMH interface (e. g. "2016-01-31" or "2016-01-31T12:00:00Z") or null for no upper limit
+	 */
+	public void setUntil(String until) {
+		this.until = until;
+	}
+
+	public String getSet() {
+		return set;
+	}
+	/**
+	 * Harvest only records of this set.
+	 * 
+	 * @param set	a String with the setSpec of a set of the OAI-PMH interface or null for all records
+	 */
+	public void setSet(String set) {
+		this.set = set;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+	/**
+	 * Sets the number of worker threads that call the OaiRecordHandler. Default is the number of available processors.
+	 * 
+	 * @param threads	the number of worker threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public String getResumptionToken() {
+		return resumptionToken;
+	}
+	/**
+	 * Continues a harvest with this resumption token instead of starting a new list, e. g. with the token that was saved by an OaiPageListener before
+	 * the harvest was interrupted. The metadata prefix, from, until and set are part of the token and are not sent.
+	 * 
+	 * @param resumptionToken	a String with a resumption token or null to start a new list
+	 */
+	public void setResumptionToken(String resumptionToken) {
+		this.resumptionToken = resumptionToken;
+	}
+
+	public OaiPageListener getPageListener() {
+		return pageListener;
+	}
+	/**
+	 * Sets a listener that is notified when all records of a response were processed.
+	 * 
+	 * @param pageListener	an OaiPageListener or null for no listener
+	 */
+	public void setPageListener(OaiPageListener pageListener) {
+		this.pageListener = pageListener;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+	/**
+	 * Sets the Metrics that receive the measurements of the harvest and of the HttpClient: the number of responses, records and handler errors, the
+	 * time for requesting and parsing a response and the time of the handler for a record (see MetricNames). Default is Metrics.NONE.
+	 * 
+	 * @param metrics	a Metrics, e. g. a JmxMetrics or a LogMetrics
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = (metrics != null) ? metrics : Metrics.NONE;
+		httpClient.setMetrics(metrics);
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+	/**
+	 * Sets the number of records that may wait for a free worker thread. Default is 200.
+	 * 
+	 * @param queueSize	the size of the queue
+	 */
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+}
@@ -0,0 +1,37 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import ak.goobi.oaihelper.classes.OaiResponse;
+
+/**
+ * A listener that is notified by OaiHarvester when all records of one part of a list were processed, e. g. to save the resumption token as a checkpoint.
+ * 
+ * @author Michael Birkner
+ */
+public interface OaiPageListener {
+
+	/**
+	 * Is called when the OaiRecordHandler has processed all records of a response and of all responses before it. The calls are made in the order of
+	 * the responses, one at a time, but not necessarily by the same thread. If the handler throws an exception, this method is not called anymore.
+	 * 
+	 * @param oaiResponse	the OaiResponse. Its resumption token is the token for the next part of the list or null if the list is complete.
+	 * @throws Exception	stops the harvesting. The exception is thrown by OaiHarvester.
+	 */
+	public void pageCompleted(OaiResponse oaiResponse) throws Exception;
+
+}
@@ -0,0 +1,41 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import java.io.IOException;
+
+/**
+ * This exception is thrown if an OAI-PMH interface answers with an error (see element <error>), e. g. "badResumptionToken" if a resumption token
+ * has expired.
+ * 
+ * @author Michael Birkner
+ */
+public class OaiPmhException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+	private String errorCode;
+
+	public OaiPmhException(String errorCode, String errorMessage) {
+		super("OAI-PMH error \"" + errorCode + "\": " + errorMessage);
+		this.errorCode = errorCode;
+	}
+
+	public String getErrorCode() {
+		return errorCode;
+	}
+
+}
@@ -0,0 +1,36 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.network;
+
+import ak.goobi.oaihelper.classes.OaiRecord;
+
+/**
+ * Implement this interface to process the records that are harvested by OaiHarvester.
+ * 
+ * @author Michael Birkner
+ */
+public interface OaiRecordHandler {
+
+	/**
+	 * Processes one harvested record. This method is called from the worker threads of the OaiHarvester, so implementations must be thread-safe.
+	 * 
+	 * @param record		an OaiRecord. Deleted records and records of ListIdentifiers have no MetsIndex.
+	 * @throws Exception	stops the harvest. The exception is thrown by the harvest method of the OaiHarvester.
+	 */
+	public void handleRecord(OaiRecord record) throws Exception;
+
+}
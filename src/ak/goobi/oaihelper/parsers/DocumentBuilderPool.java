@@ -0,0 +1,203 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * This class parses XML documents into DOM Documents with a pool of reusable DocumentBuilders. The DocumentBuilderFactory is looked up and configured
+ * only once, and a DocumentBuilder is reset and reused after each document instead of being created for every document.
+ * 
+ * The parsers are configured for METS-XML from OAI-PMH interfaces that are not fully trusted:
+ * <ul>
+ * <li>External DTDs and external entities are never loaded, so a record that references a DTD on another server causes no extra request and no
+ * information can be read from local files (XXE). Secure processing limits the expansion of internal entities.</li>
+ * <li>Deferred node expansion is turned off. The Documents are usually traversed completely (e. g. by MetsIndexer), and a fully expanded Document
+ * can be read by many threads at the same time.</li>
+ * <li>Parsing is namespace aware by default, so the prefixes of METS, MODS and XLink resolve (see MetsNamespaceContext).</li>
+ * </ul>
+ * 
+ * A ParseProfile builds a Document of the needed sections of a METS-XML document only (see parse(InputStream, ParseProfile)).
+ * 
+ * A DocumentBuilderPool can be used by many threads at the same time.
+ * 
+ * @author Michael Birkner
+ */
+public class DocumentBuilderPool {
+
+	private final DocumentBuilderFactory documentBuilderFactory;
+	private final boolean namespaceAware;
+	private final BlockingQueue<DocumentBuilder> idleBuilders;
+	private final PartialDocumentReader partialDocumentReader = new PartialDocumentReader();
+
+
+	/**
+	 * Creates a namespace aware pool that keeps up to one idle DocumentBuilder per available processor.
+	 */
+	public DocumentBuilderPool() {
+		this(true, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param namespaceAware	true for namespace aware parsing. Use false only for XPath expressions without prefixes, e. g. "//mets/structMap".
+	 * @param maxIdle			the maximum number of idle DocumentBuilders that are kept for reuse
+	 */
+	public DocumentBuilderPool(boolean namespaceAware, int maxIdle) {
+		this.namespaceAware = namespaceAware;
+		this.idleBuilders = new ArrayBlockingQueue<DocumentBuilder>(Math.max(1, maxIdle));
+		this.documentBuilderFactory = createDocumentBuilderFactory(namespaceAware);
+	}
+
+
+	/**
+	 * Parses an XML document. The InputStream is not closed.
+	 * 
+	 * @param inputStream						an InputStream of the XML document
+	 * @return									a Document
+	 * @throws IOException
+	 * @throws SAXException						if the XML is not well-formed
+	 * @throws ParserConfigurationException		if no DocumentBuilder can be created
+	 */
+	public Document parse(InputStream inputStream) throws IOException, SAXException, ParserConfigurationException {
+		DocumentBuilder documentBuilder = idleBuilders.poll();
+		if (documentBuilder == null) {
+			documentBuilder = createDocumentBuilder();
+		}
+		try {
+			return documentBuilder.parse(inputStream);
+		} finally {
+			documentBuilder.reset();
+			// reset() removes the EntityResolver
+			documentBuilder.setEntityResolver(NO_EXTERNAL_ENTITIES);
+			idleBuilders.offer(documentBuilder);
+		}
+	}
+
+
+	/**
+	 * Parses the sections of a METS-XML document that a ParseProfile selects (see PartialDocumentReader). With ParseProfile.COMPLETE, this is the same
+	 * as parse(InputStream). The InputStream is not closed.
+	 * 
+	 * @param inputStream						an InputStream of the METS-XML document, also wrapped in an OAI-PMH response
+	 * @param parseProfile						a ParseProfile with the sections to keep
+	 * @return									a Document whose root element is the <mets:mets> element
+	 * @throws IOException
+	 * @throws SAXException						if the XML is not well-formed
+	 * @throws ParserConfigurationException		if no DocumentBuilder can be created
+	 */
+	public Document parse(InputStream inputStream, ParseProfile parseProfile) throws IOException, SAXException, ParserConfigurationException {
+		if (parseProfile.isComplete()) {
+			return parse(inputStream);
+		}
+		DocumentBuilder documentBuilder = idleBuilders.poll();
+		if (documentBuilder == null) {
+			documentBuilder = createDocumentBuilder();
+		}
+		Document document;
+		try {
+			document = documentBuilder.newDocument();
+		} finally {
+			idleBuilders.offer(documentBuilder);
+		}
+		try {
+			partialDocumentReader.read(inputStream, document, parseProfile, namespaceAware);
+		} catch (XMLStreamException e) {
+			throw new SAXException(e.getMessage(), e);
+		}
+		return document;
+	}
+
+
+	public boolean isNamespaceAware() {
+		return namespaceAware;
+	}
+
+
+	private DocumentBuilder createDocumentBuilder() throws ParserConfigurationException {
+		DocumentBuilder documentBuilder;
+		// DocumentBuilderFactory is not thread-safe
+		synchronized (documentBuilderFactory) {
+			documentBuilder = documentBuilderFactory.newDocumentBuilder();
+		}
+		documentBuilder.setEntityResolver(NO_EXTERNAL_ENTITIES);
+		return documentBuilder;
+	}
+
+
+	/**
+	 * Creates the hardened DocumentBuilderFactory. Features that the JAXP implementation does not know are skipped; the EntityResolver of the
+	 * DocumentBuilders prevents the loading of external entities in any case.
+	 */
+	private static DocumentBuilderFactory createDocumentBuilderFactory(boolean namespaceAware) {
+		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		documentBuilderFactory.setNamespaceAware(namespaceAware);
+		documentBuilderFactory.setValidating(false);
+		documentBuilderFactory.setXIncludeAware(false);
+		documentBuilderFactory.setExpandEntityReferences(false);
+		setFeature(documentBuilderFactory, XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		setFeature(documentBuilderFactory, "http://xml.org/sax/features/external-general-entities", false);
+		setFeature(documentBuilderFactory, "http://xml.org/sax/features/external-parameter-entities", false);
+		setFeature(documentBuilderFactory, "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+		setFeature(documentBuilderFactory, "http://apache.org/xml/features/dom/defer-node-expansion", false);
+		setAttribute(documentBuilderFactory, XMLConstants.ACCESS_EXTERNAL_DTD, "");
+		setAttribute(documentBuilderFactory, XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+		return documentBuilderFactory;
+	}
+
+	private static void setFeature(DocumentBuilderFactory documentBuilderFactory, String feature, boolean value) {
+		try {
+			documentBuilderFactory.setFeature(feature, value);
+		} catch (ParserConfigurationException e) {
+			// Not supported by this implementation
+		}
+	}
+
+	private static void setAttribute(DocumentBuilderFactory documentBuilderFactory, String attribute, String value) {
+		try {
+			documentBuilderFactory.setAttribute(attribute, value);
+		} catch (IllegalArgumentException e) {
+			// Not supported by this implementation
+		}
+	}
+
+
+	/**
+	 * Resolves every external entity and DTD to an empty document.
+	 */
+	private static final EntityResolver NO_EXTERNAL_ENTITIES = new EntityResolver() {
+		@Override
+		public InputSource resolveEntity(String publicId, String systemId) {
+			return new InputSource(new StringReader(""));
+		}
+	};
+
+}
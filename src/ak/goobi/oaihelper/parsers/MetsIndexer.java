@@ -0,0 +1,228 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.parsers;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import ak.goobi.oaihelper.classes.LogicalDiv;
+import ak.goobi.oaihelper.classes.MetsIndex;
+import ak.goobi.oaihelper.classes.PhysicalPage;
+
+/**
+ * This class builds a MetsIndex from a METS-XML document in one traversal of the DOM tree. Elements are matched by their local name, so it works with
+ * namespace aware and not namespace aware Documents and with METS-XML that is wrapped in an OAI-PMH response.
+ * 
+ * @author Michael Birkner
+ */
+public class MetsIndexer {
+
+	private ModsExtractor modsExtractor = new ModsExtractor();
+
+	/**
+	 * Builds the index of a METS-XML document. Sections that are not needed for the index (e. g. <mets:fileSec> or <mets:amdSec>) are not traversed.
+	 * 
+	 * @param document	a Document object (METS-XML)
+	 * @return			a MetsIndex
+	 */
+	public MetsIndex index(Document document) {
+		MetsIndex metsIndex = new MetsIndex(document);
+		Element root = document.getDocumentElement();
+		if (root != null) {
+			findMets(root, metsIndex);
+		}
+		return metsIndex;
+	}
+
+
+	/**
+	 * Searches for <mets:mets> elements, e. g. within the OAI-PMH envelope, and indexes their sections.
+	 */
+	private void findMets(Element element, MetsIndex metsIndex) {
+		if ("mets".equals(getLocalName(element))) {
+			for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+				if (child.getNodeType() != Node.ELEMENT_NODE) {
+					continue;
+				}
+				Element section = (Element)child;
+				String sectionName = getLocalName(section);
+				if ("structMap".equals(sectionName)) {
+					String type = section.getAttribute("TYPE");
+					if ("LOGICAL".equals(type)) {
+						indexLogicalDivs(section, metsIndex);
+					} else if ("PHYSICAL".equals(type)) {
+						indexPhysicalDivs(section, metsIndex);
+					}
+				} else if ("structLink".equals(sectionName)) {
+					indexStructLinks(section, metsIndex);
+				} else if ("dmdSec".equals(sectionName)) {
+					indexDmdSec(section, metsIndex);
+				} else if ("mets".equals(sectionName)) {
+					findMets(section, metsIndex);
+				}
+			}
+		} else {
+			for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+				if (child.getNodeType() == Node.ELEMENT_NODE) {
+					findMets((Element)child, metsIndex);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Adds all descendant <mets:div> elements of the logical structure map in document order.
+	 */
+	private void indexLogicalDivs(Element parent, MetsIndex metsIndex) {
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() != Node.ELEMENT_NODE) {
+				continue;
+			}
+			Element element = (Element)child;
+			if ("div".equals(getLocalName(element))) {
+				String logId = emptyToNull(element.getAttribute("ID"));
+				String dmdlogId = emptyToNull(element.getAttribute("DMDID"));
+				String type = emptyToNull(element.getAttribute("TYPE"));
+				metsIndex.addLogicalDiv(new LogicalDiv(logId, dmdlogId, type));
+			}
+			indexLogicalDivs(element, metsIndex);
+		}
+	}
+
+
+	/**
+	 * Adds all descendant <mets:div> elements of the physical structure map.
+	 */
+	private void indexPhysicalDivs(Element parent, MetsIndex metsIndex) {
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() != Node.ELEMENT_NODE) {
+				continue;
+			}
+			Element element = (Element)child;
+			if ("div".equals(getLocalName(element)) && element.hasAttribute("ID")) {
+				String physId = element.getAttribute("ID");
+				String order = getAttributeOrNull(element, "ORDER");
+				String orderLabel = getAttributeOrNull(element, "ORDERLABEL");
+				String contentIds = getAttributeOrNull(element, "CONTENTIDS");
+				metsIndex.addPhysicalPage(new PhysicalPage(physId, order, orderLabel, contentIds));
+			}
+			indexPhysicalDivs(element, metsIndex);
+		}
+	}
+
+
+	/**
+	 * Adds all descendant <mets:smLink> elements of the <mets:structLink> section.
+	 */
+	private void indexStructLinks(Element parent, MetsIndex metsIndex) {
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() != Node.ELEMENT_NODE) {
+				continue;
+			}
+			Element element = (Element)child;
+			if ("smLink".equals(getLocalName(element))) {
+				String from = getAttributeByLocalName(element, "from");
+				String to = getAttributeByLocalName(element, "to");
+				if (from != null && to != null) {
+					metsIndex.addStructLink(from, to);
+				}
+			} else {
+				indexStructLinks(element, metsIndex);
+			}
+		}
+	}
+
+
+	/**
+	 * Adds the <mods:mods> element of a <mets:dmdSec> (path mdWrap/xmlData/mods) and its metadata.
+	 */
+	private void indexDmdSec(Element dmdSec, MetsIndex metsIndex) {
+		String dmdlogId = getAttributeOrNull(dmdSec, "ID");
+		if (dmdlogId == null) {
+			return;
+		}
+		Element mdWrap = getChildElement(dmdSec, "mdWrap");
+		Element xmlData = (mdWrap != null) ? getChildElement(mdWrap, "xmlData") : null;
+		Element mods = (xmlData != null) ? getChildElement(xmlData, "mods") : null;
+		if (mods != null) {
+			metsIndex.addModsSection(dmdlogId, mods);
+			metsIndex.addModsRecord(modsExtractor.extract(dmdlogId, mods));
+		}
+	}
+
+
+	/**
+	 * Gets the first child element with the given local name or null if there is none.
+	 */
+	private Element getChildElement(Element parent, String localName) {
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE && localName.equals(getLocalName(child))) {
+				return (Element)child;
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * Gets the value of an attribute by its local name, regardless of its prefix (e. g. "to" for "xlink:to"). Returns null if the attribute does not exist.
+	 */
+	private String getAttributeByLocalName(Element element, String localName) {
+		NamedNodeMap attributes = element.getAttributes();
+		for (int i = 0; i < attributes.getLength(); i++) {
+			Attr attribute = (Attr)attributes.item(i);
+			if (localName.equals(getLocalName(attribute))) {
+				return attribute.getValue();
+			}
+		}
+		return null;
+	}
+
+
+	private String getAttributeOrNull(Element element, String name) {
+		return (element.hasAttribute(name)) ? element.getAttribute(name) : null;
+	}
+
+
+	private String emptyToNull(String value) {
+		return (value.isEmpty()) ? null : value;
+	}
+
+
+	/**
+	 * Gets the local name of a node. For Documents that were not parsed namespace aware, Node.getLocalName() returns null, so the prefix is removed from the node name.
+	 * 
+	 * @param node	a Node
+	 * @return		a String with the local name of the node
+	 */
+	public static String getLocalName(Node node) {
+		String localName = node.getLocalName();
+		if (localName == null) {
+			localName = node.getNodeName();
+			int colon = localName.indexOf(':');
+			if (colon >= 0) {
+				localName = localName.substring(colon + 1);
+			}
+		}
+		return localName;
+	}
+
+}
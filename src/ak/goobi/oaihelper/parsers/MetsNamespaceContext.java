@@ -0,0 +1,78 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.parsers;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+
+/**
+ * This class resolves the prefixes that are used in METS-XML from Goobi in XPath expressions: "mets", "mods", "xlink", "dv" (DFG-Viewer) and "oai"
+ * (OAI-PMH). With a namespace aware Document (see DocumentBuilderPool), elements in a namespace can only be found with a prefix, e. g.
+ * "//mets:structMap[@TYPE='LOGICAL']//mets:div".
+ * 
+ * @author Michael Birkner
+ */
+public class MetsNamespaceContext implements NamespaceContext {
+
+	public static final String METS = "http://www.loc.gov/METS/";
+	public static final String MODS = "http://www.loc.gov/mods/v3";
+	public static final String XLINK = "http://www.w3.org/1999/xlink";
+	public static final String DV = "http://dfg-viewer.de/";
+	public static final String OAI = "http://www.openarchives.org/OAI/2.0/";
+
+	private static final Map<String, String> namespaces = new HashMap<String, String>();
+	static {
+		namespaces.put("mets", METS);
+		namespaces.put("mods", MODS);
+		namespaces.put("xlink", XLINK);
+		namespaces.put("dv", DV);
+		namespaces.put("oai", OAI);
+		namespaces.put(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI);
+		namespaces.put(XMLConstants.XMLNS_ATTRIBUTE, XMLConstants.XMLNS_ATTRIBUTE_NS_URI);
+	}
+
+	@Override
+	public String getNamespaceURI(String prefix) {
+		if (prefix == null) {
+			throw new IllegalArgumentException("prefix must not be null");
+		}
+		String namespaceURI = namespaces.get(prefix);
+		return (namespaceURI != null) ? namespaceURI : XMLConstants.NULL_NS_URI;
+	}
+
+	@Override
+	public String getPrefix(String namespaceURI) {
+		for (Map.Entry<String, String> namespace : namespaces.entrySet()) {
+			if (namespace.getValue().equals(namespaceURI)) {
+				return namespace.getKey();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public Iterator<String> getPrefixes(String namespaceURI) {
+		String prefix = getPrefix(namespaceURI);
+		return (prefix != null) ? Collections.singletonList(prefix).iterator() : Collections.<String>emptyList().iterator();
+	}
+
+}
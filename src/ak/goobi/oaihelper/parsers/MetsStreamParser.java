@@ -0,0 +1,274 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.parsers;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import ak.goobi.oaihelper.classes.LogicalDiv;
+import ak.goobi.oaihelper.classes.MetsIndex;
+import ak.goobi.oaihelper.classes.PhysicalPage;
+
+/**
+ * This class builds a MetsIndex from a METS-XML document by reading it once with a StAX pull parser, without building a DOM tree. Only the structural
+ * data (logical and physical structure map, structure links, metadata of the MODS sections) is kept in memory, all other sections are skipped.
+ * The resulting MetsIndex can be used with the methods of GoobiOaiHelper that take a MetsIndex and returns the same results as an index of a Document.
+ * A ParseProfile skips further sections that a job does not need, e. g. the MODS sections if only the page labels are used.
+ * 
+ * @author Michael Birkner
+ */
+public class MetsStreamParser {
+
+	private XMLInputFactory xmlInputFactory;
+	private ModsExtractor modsExtractor = new ModsExtractor();
+
+	public MetsStreamParser() {
+		xmlInputFactory = createXmlInputFactory();
+	}
+
+
+	/**
+	 * Creates the XMLInputFactory for the streaming parsers of this package.
+	 */
+	static XMLInputFactory createXmlInputFactory() {
+		XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+		xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		// Do not load external DTDs or entities, we only need the elements and attributes of the METS-XML
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return xmlInputFactory;
+	}
+
+
+	/**
+	 * Reads a METS-XML document (also wrapped in an OAI-PMH response) from an InputStream and builds its index. The InputStream is not closed.
+	 * 
+	 * @param inputStream			an InputStream of the METS-XML document
+	 * @return						a MetsIndex without a Document
+	 * @throws XMLStreamException
+	 */
+	public MetsIndex parse(InputStream inputStream) throws XMLStreamException {
+		return parse(inputStream, ParseProfile.COMPLETE);
+	}
+
+
+	/**
+	 * Reads a METS-XML document (also wrapped in an OAI-PMH response) from an InputStream and builds the index of the sections of a ParseProfile. The
+	 * InputStream is not closed.
+	 * 
+	 * @param inputStream			an InputStream of the METS-XML document
+	 * @param parseProfile			a ParseProfile with the sections to index. The MetsIndex has no entries for the other sections.
+	 * @return						a MetsIndex without a Document
+	 * @throws XMLStreamException
+	 */
+	public MetsIndex parse(InputStream inputStream, ParseProfile parseProfile) throws XMLStreamException {
+		MetsIndex metsIndex = new MetsIndex(null);
+		XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && "mets".equals(reader.getLocalName())) {
+					parseMets(reader, metsIndex, parseProfile);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return metsIndex;
+	}
+
+
+	/**
+	 * Reads the sections of a <mets:mets> element. The reader must be positioned at the start tag of the element and is positioned at its end tag afterwards.
+	 * 
+	 * @param reader				an XMLStreamReader positioned at the start tag of <mets:mets>
+	 * @param metsIndex				the MetsIndex to which the structural data is added
+	 * @throws XMLStreamException
+	 */
+	public void parseMets(XMLStreamReader reader, MetsIndex metsIndex) throws XMLStreamException {
+		parseMets(reader, metsIndex, ParseProfile.COMPLETE);
+	}
+
+
+	/**
+	 * Reads the sections of a <mets:mets> element that a ParseProfile selects and skips all others. The reader must be positioned at the start tag of
+	 * the element and is positioned at its end tag afterwards.
+	 * 
+	 * @param reader				an XMLStreamReader positioned at the start tag of <mets:mets>
+	 * @param metsIndex				the MetsIndex to which the structural data is added
+	 * @param parseProfile			a ParseProfile with the sections to index
+	 * @throws XMLStreamException
+	 */
+	public void parseMets(XMLStreamReader reader, MetsIndex metsIndex, ParseProfile parseProfile) throws XMLStreamException {
+		while (nextChildElement(reader)) {
+			String sectionName = reader.getLocalName();
+			if ("structMap".equals(sectionName)) {
+				String type = reader.getAttributeValue(null, "TYPE");
+				if ("LOGICAL".equals(type) && parseProfile.contains(ParseProfile.Section.LOGICAL_MAP)) {
+					parseLogicalDivs(reader, metsIndex);
+				} else if ("PHYSICAL".equals(type) && parseProfile.contains(ParseProfile.Section.PHYSICAL_MAP)) {
+					parsePhysicalDivs(reader, metsIndex);
+				} else {
+					skipElement(reader);
+				}
+			} else if ("structLink".equals(sectionName) && parseProfile.contains(ParseProfile.Section.STRUCT_LINK)) {
+				parseStructLinks(reader, metsIndex);
+			} else if ("dmdSec".equals(sectionName) && parseProfile.contains(ParseProfile.Section.MODS)) {
+				parseDmdSec(reader, metsIndex);
+			} else if ("mets".equals(sectionName)) {
+				parseMets(reader, metsIndex, parseProfile);
+			} else {
+				skipElement(reader);
+			}
+		}
+	}
+
+
+	/**
+	 * Adds all descendant <mets:div> elements of the logical structure map in document order.
+	 */
+	private void parseLogicalDivs(XMLStreamReader reader, MetsIndex metsIndex) throws XMLStreamException {
+		while (nextChildElement(reader)) {
+			if ("div".equals(reader.getLocalName())) {
+				String logId = emptyToNull(reader.getAttributeValue(null, "ID"));
+				String dmdlogId = emptyToNull(reader.getAttributeValue(null, "DMDID"));
+				String type = emptyToNull(reader.getAttributeValue(null, "TYPE"));
+				metsIndex.addLogicalDiv(new LogicalDiv(logId, dmdlogId, type));
+			}
+			parseLogicalDivs(reader, metsIndex);
+		}
+	}
+
+
+	/**
+	 * Adds all descendant <mets:div> elements of the physical structure map.
+	 */
+	private void parsePhysicalDivs(XMLStreamReader reader, MetsIndex metsIndex) throws XMLStreamException {
+		while (nextChildElement(reader)) {
+			String physId = reader.getAttributeValue(null, "ID");
+			if ("div".equals(reader.getLocalName()) && physId != null) {
+				String order = reader.getAttributeValue(null, "ORDER");
+				String orderLabel = reader.getAttributeValue(null, "ORDERLABEL");
+				String contentIds = reader.getAttributeValue(null, "CONTENTIDS");
+				metsIndex.addPhysicalPage(new PhysicalPage(physId, order, orderLabel, contentIds));
+			}
+			parsePhysicalDivs(reader, metsIndex);
+		}
+	}
+
+
+	/**
+	 * Adds all descendant <mets:smLink> elements of the <mets:structLink> section.
+	 */
+	private void parseStructLinks(XMLStreamReader reader, MetsIndex metsIndex) throws XMLStreamException {
+		while (nextChildElement(reader)) {
+			if ("smLink".equals(reader.getLocalName())) {
+				String from = getAttributeByLocalName(reader, "from");
+				String to = getAttributeByLocalName(reader, "to");
+				if (from != null && to != null) {
+					metsIndex.addStructLink(from, to);
+				}
+				skipElement(reader);
+			} else {
+				parseStructLinks(reader, metsIndex);
+			}
+		}
+	}
+
+
+	/**
+	 * Reads the metadata of the <mods:mods> element of a <mets:dmdSec> (path mdWrap/xmlData/mods).
+	 */
+	private void parseDmdSec(XMLStreamReader reader, MetsIndex metsIndex) throws XMLStreamException {
+		String dmdlogId = reader.getAttributeValue(null, "ID");
+		while (nextChildElement(reader)) {
+			if (dmdlogId != null && "mdWrap".equals(reader.getLocalName())) {
+				while (nextChildElement(reader)) {
+					if ("xmlData".equals(reader.getLocalName())) {
+						while (nextChildElement(reader)) {
+							if ("mods".equals(reader.getLocalName())) {
+								metsIndex.addModsRecord(modsExtractor.extract(dmdlogId, reader));
+							} else {
+								skipElement(reader);
+							}
+						}
+					} else {
+						skipElement(reader);
+					}
+				}
+			} else {
+				skipElement(reader);
+			}
+		}
+	}
+
+
+	/**
+	 * Moves the reader to the start tag of the next child element of the current element. Returns false if the end tag of the current element was
+	 * reached instead.
+	 */
+	static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				return true;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * Skips the current element including all its descendants. The reader must be positioned at the start tag and is positioned at the end tag afterwards.
+	 */
+	static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the value of an attribute by its local name, regardless of its namespace (e. g. "to" for "xlink:to"). Returns null if the attribute does not exist.
+	 */
+	private String getAttributeByLocalName(XMLStreamReader reader, String localName) {
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			if (localName.equals(reader.getAttributeLocalName(i))) {
+				return reader.getAttributeValue(i);
+			}
+		}
+		return null;
+	}
+
+
+	private String emptyToNull(String value) {
+		return (value == null || value.isEmpty()) ? null : value;
+	}
+
+}
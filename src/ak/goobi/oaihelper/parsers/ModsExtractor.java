@@ -0,0 +1,282 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.parsers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import ak.goobi.oaihelper.classes.ModsName;
+import ak.goobi.oaihelper.classes.ModsRecord;
+
+/**
+ * This class reads the descriptive metadata of a <mods:mods> element into a ModsRecord: the title, the languages, the identifiers and the names with
+ * their roles. Only the direct children of <mods:mods> and their descendants that are needed are visited once, so the cost is linear in the size of
+ * the MODS section. Both a DOM Element and a StAX reader can be used, so MetsIndexer and MetsStreamParser return the same records.
+ * 
+ * @author Michael Birkner
+ */
+public class ModsExtractor {
+
+	/**
+	 * Reads a <mods:mods> element of a DOM Document.
+	 * 
+	 * @param dmdlogId	a String with the ID of the <mets:dmdSec> of the <mods:mods> element
+	 * @param mods		the <mods:mods> Element
+	 * @return			a ModsRecord
+	 */
+	public ModsRecord extract(String dmdlogId, Element mods) {
+		ModsRecord modsRecord = new ModsRecord(dmdlogId);
+		boolean typedTitleInfo = false;
+		for (Element child = getFirstChildElement(mods); child != null; child = getNextSiblingElement(child)) {
+			String name = MetsIndexer.getLocalName(child);
+			if ("titleInfo".equals(name)) {
+				// Use the first <mods:titleInfo> without a type (e. g. not "abbreviated" or "translated"), or the first one if all have a type
+				if (modsRecord.getTitle() == null || typedTitleInfo && !child.hasAttribute("type")) {
+					typedTitleInfo = child.hasAttribute("type");
+					modsRecord.setNonSort(null);
+					modsRecord.setSubTitle(null);
+					for (Element titlePart = getFirstChildElement(child); titlePart != null; titlePart = getNextSiblingElement(titlePart)) {
+						setTitlePart(modsRecord, MetsIndexer.getLocalName(titlePart), titlePart.getTextContent());
+					}
+				}
+			} else if ("language".equals(name)) {
+				for (Element languageTerm = getFirstChildElement(child); languageTerm != null; languageTerm = getNextSiblingElement(languageTerm)) {
+					if ("languageTerm".equals(MetsIndexer.getLocalName(languageTerm))) {
+						modsRecord.addLanguage(languageTerm.getTextContent().trim());
+					}
+				}
+			} else if ("identifier".equals(name)) {
+				modsRecord.addIdentifier(getAttributeOrNull(child, "type"), child.getTextContent().trim());
+			} else if ("name".equals(name)) {
+				modsRecord.addName(extractName(child));
+			}
+		}
+		return modsRecord;
+	}
+
+
+	/**
+	 * Reads a <mods:mods> element with a StAX reader. The reader must be positioned at the start tag of the <mods:mods> element and is positioned at its
+	 * end tag afterwards.
+	 * 
+	 * @param dmdlogId				a String with the ID of the <mets:dmdSec> of the <mods:mods> element
+	 * @param reader				an XMLStreamReader
+	 * @return						a ModsRecord
+	 * @throws XMLStreamException
+	 */
+	public ModsRecord extract(String dmdlogId, XMLStreamReader reader) throws XMLStreamException {
+		ModsRecord modsRecord = new ModsRecord(dmdlogId);
+		boolean typedTitleInfo = false;
+		while (MetsStreamParser.nextChildElement(reader)) {
+			String name = reader.getLocalName();
+			if ("titleInfo".equals(name)) {
+				String type = reader.getAttributeValue(null, "type");
+				if (modsRecord.getTitle() == null || typedTitleInfo && type == null) {
+					typedTitleInfo = (type != null);
+					modsRecord.setNonSort(null);
+					modsRecord.setSubTitle(null);
+					while (MetsStreamParser.nextChildElement(reader)) {
+						setTitlePart(modsRecord, reader.getLocalName(), getElementText(reader));
+					}
+				} else {
+					MetsStreamParser.skipElement(reader);
+				}
+			} else if ("language".equals(name)) {
+				while (MetsStreamParser.nextChildElement(reader)) {
+					if ("languageTerm".equals(reader.getLocalName())) {
+						modsRecord.addLanguage(getElementText(reader).trim());
+					} else {
+						MetsStreamParser.skipElement(reader);
+					}
+				}
+			} else if ("identifier".equals(name)) {
+				String type = reader.getAttributeValue(null, "type");
+				modsRecord.addIdentifier(type, getElementText(reader).trim());
+			} else if ("name".equals(name)) {
+				modsRecord.addName(extractName(reader));
+			} else {
+				MetsStreamParser.skipElement(reader);
+			}
+		}
+		return modsRecord;
+	}
+
+
+	/**
+	 * Reads a <mods:name> element of a DOM Document.
+	 */
+	private ModsName extractName(Element name) {
+		String givenName = null;
+		String familyName = null;
+		String displayForm = null;
+		List<String> roles = new ArrayList<String>();
+		for (Element child = getFirstChildElement(name); child != null; child = getNextSiblingElement(child)) {
+			String childName = MetsIndexer.getLocalName(child);
+			if ("namePart".equals(childName)) {
+				String namePartType = child.getAttribute("type");
+				if ("given".equals(namePartType)) {
+					givenName = join(givenName, child.getTextContent());
+				} else if ("family".equals(namePartType) || namePartType.isEmpty()) {
+					familyName = join(familyName, child.getTextContent());
+				}
+			} else if ("displayForm".equals(childName)) {
+				displayForm = child.getTextContent();
+			} else if ("role".equals(childName)) {
+				String role = null;
+				for (Element roleTerm = getFirstChildElement(child); roleTerm != null; roleTerm = getNextSiblingElement(roleTerm)) {
+					if ("roleTerm".equals(MetsIndexer.getLocalName(roleTerm))) {
+						role = getRole(role, roleTerm.getAttribute("type"), roleTerm.getTextContent());
+					}
+				}
+				if (role != null) {
+					roles.add(role);
+				}
+			}
+		}
+		return new ModsName(getAttributeOrNull(name, "type"), givenName, familyName, displayForm, roles);
+	}
+
+
+	/**
+	 * Reads a <mods:name> element with a StAX reader. The reader must be positioned at its start tag and is positioned at its end tag afterwards.
+	 */
+	private ModsName extractName(XMLStreamReader reader) throws XMLStreamException {
+		String type = reader.getAttributeValue(null, "type");
+		String givenName = null;
+		String familyName = null;
+		String displayForm = null;
+		List<String> roles = new ArrayList<String>();
+		while (MetsStreamParser.nextChildElement(reader)) {
+			String childName = reader.getLocalName();
+			if ("namePart".equals(childName)) {
+				String namePartType = reader.getAttributeValue(null, "type");
+				if ("given".equals(namePartType)) {
+					givenName = join(givenName, getElementText(reader));
+				} else if ("family".equals(namePartType) || namePartType == null || namePartType.isEmpty()) {
+					familyName = join(familyName, getElementText(reader));
+				} else {
+					MetsStreamParser.skipElement(reader);
+				}
+			} else if ("displayForm".equals(childName)) {
+				displayForm = getElementText(reader);
+			} else if ("role".equals(childName)) {
+				String role = null;
+				while (MetsStreamParser.nextChildElement(reader)) {
+					if ("roleTerm".equals(reader.getLocalName())) {
+						String roleTermType = reader.getAttributeValue(null, "type");
+						role = getRole(role, (roleTermType != null) ? roleTermType : "", getElementText(reader));
+					} else {
+						MetsStreamParser.skipElement(reader);
+					}
+				}
+				if (role != null) {
+					roles.add(role);
+				}
+			} else {
+				MetsStreamParser.skipElement(reader);
+			}
+		}
+		return new ModsName(emptyToNull(type), givenName, familyName, displayForm, roles);
+	}
+
+
+	private void setTitlePart(ModsRecord modsRecord, String name, String value) {
+		if ("nonSort".equals(name)) {
+			modsRecord.setNonSort(value);
+		} else if ("title".equals(name)) {
+			modsRecord.setTitle(value);
+		} else if ("subTitle".equals(name)) {
+			modsRecord.setSubTitle(value);
+		}
+	}
+
+
+	/**
+	 * Gets the role of a <mods:role> element from its <mods:roleTerm> elements. The code (e. g. "aut") is preferred to the text (e. g. "Author").
+	 */
+	private String getRole(String role, String roleTermType, String roleTerm) {
+		roleTerm = roleTerm.trim();
+		if (roleTerm.isEmpty()) {
+			return role;
+		}
+		return (role == null || "code".equals(roleTermType)) ? roleTerm : role;
+	}
+
+
+	/**
+	 * Joins name parts of the same type, e. g. two given names.
+	 */
+	private String join(String namePart, String value) {
+		return (namePart == null) ? value : namePart + " " + value;
+	}
+
+
+	/**
+	 * Gets the text of a text only element. Unlike XMLStreamReader.getElementText(), child elements (e. g. of mixed content) are skipped instead of
+	 * throwing an exception.
+	 */
+	private String getElementText(XMLStreamReader reader) throws XMLStreamException {
+		StringBuilder text = new StringBuilder();
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamReader.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamReader.END_ELEMENT) {
+				depth--;
+			} else if (event == XMLStreamReader.CHARACTERS || event == XMLStreamReader.CDATA || event == XMLStreamReader.SPACE) {
+				text.append(reader.getText());
+			}
+		}
+		return text.toString();
+	}
+
+
+	private Element getFirstChildElement(Node parent) {
+		Node child = parent.getFirstChild();
+		while (child != null && child.getNodeType() != Node.ELEMENT_NODE) {
+			child = child.getNextSibling();
+		}
+		return (Element)child;
+	}
+
+
+	private Element getNextSiblingElement(Node node) {
+		Node sibling = node.getNextSibling();
+		while (sibling != null && sibling.getNodeType() != Node.ELEMENT_NODE) {
+			sibling = sibling.getNextSibling();
+		}
+		return (Element)sibling;
+	}
+
+
+	private String getAttributeOrNull(Element element, String name) {
+		return emptyToNull(element.getAttribute(name));
+	}
+
+
+	private String emptyToNull(String value) {
+		return (value == null || value.isEmpty()) ? null : value;
+	}
+
+}
@@ -0,0 +1,330 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.parsers;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import ak.goobi.oaihelper.classes.MetsIndex;
+import ak.goobi.oaihelper.classes.OaiHeader;
+import ak.goobi.oaihelper.classes.OaiRecord;
+import ak.goobi.oaihelper.classes.OaiResponse;
+
+/**
+ * This class reads OAI-PMH responses of the verbs GetRecord, ListRecords and ListIdentifiers with a StAX pull parser. The METS-XML metadata of each
+ * record is indexed with MetsStreamParser while reading, so no DOM tree is built for the response. Optionally, a hash of the metadata of each record is
+ * calculated while reading, so that changed records can be detected without keeping the XML. The elements of the OAI-PMH response are only recognized in
+ * the OAI-PMH namespace, so elements with the same names in the metadata (e. g. <marc:record>) do not disturb the reading.
+ * 
+ * @author Michael Birkner
+ */
+public class OaiResponseParser {
+
+	private XMLInputFactory xmlInputFactory = MetsStreamParser.createXmlInputFactory();
+	private MetsStreamParser metsStreamParser = new MetsStreamParser();
+	private boolean contentHash = false;
+	private ParseProfile parseProfile = ParseProfile.COMPLETE;
+
+
+	/**
+	 * Reads an OAI-PMH response from an InputStream. The InputStream is not closed.
+	 * 
+	 * @param inputStream			an InputStream of the OAI-PMH response
+	 * @return						an OaiResponse with the records, the resumption token and the OAI-PMH error, if there was one
+	 * @throws XMLStreamException
+	 */
+	public OaiResponse parse(InputStream inputStream) throws XMLStreamException {
+		OaiResponse oaiResponse = new OaiResponse();
+		XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+
+		OaiHeader header = null;
+		MetsIndex metsIndex = null;
+		String hash = null;
+		boolean inRecord = false;
+		// Within <metadata>, the events are read through a DigestStreamReader that hashes them
+		DigestStreamReader digestReader = null;
+		XMLStreamReader currentReader = reader;
+
+		try {
+			while (currentReader.hasNext()) {
+				int event = currentReader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = getOaiName(currentReader);
+					if ("record".equals(name)) {
+						inRecord = true;
+						header = null;
+						metsIndex = null;
+						hash = null;
+					} else if ("metadata".equals(name) && inRecord && contentHash && digestReader == null) {
+						digestReader = new DigestStreamReader(reader);
+						currentReader = digestReader;
+					} else if ("responseDate".equals(name)) {
+						oaiResponse.setResponseDate(reader.getElementText().trim());
+					} else if ("header".equals(name)) {
+						header = parseHeader(reader);
+						// ListIdentifiers responses contain headers without a surrounding <record> element
+						if (!inRecord) {
+							oaiResponse.addRecord(new OaiRecord(header, null));
+						}
+					} else if ("mets".equals(currentReader.getLocalName()) && inRecord) {
+						metsIndex = new MetsIndex(null);
+						metsStreamParser.parseMets(currentReader, metsIndex, parseProfile);
+					} else if ("resumptionToken".equals(name)) {
+						String completeListSize = reader.getAttributeValue(null, "completeListSize");
+						if (completeListSize != null && completeListSize.trim().matches("\\d+")) {
+							oaiResponse.setCompleteListSize(Integer.parseInt(completeListSize.trim()));
+						}
+						// An empty resumption token marks the last part of an incomplete list
+						String resumptionToken = reader.getElementText().trim();
+						oaiResponse.setResumptionToken((resumptionToken.isEmpty()) ? null : resumptionToken);
+					} else if ("error".equals(name)) {
+						String errorCode = reader.getAttributeValue(null, "code");
+						oaiResponse.setError(errorCode, reader.getElementText().trim());
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT && digestReader != null && "metadata".equals(getOaiName(reader))) {
+					hash = digestReader.getHash();
+					digestReader = null;
+					currentReader = reader;
+				} else if (event == XMLStreamConstants.END_ELEMENT && "record".equals(getOaiName(reader))) {
+					inRecord = false;
+					if (header != null) {
+						oaiResponse.addRecord(new OaiRecord(header, metsIndex, hash));
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		return oaiResponse;
+	}
+
+
+	/**
+	 * Reads only the datestamp of the first record header of an OAI-PMH response (e. g. of a GetRecord response) and stops reading there. The InputStream
+	 * is not closed.
+	 * 
+	 * @param inputStream			an InputStream of the OAI-PMH response
+	 * @return						a String with the datestamp or null if the response contains no record header
+	 * @throws XMLStreamException
+	 */
+	public String parseDatestamp(InputStream inputStream) throws XMLStreamException {
+		XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && "header".equals(getOaiName(reader))) {
+					return parseHeader(reader).getDatestamp();
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return null;
+	}
+
+
+	/**
+	 * Reads only the resumption token of a ListRecords or ListIdentifiers response. The metadata of the records is skipped without indexing it, so this
+	 * is much faster than parse(InputStream). The InputStream is not closed.
+	 * 
+	 * @param inputStream			an InputStream of the OAI-PMH response
+	 * @return						a String with the resumption token or null if the response is the last part of the list or an error
+	 * @throws XMLStreamException
+	 */
+	public String parseResumptionToken(InputStream inputStream) throws XMLStreamException {
+		XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+					String name = getOaiName(reader);
+					if ("metadata".equals(name)) {
+						MetsStreamParser.skipElement(reader);
+					} else if ("resumptionToken".equals(name)) {
+						String resumptionToken = reader.getElementText().trim();
+						return (resumptionToken.isEmpty()) ? null : resumptionToken;
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return null;
+	}
+
+
+	public boolean isContentHash() {
+		return contentHash;
+	}
+	/**
+	 * Calculate a hash of the metadata of each record (see OaiRecord.getContentHash()). Default is false.
+	 * 
+	 * @param contentHash	true if a hash should be calculated
+	 */
+	public void setContentHash(boolean contentHash) {
+		this.contentHash = contentHash;
+	}
+
+
+	public ParseProfile getParseProfile() {
+		return parseProfile;
+	}
+	/**
+	 * Sets the sections of the METS-XML of the records that are indexed (see MetsStreamParser.parse(InputStream, ParseProfile)). The hash of the
+	 * metadata includes the skipped sections. Default is ParseProfile.COMPLETE.
+	 * 
+	 * @param parseProfile	a ParseProfile
+	 */
+	public void setParseProfile(ParseProfile parseProfile) {
+		this.parseProfile = (parseProfile != null) ? parseProfile : ParseProfile.COMPLETE;
+	}
+
+
+	/**
+	 * Gets the local name of the current element if it is in the OAI-PMH namespace. Elements of the metadata formats may have the same local names
+	 * (e. g. <marc:record> of MARCXML), so they must not be taken for the elements of the OAI-PMH response.
+	 * 
+	 * @return	the local name or null if the element is in another namespace
+	 */
+	private static String getOaiName(XMLStreamReader reader) {
+		return MetsNamespaceContext.OAI.equals(reader.getNamespaceURI()) ? reader.getLocalName() : null;
+	}
+
+
+	/**
+	 * Reads a <header> element. The reader must be positioned at its start tag and is positioned at its end tag afterwards.
+	 */
+	private OaiHeader parseHeader(XMLStreamReader reader) throws XMLStreamException {
+		boolean deleted = "deleted".equals(reader.getAttributeValue(null, "status"));
+		String identifier = null;
+		String datestamp = null;
+		List<String> setSpecs = new ArrayList<String>();
+
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if ("identifier".equals(name)) {
+					identifier = reader.getElementText().trim();
+				} else if ("datestamp".equals(name)) {
+					datestamp = reader.getElementText().trim();
+				} else if ("setSpec".equals(name)) {
+					setSpecs.add(reader.getElementText().trim());
+				} else {
+					depth++;
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+
+		return new OaiHeader(identifier, datestamp, setSpecs, deleted);
+	}
+
+
+
+	/**
+	 * Hashes the events that are read through it with SHA-1: element names with their namespace URI, attributes and text. Text is trimmed and text that
+	 * consists of whitespace only is ignored, so the hash does not depend on the formatting of the XML.
+	 */
+	private static class DigestStreamReader extends StreamReaderDelegate {
+
+		private static final Charset UTF_8 = Charset.forName("UTF-8");
+		private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+		private MessageDigest messageDigest;
+
+		private DigestStreamReader(XMLStreamReader reader) {
+			super(reader);
+			try {
+				messageDigest = MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				// Every Java platform must support SHA-1
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public int next() throws XMLStreamException {
+			int event = super.next();
+			update(event);
+			return event;
+		}
+
+		@Override
+		public int nextTag() throws XMLStreamException {
+			int event = super.nextTag();
+			update(event);
+			return event;
+		}
+
+		@Override
+		public String getElementText() throws XMLStreamException {
+			// Reads the text and the end tag without calling next()
+			String text = super.getElementText();
+			update("T", text.trim());
+			update(XMLStreamConstants.END_ELEMENT);
+			return text;
+		}
+
+		private void update(int event) {
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				update("S", getNamespaceURI(), getLocalName());
+				for (int i = 0; i < getAttributeCount(); i++) {
+					update("A", getAttributeNamespace(i), getAttributeLocalName(i), getAttributeValue(i));
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				update("E");
+			} else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) && !isWhiteSpace()) {
+				update("T", getText().trim());
+			}
+		}
+
+		/**
+		 * Hashes the values separated by a null character, so that e. g. "ab" + "c" and "a" + "bc" have different hashes.
+		 */
+		private void update(String... values) {
+			for (String value : values) {
+				if (value != null) {
+					messageDigest.update(value.getBytes(UTF_8));
+				}
+				messageDigest.update((byte)0);
+			}
+		}
+
+		private String getHash() {
+			byte[] digest = messageDigest.digest();
+			char[] hash = new char[digest.length * 2];
+			for (int i = 0; i < digest.length; i++) {
+				hash[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+				hash[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+			}
+			return new String(hash);
+		}
+
+	}
+
+}
@@ -0,0 +1,127 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.parsers;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * This class declares which sections of a METS-XML document a job needs, so the parsers can skip all other sections while they read the document
+ * (see MetsStreamParser.parse(InputStream, ParseProfile), DocumentBuilderPool.parse(InputStream, ParseProfile) and Network.setParseProfile()). Skipped
+ * sections are still read by the XML parser, but no objects are created for them, which saves most of the time and memory for large records with many
+ * <mets:amdSec> or <mets:file> elements.
+ * 
+ * With a profile other than COMPLETE, a Document contains only the <mets:mets> element with the selected sections; the OAI-PMH envelope, the
+ * <mets:metsHdr>, the <mets:amdSec> and all other sections are left out. The methods of GoobiOaiHelper work with such Documents as long as the sections
+ * they use are selected, e. g. getModsRecords() and getAuthorsByDmdlogId() need MODS, but getIds() and getPhysIds() only need the structure maps and
+ * the structure links.
+ * 
+ * @author Michael Birkner
+ */
+public final class ParseProfile {
+
+	/**
+	 * The sections of a METS-XML document that can be selected.
+	 */
+	public enum Section {
+		/** The logical structure map (<mets:structMap TYPE="LOGICAL">) */
+		LOGICAL_MAP,
+		/** The physical structure map (<mets:structMap TYPE="PHYSICAL">) */
+		PHYSICAL_MAP,
+		/** The links between the structure maps (<mets:structLink>) */
+		STRUCT_LINK,
+		/** The descriptive metadata (<mets:dmdSec> with <mods:mods>) */
+		MODS,
+		/** The files of the pages (<mets:fileSec>). A MetsIndex holds no files, so this section is only used for Documents. */
+		FILE_SEC
+	}
+
+	/**
+	 * The complete document, nothing is skipped. This is the default of all parsers.
+	 */
+	public static final ParseProfile COMPLETE = new ParseProfile(EnumSet.allOf(Section.class), true);
+
+	/**
+	 * The structure maps and the structure links, e. g. for the page labels and page numbers of the structure elements.
+	 */
+	public static final ParseProfile STRUCTURE = of(Section.LOGICAL_MAP, Section.PHYSICAL_MAP, Section.STRUCT_LINK);
+
+	/**
+	 * The structure maps, the structure links and the MODS sections, i. e. all sections of a MetsIndex.
+	 */
+	public static final ParseProfile INDEX = of(Section.LOGICAL_MAP, Section.PHYSICAL_MAP, Section.STRUCT_LINK, Section.MODS);
+
+	private final Set<Section> sections;
+	private final boolean complete;
+
+	private ParseProfile(Set<Section> sections, boolean complete) {
+		this.sections = Collections.unmodifiableSet(sections);
+		this.complete = complete;
+	}
+
+
+	/**
+	 * Creates a profile of the given sections.
+	 * 
+	 * @param first		the first Section
+	 * @param rest		further Sections
+	 * @return			a ParseProfile
+	 */
+	public static ParseProfile of(Section first, Section... rest) {
+		return new ParseProfile(EnumSet.of(first, rest), false);
+	}
+
+
+	/**
+	 * Returns true if a section is needed.
+	 * 
+	 * @param section	a Section
+	 * @return			true if the section is parsed, false if it is skipped
+	 */
+	public boolean contains(Section section) {
+		return sections.contains(section);
+	}
+
+
+	/**
+	 * Gets the selected sections.
+	 * 
+	 * @return	an unmodifiable Set<Section>
+	 */
+	public Set<Section> getSections() {
+		return sections;
+	}
+
+
+	/**
+	 * Returns true if this is the profile COMPLETE, which keeps the whole document including the OAI-PMH envelope and the sections that can not be
+	 * selected.
+	 * 
+	 * @return	true if nothing is skipped
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+
+	@Override
+	public String toString() {
+		return complete ? "ParseProfile [COMPLETE]" : "ParseProfile " + sections;
+	}
+
+}
@@ -0,0 +1,187 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.parsers;
+
+import java.io.InputStream;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * This class builds a DOM Document with the sections of a METS-XML document that a ParseProfile selects (see DocumentBuilderPool.parse(InputStream,
+ * ParseProfile)). The document is read with a StAX pull parser and nodes are created only for the <mets:mets> element and the selected sections, the
+ * OAI-PMH envelope and all other sections are skipped.
+ * 
+ * @author Michael Birkner
+ */
+class PartialDocumentReader {
+
+	private XMLInputFactory xmlInputFactory = MetsStreamParser.createXmlInputFactory();
+
+
+	/**
+	 * Reads a METS-XML document (also wrapped in an OAI-PMH response) into an empty Document. If the XML contains no <mets:mets> element, e. g. the
+	 * error response of an OAI-PMH interface, the Document contains the root element of the XML without its content. The InputStream is not closed.
+	 */
+	void read(InputStream inputStream, Document document, ParseProfile parseProfile, boolean namespaceAware) throws XMLStreamException {
+		XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+		try {
+			Element root = null;
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+					if ("mets".equals(reader.getLocalName())) {
+						if (root != null) {
+							document.removeChild(root);
+						}
+						readMets(reader, document, document, parseProfile, namespaceAware);
+						return;
+					}
+					if (root == null) {
+						root = createElement(reader, document, namespaceAware);
+						document.appendChild(root);
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+
+	/**
+	 * Copies a <mets:mets> element with the selected sections. The reader must be positioned at its start tag and is positioned at its end tag afterwards.
+	 */
+	private void readMets(XMLStreamReader reader, Document document, Node parent, ParseProfile parseProfile, boolean namespaceAware) throws XMLStreamException {
+		Element mets = createElement(reader, document, namespaceAware);
+		parent.appendChild(mets);
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String sectionName = reader.getLocalName();
+				if ("mets".equals(sectionName)) {
+					readMets(reader, document, mets, parseProfile, namespaceAware);
+				} else if (isSelected(reader, sectionName, parseProfile)) {
+					copyElement(reader, document, mets, namespaceAware);
+				} else {
+					MetsStreamParser.skipElement(reader);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return;
+			} else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE || event == XMLStreamConstants.CDATA) {
+				mets.appendChild(document.createTextNode(reader.getText()));
+			}
+		}
+	}
+
+
+	private boolean isSelected(XMLStreamReader reader, String sectionName, ParseProfile parseProfile) {
+		if ("structMap".equals(sectionName)) {
+			String type = reader.getAttributeValue(null, "TYPE");
+			return "LOGICAL".equals(type) && parseProfile.contains(ParseProfile.Section.LOGICAL_MAP)
+					|| "PHYSICAL".equals(type) && parseProfile.contains(ParseProfile.Section.PHYSICAL_MAP);
+		} else if ("structLink".equals(sectionName)) {
+			return parseProfile.contains(ParseProfile.Section.STRUCT_LINK);
+		} else if ("dmdSec".equals(sectionName)) {
+			return parseProfile.contains(ParseProfile.Section.MODS);
+		} else if ("fileSec".equals(sectionName)) {
+			return parseProfile.contains(ParseProfile.Section.FILE_SEC);
+		}
+		return false;
+	}
+
+
+	/**
+	 * Copies an element with all its descendants. The tree is built without recursion, so deep structure maps do not overflow the stack. The reader must
+	 * be positioned at the start tag and is positioned at the end tag afterwards.
+	 */
+	private void copyElement(XMLStreamReader reader, Document document, Node parent, boolean namespaceAware) throws XMLStreamException {
+		Node current = parent.appendChild(createElement(reader, document, namespaceAware));
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				current = current.appendChild(createElement(reader, document, namespaceAware));
+				depth++;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				current = current.getParentNode();
+				depth--;
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+			case XMLStreamConstants.CDATA:
+				current.appendChild(document.createTextNode(reader.getText()));
+				break;
+			case XMLStreamConstants.COMMENT:
+				current.appendChild(document.createComment(reader.getText()));
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+
+	/**
+	 * Creates an element with the attributes and namespace declarations of the current start tag. Without namespace awareness, the names are created
+	 * with their prefixes like DocumentBuilder does, e. g. "mets:div" and "xmlns:mets".
+	 */
+	private Element createElement(XMLStreamReader reader, Document document, boolean namespaceAware) {
+		Element element;
+		if (namespaceAware) {
+			element = document.createElementNS(emptyToNull(reader.getNamespaceURI()), getQualifiedName(reader.getPrefix(), reader.getLocalName()));
+			for (int i = 0; i < reader.getNamespaceCount(); i++) {
+				String prefix = reader.getNamespacePrefix(i);
+				String name = (prefix == null || prefix.isEmpty()) ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+				element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, reader.getNamespaceURI(i));
+			}
+			for (int i = 0; i < reader.getAttributeCount(); i++) {
+				element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)), getQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+						reader.getAttributeValue(i));
+			}
+		} else {
+			element = document.createElement(getQualifiedName(reader.getPrefix(), reader.getLocalName()));
+			for (int i = 0; i < reader.getNamespaceCount(); i++) {
+				String prefix = reader.getNamespacePrefix(i);
+				String name = (prefix == null || prefix.isEmpty()) ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+				element.setAttribute(name, reader.getNamespaceURI(i));
+			}
+			for (int i = 0; i < reader.getAttributeCount(); i++) {
+				element.setAttribute(getQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+			}
+		}
+		return element;
+	}
+
+
+	private static String getQualifiedName(String prefix, String localName) {
+		return (prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+	}
+
+
+	private static String emptyToNull(String value) {
+		return (value == null || value.isEmpty()) ? null : value;
+	}
+
+}
@@ -0,0 +1,138 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ak.goobi.oaihelper.parsers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathVariableResolver;
+
+/**
+ * This class caches compiled XPath expressions, so an expression is compiled only once and can be reused for many documents. Expressions can contain
+ * variables (e. g. "//mets/structMap//div[@ID=$id]") whose values are passed with each evaluation, so IDs do not have to be concatenated into the
+ * expression and one compiled expression serves all IDs.
+ * 
+ * Prefixes in the expressions are resolved with a MetsNamespaceContext (e. g. "//mets:structMap//mets:div" for a namespace aware Document).
+ * 
+ * XPath and XPathExpression objects are not thread-safe, so each thread gets its own XPath object and its own cache. Each of these caches holds at most
+ * maxSize expressions and removes the least recently used one if it is full.
+ * 
+ * @author Michael Birkner
+ */
+public class XPathCache {
+
+	private final int maxSize;
+	private final ThreadLocal<ThreadCache> threadCaches = new ThreadLocal<ThreadCache>() {
+		@Override
+		protected ThreadCache initialValue() {
+			return new ThreadCache();
+		}
+	};
+
+
+	/**
+	 * @param maxSize	the maximum number of compiled expressions per thread
+	 */
+	public XPathCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+
+	/**
+	 * Gets the compiled expression for an XPath of the calling thread. The expression is compiled if it is not in the cache. Do not pass the returned
+	 * expression to other threads.
+	 * 
+	 * @param xpath		a String with the XPath
+	 * @return			the compiled XPathExpression
+	 * @throws XPathExpressionException
+	 */
+	public XPathExpression getExpression(String xpath) throws XPathExpressionException {
+		return threadCaches.get().getExpression(xpath);
+	}
+
+
+	/**
+	 * Evaluates an XPath with the given values for its variables.
+	 * 
+	 * @param xpath			a String with the XPath, e. g. "//mets/structMap//div[@ID=$id]"
+	 * @param item			the context of the evaluation, e. g. a Document
+	 * @param returnType	the type of the result, one of the constants of javax.xml.xpath.XPathConstants
+	 * @param variables		a Map<String, ?> with the names (without "$") and values of the variables of the XPath or null if it has no variables
+	 * @return				the result of the evaluation as an Object of the returnType
+	 * @throws XPathExpressionException
+	 */
+	public Object evaluate(String xpath, Object item, QName returnType, Map<String, ?> variables) throws XPathExpressionException {
+		ThreadCache threadCache = threadCaches.get();
+		XPathExpression xPathExpression = threadCache.getExpression(xpath);
+		threadCache.variables = variables;
+		try {
+			return xPathExpression.evaluate(item, returnType);
+		} finally {
+			threadCache.variables = null;
+		}
+	}
+
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+
+	/**
+	 * The XPath object, the compiled expressions and the current variables of one thread.
+	 */
+	private class ThreadCache implements XPathVariableResolver {
+
+		private XPath xPath;
+		private Map<String, ?> variables;
+		private Map<String, XPathExpression> expressions = new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+				return size() > maxSize;
+			}
+		};
+
+		ThreadCache() {
+			xPath = XPathFactory.newInstance().newXPath();
+			xPath.setXPathVariableResolver(this);
+			xPath.setNamespaceContext(new MetsNamespaceContext());
+		}
+
+		XPathExpression getExpression(String xpath) throws XPathExpressionException {
+			XPathExpression xPathExpression = expressions.get(xpath);
+			if (xPathExpression == null) {
+				xPathExpression = xPath.compile(xpath);
+				expressions.put(xpath, xPathExpression);
+			}
+			return xPathExpression;
+		}
+
+		@Override
+		public Object resolveVariable(QName variableName) {
+			// Returning null for an unknown variable makes the evaluation fail with an XPathExpressionException
+			return (variables != null) ? variables.get(variableName.getLocalPart()) : null;
+		}
+	}
+
+}
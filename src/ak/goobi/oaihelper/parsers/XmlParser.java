@@ -18,25 +18,36 @@ package ak.goobi.oaihelper.parsers;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
+import ak.goobi.oaihelper.metrics.MetricNames;
+import ak.goobi.oaihelper.metrics.Metrics;
+
 /**
  * This class provides methods to parse a METS-XML document.
  * 
+ * The XPath expressions are compiled only once and kept in an XPathCache that is shared by all instances of this class. Use the methods with variables
+ * (e. g. getAttributeValue(document, "//mets:mets/mets:structMap//mets:div[@ID=$id]", "ORDER", variables)) instead of concatenating values into the
+ * XPath, so the compiled expression can be reused for all values. Documents of Network are parsed namespace aware by default, so the elements must be
+ * written with the prefixes of MetsNamespaceContext as in these examples; without prefixes, the expressions only match Documents that were parsed with
+ * Network.setNamespaceAware(false). An XmlParser can be shared by many threads. DOM implementations are not thread-safe even for reading, so the methods
+ * of this class lock the Document while they read it, like GoobiOaiHelper.getMetsIndex(Document). Other code that reads a Document which is shared
+ * between threads, e. g. from the document cache of a Network, must also synchronize on it.
+ * If Metrics are set, the time of every XPath evaluation is recorded (see MetricNames.XPATH_EVALUATE).
+ * 
  * @author Michael Birkner
  */
 public class XmlParser {
 
-	XPath xPath = XPathFactory.newInstance().newXPath();
+	private static final XPathCache xPathCache = new XPathCache(256);
+	private volatile Metrics metrics = Metrics.NONE;
 
 
 	/**
@@ -48,16 +59,30 @@ public class XmlParser {
 	 * @throws XPathExpressionException
 	 */
 	public String getTextValue(Document document, String xpath) throws XPathExpressionException {
-		String textValue = null;
-		XPathExpression xPathExpression = xPath.compile(xpath+"/text()");
-		NodeList nodeList = (NodeList)xPathExpression.evaluate(document, XPathConstants.NODESET);
+		return getTextValue(document, xpath, null);
+	}
 
-		// Check if nodeList contains nodes to prevent NullPointerException for nodes with no text (for them, text() is not applicable):
-		if (nodeList.getLength() > 0) {
-			textValue = (nodeList.item(0).getNodeValue().trim().isEmpty()) ? null : nodeList.item(0).getNodeValue().trim();
-		}
+	/**
+	 * Gets the text value (content) of one XML element, using an XPath with variables. See getTextValue(Document, String).
+	 * 
+	 * @param document	the xml document that contains the element to parse
+	 * @param xpath		the xpath which leads to the element in the XML document for which the text value should be returned, e. g. "//mets:mets/mets:dmdSec[@ID=$id]//mods:title"
+	 * @param variables	a Map<String, ?> with the names (without "$") and values of the variables of the xpath or null if it has no variables
+	 * @return			a String or null if nothing was found
+	 * @throws XPathExpressionException
+	 */
+	public String getTextValue(Document document, String xpath, Map<String, ?> variables) throws XPathExpressionException {
+		synchronized (document) {
+			String textValue = null;
+			NodeList nodeList = evaluate(xpath+"/text()", document, variables);
+
+			// Check if nodeList contains nodes to prevent NullPointerException for nodes with no text (for them, text() is not applicable):
+			if (nodeList.getLength() > 0) {
+				textValue = (nodeList.item(0).getNodeValue().trim().isEmpty()) ? null : nodeList.item(0).getNodeValue().trim();
+			}
 
-		return textValue;
+			return textValue;
+		}
 	}
 
 	/**
@@ -69,23 +94,37 @@ public class XmlParser {
 	 * @throws XPathExpressionException
 	 */
 	public List<String> getTextValues(Document document, String xpath) throws XPathExpressionException {
-		List<String> textValues = new ArrayList<String>();
-		String textValue = null;
-
-		XPathExpression xPathExpression = xPath.compile(xpath+"/text()");
-		NodeList nodeList = (NodeList)xPathExpression.evaluate(document, XPathConstants.NODESET);
+		return getTextValues(document, xpath, null);
+	}
 
-		// Check if nodeList contains nodes to prevent NullPointerException for nodes with no text (for them, text() is not applicable):
-		if (nodeList.getLength() > 0) {
-			for(int i = 0; i < nodeList.getLength(); i++) {
-				textValue = (nodeList.item(i).getNodeValue().trim().isEmpty()) ? null : nodeList.item(i).getNodeValue().trim();
-				textValues.add(textValue);
+	/**
+	 * Gets the text value (content) of one or more XML elements, using an XPath with variables. See getTextValues(Document, String).
+	 * 
+	 * @param document			the xml document that contains the elements to parse
+	 * @param xpath				the xpath which leads to the elements in the XML document for which the text value should be returned
+	 * @param variables			a Map<String, ?> with the names (without "$") and values of the variables of the xpath or null if it has no variables
+	 * @return List<String>		a List<String> or null if nothing was found
+	 * @throws XPathExpressionException
+	 */
+	public List<String> getTextValues(Document document, String xpath, Map<String, ?> variables) throws XPathExpressionException {
+		synchronized (document) {
+			List<String> textValues = new ArrayList<String>();
+			String textValue = null;
+
+			NodeList nodeList = evaluate(xpath+"/text()", document, variables);
+
+			// Check if nodeList contains nodes to prevent NullPointerException for nodes with no text (for them, text() is not applicable):
+			if (nodeList.getLength() > 0) {
+				for(int i = 0; i < nodeList.getLength(); i++) {
+					textValue = (nodeList.item(i).getNodeValue().trim().isEmpty()) ? null : nodeList.item(i).getNodeValue().trim();
+					textValues.add(textValue);
+				}
+			} else {
+				textValues = null;
 			}
-		} else {
-			textValues = null;
-		}
 
-		return textValues;
+			return textValues;
+		}
 	}
 
 
@@ -100,20 +139,35 @@ public class XmlParser {
 	 * @throws XPathExpressionException 
 	 */
 	public String getAttributeValue(Document document, String xpath, String attribute) throws XPathExpressionException {
-		String attributeValue = null;
-		XPathExpression xPathExpression = xPath.compile(xpath);
-		NodeList nodeList = (NodeList)xPathExpression.evaluate(document, XPathConstants.NODESET);
-
-		// Check if nodeList contains nodes to prevent NullPointerException. Instead of exception, just null should be returned.
-		if (nodeList.getLength() > 0) {
-			Element element = (Element)nodeList.item(0);
-			// Check if attribute exists.
-			boolean hasAttribute = element.hasAttribute(attribute);
-			if (hasAttribute) {
-				attributeValue = element.getAttribute(attribute);
+		return getAttributeValue(document, xpath, attribute, null);
+	}
+
+	/**
+	 * Gets the value of an attribute of one XML element, using an XPath with variables. See getAttributeValue(Document, String, String).
+	 * 
+	 * @param document		the xml document that contains the element to parse
+	 * @param xpath			the xpath which leads to the element in the XML document for which the attribute value should be returned, e. g. "//mets:mets/mets:structMap//mets:div[@ID=$id]"
+	 * @param attribute		the attribute for which the value should be returned
+	 * @param variables		a Map<String, ?> with the names (without "$") and values of the variables of the xpath or null if it has no variables
+	 * @return String		a String conaining the attribute value or null if nothing was found
+	 * @throws XPathExpressionException 
+	 */
+	public String getAttributeValue(Document document, String xpath, String attribute, Map<String, ?> variables) throws XPathExpressionException {
+		synchronized (document) {
+			String attributeValue = null;
+			NodeList nodeList = evaluate(xpath, document, variables);
+
+			// Check if nodeList contains nodes to prevent NullPointerException. Instead of exception, just null should be returned.
+			if (nodeList.getLength() > 0) {
+				Element element = (Element)nodeList.item(0);
+				// Check if attribute exists.
+				boolean hasAttribute = element.hasAttribute(attribute);
+				if (hasAttribute) {
+					attributeValue = element.getAttribute(attribute);
+				}
 			}
+			return attributeValue;
 		}
-		return attributeValue;
 	}
 
 
@@ -127,28 +181,67 @@ public class XmlParser {
 	 * @throws XPathExpressionException 
 	 */
 	public List<String> getAttributeValues(Document document, String xpath, String attribute) throws XPathExpressionException {
-		List<String> attributeValues = new ArrayList<String>();
-		XPathExpression xPathExpression = xPath.compile(xpath);
-		NodeList nodeList = (NodeList)xPathExpression.evaluate(document, XPathConstants.NODESET);
-
-		// Check if nodeList contains nodes to prevent NullPointerException. Instead of exception, just null should be returned.
-		if (nodeList.getLength() > 0) {
-			// Iterate over node-list, get attribute-values and add them to a list:
-			for (int i = 0; i < nodeList.getLength(); i++) {
-				Element element = (Element)nodeList.item(i);
-				String attributeValue = null;
-				boolean hasAttribute = element.hasAttribute(attribute);
-				// Check if attribute exists.
-				if (hasAttribute) {
-					attributeValue = element.getAttribute(attribute);
-					attributeValues.add(attributeValue);
+		return getAttributeValues(document, xpath, attribute, null);
+	}
+
+	/**
+	 * Gets the value of an attribute of one or more XML elements, using an XPath with variables. See getAttributeValues(Document, String, String).
+	 * 
+	 * @param document 			the xml document that contains the elements to parse
+	 * @param xpath				the xpath which leads to the elements in the XML document for which the attribute values should be returned, e. g. "//mets:mets/mets:structLink//mets:smLink[@xlink:from=$logId]"
+	 * @param attribute			the attribute for which the values should be returned
+	 * @param variables			a Map<String, ?> with the names (without "$") and values of the variables of the xpath or null if it has no variables
+	 * @return List<String>		a List<String> conaining the attribute value or null if nothing was found
+	 * @throws XPathExpressionException 
+	 */
+	public List<String> getAttributeValues(Document document, String xpath, String attribute, Map<String, ?> variables) throws XPathExpressionException {
+		synchronized (document) {
+			List<String> attributeValues = new ArrayList<String>();
+			NodeList nodeList = evaluate(xpath, document, variables);
+
+			// Check if nodeList contains nodes to prevent NullPointerException. Instead of exception, just null should be returned.
+			if (nodeList.getLength() > 0) {
+				// Iterate over node-list, get attribute-values and add them to a list:
+				for (int i = 0; i < nodeList.getLength(); i++) {
+					Element element = (Element)nodeList.item(i);
+					String attributeValue = null;
+					boolean hasAttribute = element.hasAttribute(attribute);
+					// Check if attribute exists.
+					if (hasAttribute) {
+						attributeValue = element.getAttribute(attribute);
+						attributeValues.add(attributeValue);
+					}
 				}
+			} else {
+				attributeValues = null;
 			}
-		} else {
-			attributeValues = null;
+
+			return attributeValues;
 		}
+	}
+
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
 
-		return attributeValues;
+	/**
+	 * Sets the Metrics that receive the time of the XPath evaluations and, in subclasses, of further extraction methods. Default is Metrics.NONE.
+	 * 
+	 * @param metrics	a Metrics, e. g. a JmxMetrics or a LogMetrics
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = (metrics != null) ? metrics : Metrics.NONE;
+	}
+
+
+	private NodeList evaluate(String xpath, Document document, Map<String, ?> variables) throws XPathExpressionException {
+		long start = System.nanoTime();
+		try {
+			return (NodeList)xPathCache.evaluate(xpath, document, XPathConstants.NODESET, variables);
+		} finally {
+			metrics.time(MetricNames.XPATH_EVALUATE, System.nanoTime() - start);
+		}
 	}
 
 }
@@ -0,0 +1,271 @@
+/**
+ * This file is part of GoobiOaiHelper.
+ * 
+ * GoobiOaiHelper is free software: you can redistribute it and/or modify
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GoobiOaiHelper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GoobiOaiHelper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ak.goobi.oaihelper.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests HttpClient against a local HttpServer: retries after status 503 with "Retry-After", gzip decoding, the read timeout and the limit of concurrent
+ * requests per host.
+ * 
+ * @author Michael Birkner
+ */
+public class HttpClientTest {
+
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private HttpClient httpClient;
+
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.start();
+		httpClient = new HttpClient();
+		httpClient.setRetryBackoff(10);
+	}
+
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+
+	@Test
+	public void retriesAfterStatus503WithRetryAfter() throws IOException {
+		final AtomicInteger requests = new AtomicInteger();
+		server.createContext("/unavailable", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				if (requests.incrementAndGet() == 1) {
+					exchange.getResponseHeaders().set("Retry-After", "1");
+					send(exchange, 503, new byte[0]);
+				} else {
+					send(exchange, 200, "ok".getBytes(StandardCharsets.UTF_8));
+				}
+			}
+		});
+
+		long start = System.nanoTime();
+		assertEquals("ok", read(httpClient.get(getUrl("/unavailable"))));
+		assertEquals(2, requests.get());
+		// The client waits for the "Retry-After" of the server and not only for its own backoff of 10 ms
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 900);
+	}
+
+
+	@Test
+	public void keepsRetryAfterWhenRetriesAreExhausted() throws IOException {
+		server.createContext("/unavailable", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().set("Retry-After", "30");
+				send(exchange, 503, new byte[0]);
+			}
+		});
+
+		httpClient.setMaxRetries(0);
+		try {
+			httpClient.get(getUrl("/unavailable"));
+			fail("HttpStatusException expected");
+		} catch (HttpStatusException e) {
+			assertEquals(503, e.getStatusCode());
+			assertEquals(30000, e.getRetryAfter());
+		}
+	}
+
+
+	@Test
+	public void decodesGzip() throws IOException {
+		final String body = "<OAI-PMH>gzip</OAI-PMH>";
+		server.createContext("/gzip", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				if (acceptEncoding == null || !acceptEncoding.contains("gzip")) {
+					send(exchange, 400, new byte[0]);
+					return;
+				}
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+				GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed);
+				gzipOutputStream.write(body.getBytes(StandardCharsets.UTF_8));
+				gzipOutputStream.close();
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				send(exchange, 200, compressed.toByteArray());
+			}
+		});
+
+		assertEquals(body, read(httpClient.get(getUrl("/gzip"))));
+	}
+
+
+	@Test
+	public void failsAfterReadTimeout() throws IOException {
+		final CountDownLatch released = new CountDownLatch(1);
+		server.createContext("/slow", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					released.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				send(exchange, 200, "late".getBytes(StandardCharsets.UTF_8));
+			}
+		});
+
+		httpClient.setReadTimeout(200);
+		httpClient.setMaxRetries(0);
+		long start = System.nanoTime();
+		try {
+			httpClient.get(getUrl("/slow"));
+			fail("SocketTimeoutException expected");
+		} catch (SocketTimeoutException e) {
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+		} finally {
+			released.countDown();
+		}
+	}
+
+
+	@Test
+	public void limitsConcurrentRequestsPerHost() throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		server.createContext("/limited", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				int now = running.incrementAndGet();
+				try {
+					int max = maxRunning.get();
+					while (now > max && !maxRunning.compareAndSet(max, now)) {
+						max = maxRunning.get();
+					}
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					running.decrementAndGet();
+				}
+				send(exchange, 200, "ok".getBytes(StandardCharsets.UTF_8));
+			}
+		});
+
+		httpClient.setMaxConnectionsPerHost(2);
+		ExecutorService clients = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> responses = new ArrayList<Future<String>>();
+			for (int i = 0; i < 8; i++) {
+				responses.add(clients.submit(new Callable<String>() {
+					@Override
+					public String call() throws IOException {
+						return read(httpClient.get(getUrl("/limited")));
+					}
+				}));
+			}
+			for (Future<String> response : responses) {
+				assertEquals("ok", response.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			clients.shutdownNow();
+		}
+		assertEquals(2, maxRunning.get());
+	}
+
+
+	@Test(timeout = 10000)
+	public void releasesHostSlotAfterRuntimeException() throws IOException {
+		server.createContext("/ok", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				send(exchange, 200, "ok".getBytes(StandardCharsets.UTF_8));
+			}
+		});
+
+		httpClient.setMaxConnectionsPerHost(1);
+		try {
+			httpClient.get(getUrl("/ok"), Collections.singletonMap("X-Invalid", "line\nbreak"));
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// The invalid header is rejected before the request is sent
+		}
+		// With a leaked slot, this request would wait forever
+		assertEquals("ok", read(httpClient.get(getUrl("/ok"))));
+	}
+
+
+	private String getUrl(String path) {
+		return "http://localhost:" + server.getAddress().getPort() + path;
+	}
+
+
+	private static void send(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+		exchange.sendResponseHeaders(statusCode, (body.length > 0) ? body.length : -1);
+		OutputStream outputStream = exchange.getResponseBody();
+		outputStream.write(body);
+		outputStream.close();
+	}
+
+
+	private static String read(HttpResponse response) throws IOException {
+		try {
+			InputStream inputStream = response.getInputStream();
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = inputStream.read(buffer)) != -1) {
+				body.write(buffer, 0, length);
+			}
+			return new String(body.toByteArray(), StandardCharsets.UTF_8);
+		} finally {
+			response.close();
+		}
+	}
+
+}